@@ -24,4 +24,7 @@ public enum ChangeType {
     /** Change type representing an change in an item's name. */
     RENAMED,
     
+    /** Change type representing the loading of an item's contents. */
+    LOADED,
+    
 }
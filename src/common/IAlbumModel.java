@@ -48,6 +48,15 @@ public interface IAlbumModel extends IItemModel, Iterable<IPhotoModel>, IIconabl
      */
     void removePhoto(IPhotoModel photo);
 
+    /**
+     * Checks if the photos of this album have been loaded. An album whose
+     * photos are loaded on demand loads them the first time they are
+     * accessed, and then notifies its observers with a LOADED change.
+     *
+     * @return boolean: true if the photos have been loaded; false otherwise
+     */
+    boolean isLoaded();
+
     /*
      * @see common.IIconable#getIcon()
      */
@@ -0,0 +1,55 @@
+// IAlbumsReader.java
+package common;
+
+import java.util.Collection;
+
+/**
+ * An interface defining the contract that which any implementing albums 
+ * readers must adhere to. An albums reader reads the gallery's contents from
+ * a file, along with the position in the journal of the changes to the 
+ * gallery that the file contains the changes up to.
+ */
+public interface IAlbumsReader {
+
+    /**
+     * Performs the actual reading of the file. Once this method has been 
+     * called, the gallery's contents can be retrieved through getAlbums().
+     */
+    void read();
+
+    /**
+     * Gets the gallery's contents (a collection of albums) that were read in
+     * from the file.
+     * 
+     * @return Collection: the collection of albums representing the gallery's
+     *      contents
+     */
+    Collection<IAlbumModel> getAlbums();
+
+    /**
+     * Checks if reading the file failed. The albums of a file that could not
+     * be read in full are not the gallery's contents, so they must never be
+     * written over the file or over any other copy of the gallery.
+     * 
+     * @return boolean: true if the file could not be read; false otherwise
+     */
+    boolean hasFailed();
+
+    /**
+     * Gets the generation of the journal the file was written from.
+     * 
+     * @return long: the generation of the journal; or 0 if the file was not
+     *      written from a journal
+     */
+    long getJournalGeneration();
+
+    /**
+     * Gets the offset, in the journal the file was written from, up to which
+     * the changes recorded in the journal are contained in the file.
+     * 
+     * @return long: the offset in the journal; or 0 if the file was not 
+     *      written from a journal
+     */
+    long getJournalOffset();
+
+}
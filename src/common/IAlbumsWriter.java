@@ -0,0 +1,33 @@
+// IAlbumsWriter.java
+package common;
+
+import java.io.File;
+
+/**
+ * An interface defining the contract that which any implementing albums
+ * writers must adhere to. An albums writer writes the gallery's contents to
+ * a file, along with the position in the journal of the changes to the 
+ * gallery that the gallery contains the changes up to.
+ */
+public interface IAlbumsWriter {
+
+    /**
+     * Sets the position, in the journal of the changes to the gallery, up to
+     * which the gallery contains the changes recorded.
+     * 
+     * @param generation: the generation of the journal
+     * @param offset: the offset in the journal up to which the changes are
+     *          contained in the gallery
+     */
+    void setJournalPosition(long generation, long offset);
+
+    /**
+     * Performs the actual writing of the gallery to the file specified. The 
+     * file is replaced atomically, so it is never left half written.
+     * 
+     * @param file: the file to write the gallery to
+     * @return boolean: true if the file was written; false otherwise
+     */
+    boolean write(File file);
+
+}
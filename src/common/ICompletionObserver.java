@@ -0,0 +1,20 @@
+// ICompletionObserver.java
+package common;
+
+/**
+ * An asynchronous update interface for receiving the result of a task that
+ * was run in the background.
+ *
+ * @param <T> the type of the task's result
+ */
+public interface ICompletionObserver<T> {
+
+    /**
+     * This method is called on the Event Dispatch Thread when a task that was
+     * previously submitted to run in the background has completed.
+     *
+     * @param result: the result of the task
+     */
+    void completed(T result);
+
+}
@@ -0,0 +1,22 @@
+// IFileVerifier.java
+package common;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * An interface defining the contract that which any implementing file 
+ * verifiers must adhere to. A file verifier checks that a newly written file
+ * can be read back before it replaces the file it is a new version of.
+ */
+public interface IFileVerifier {
+
+    /**
+     * Checks that the file specified can be read back.
+     * 
+     * @param file: the newly written file
+     * @throws IOException: if the file cannot be read back or is incomplete
+     */
+    void verify(File file) throws IOException;
+
+}
@@ -22,6 +22,13 @@ public interface IGalleryController {
      */
     void addAlbum();
 
+    /**
+     * Peforms the work of importing a folder tree into the gallery model, 
+     * adding an album for each of its folders containing photos, and updates
+     * any/all of the gallery's views as the albums are added.
+     */
+    void importFolder();
+
     /**
      * Peforms the work of removing the last selected item from the gallery 
      * model. The item that will be removed can be either a photo or album
@@ -0,0 +1,41 @@
+// IImportObserver.java
+package common;
+
+/**
+ * An asynchronous update interface for following the import of a folder tree
+ * into the gallery. Each of its methods is called on the Event Dispatch
+ * Thread.
+ */
+public interface IImportObserver {
+
+    /**
+     * This method is called as the import progresses. The number of images
+     * found grows as the folder tree is walked, so it is not final until the
+     * import has completed.
+     *
+     * @param found: the number of files of a supported format found so far
+     * @param probed: the number of those files that have been probed
+     */
+    void progress(int found, int probed);
+
+    /**
+     * This method is called when all the images of a folder have been
+     * probed, with an album containing those that could be read. The album
+     * has not been added to the gallery. Folders without any image are not
+     * imported.
+     *
+     * @param album: the album created for the folder
+     */
+    void imported(IAlbumModel album);
+
+    /**
+     * This method is called once, when the import has completed or has been
+     * cancelled.
+     *
+     * @param albums: the number of albums imported
+     * @param photos: the number of photos imported
+     * @param cancelled: true if the import was cancelled; false otherwise
+     */
+    void completed(int albums, int photos, boolean cancelled);
+
+}
@@ -0,0 +1,20 @@
+// IPhotoFilter.java
+package common;
+
+/**
+ * An interface defining the contract that which any implementing photo 
+ * filters must adhere to. A photo filter selects the photos of a photo source
+ * that are to be streamed.
+ */
+public interface IPhotoFilter {
+
+    /**
+     * Checks if the photo passed in is to be streamed. This is called as the
+     * photos are streamed, so it should not decode the photo.
+     * 
+     * @param photo: the photo to check
+     * @return true: if the photo is to be streamed; false otherwise
+     */
+    boolean accept(IPhotoModel photo);
+
+}
@@ -0,0 +1,43 @@
+// IPhotoLoader.java
+package common;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * An interface defining the contract that which any implementing photo 
+ * loaders must adhere to. A photo loader creates the photos of an album on
+ * demand, so that the album can be created, named and counted before any of
+ * its photos is.
+ */
+public interface IPhotoLoader {
+
+    /**
+     * Gets the number of photos that the loader creates, without creating
+     * them.
+     * 
+     * @return int: the number of photos
+     */
+    int getCount();
+
+    /**
+     * Creates the photos. Each call creates new photo models, so a loader 
+     * can be shared by copies of the same album.
+     * 
+     * @return List: the photos, in the order of the album
+     * @throws IOException: if the photos could not be loaded
+     */
+    List<IPhotoModel> load() throws IOException;
+
+    /**
+     * Creates the photo at the position specified on its own, without 
+     * creating the others, so that the photos can be streamed one at a time.
+     * Each call creates a new photo model.
+     * 
+     * @param index: the position of the photo in the album
+     * @return IPhotoModel: the photo
+     * @throws IOException: if the photo could not be loaded
+     */
+    IPhotoModel load(int index) throws IOException;
+
+}
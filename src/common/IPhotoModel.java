@@ -1,6 +1,7 @@
 // IPhotoModel.java
 package common;
 
+import java.awt.Dimension;
 import java.awt.Image;
 import com.drew.metadata.Metadata;
 
@@ -19,19 +20,89 @@ public interface IPhotoModel extends IItemModel, IChangeBroadcaster, IIconable {
     IAlbumModel getAlbum();
 
     /**
-     * Gets the metadata associated with this photo model.
+     * Gets the metadata associated with this photo model. When called on the
+     * Event Dispatch Thread, the file is never read by the caller: if the 
+     * metadata has not been read yet, it is requested from the imaging 
+     * threads and this photo model fires a STATE change event once it is.
      * 
-     * @return Metadata: the metadata of this photo model
+     * @return Metadata: the metadata of this photo model; or null if it is 
+     *      not available yet or could not be read
      */
     Metadata getMetadata();
 
     /**
-     * Gets the image of this photo model.
+     * Gets the image of this photo model. When called on the Event Dispatch 
+     * Thread, the image is never decoded or rescaled by the caller: if it is 
+     * not available yet, it is requested from the imaging threads and this 
+     * photo model fires a STATE change event once it is.
      * 
-     * @return Image: this photo model's image
+     * @return Image: this photo model's image; or null if it is not available
+     *      yet on the Event Dispatch Thread
      */
     Image getImage();
+    
+    /**
+     * Gets the image of this photo model decoded for display at no more than
+     * the width and height specified, such as by a slideshow. The image is 
+     * subsampled while it is decoded by the largest integer factor that still
+     * covers that size, so it is only as large as it needs to be; the full 
+     * resolution image is returned instead if it is already decoded. The
+     * image returned is not kept by this photo model, and it is decoded by 
+     * the caller, so this must not be called on the Event Dispatch Thread.
+     * 
+     * @param width: the width the image is to be displayed within
+     * @param height: the height the image is to be displayed within
+     * @return Image: the decoded image; or null if it could not be decoded
+     */
+    Image getImage(int width, int height);
+
+    /**
+     * Gets the size at which the image of this photo model is displayed: the
+     * size it was last scaled to, or the size of the full resolution image if
+     * it has not been scaled.
+     * 
+     * @return Dimension: the displayed size of the image; or null if the 
+     *      image could not be read or is not available yet on the Event 
+     *      Dispatch Thread
+     */
+    Dimension getImageSize();
+    
+    /**
+     * Gets the tiled source of the image of this photo model, if the image is 
+     * too large to be displayed from a single decoded image. The image 
+     * returned by {@link #getImage()} is then only a reduced overview of the 
+     * photo, and the parts of it displayed above the overview's resolution 
+     * must be drawn from the tiled source.
+     * 
+     * @return ITiledImage: the tiled source of the image; or null if the
+     *      image is not tiled
+     */
+    ITiledImage getTiledImage();
 
+    /**
+     * Checks if the image of this photo model is currently decoded and held in
+     * memory. The image is decoded the first time it is requested, and may be
+     * released again when memory is needed.
+     * 
+     * @return true: if the image is decoded; false otherwise
+     */
+    boolean isLoaded();
+    
+    /**
+     * Releases the decoded image of this photo model. The image is decoded
+     * again the next time it is requested.
+     */
+    void unload();
+    
+    /**
+     * Sets whether or not the image of this photo model must be kept in memory,
+     * such as while it is being displayed. The image of a photo model that is
+     * not pinned may be released at any time when memory is needed.
+     * 
+     * @param pinned: whether or not to keep the image in memory
+     */
+    void setPinned(boolean pinned);
+    
     /**
      * Resets the photo model's image back to it's original/unmodified state.
      */
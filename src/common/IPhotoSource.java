@@ -0,0 +1,13 @@
+// IPhotoSource.java
+package common;
+
+/**
+ * An interface defining the contract that which any implementing photo 
+ * sources must adhere to. A photo source streams photos, such as the photos
+ * of a slideshow, one at a time as they are needed, so that it can span any
+ * number of photos without them being copied or decoded up front. Each call
+ * to iterator() starts the stream over, possibly in a different order.
+ */
+public interface IPhotoSource extends Iterable<IPhotoModel> {
+
+}
@@ -0,0 +1,71 @@
+// ITiledImage.java
+package common;
+
+import java.awt.Image;
+import java.awt.Rectangle;
+
+/**
+ * An interface defining the contract that which any implementing tiled 
+ * images must adhere to. A tiled image provides an image too large to be 
+ * decoded as a whole as a grid of fixed size tiles, each of them decoded on
+ * demand, optionally subsampled when the image is displayed below full 
+ * resolution.
+ */
+public interface ITiledImage {
+
+    /**
+     * Gets the width of the full resolution image.
+     *
+     * @return int: the width of the image
+     */
+    int getWidth();
+
+    /**
+     * Gets the height of the full resolution image.
+     *
+     * @return int: the height of the image
+     */
+    int getHeight();
+
+    /**
+     * Gets the width and height of a tile, in pixels of the subsampled image.
+     *
+     * @return int: the size of a tile
+     */
+    int getTileSize();
+
+    /**
+     * Determines the region of the full resolution image covered by the tile
+     * specified.
+     *
+     * @param subsampling: the subsampling factor of the tile
+     * @param column: the column of the tile
+     * @param row: the row of the tile
+     * @return Rectangle: the region covered by the tile
+     */
+    Rectangle getTileBounds(int subsampling, int column, int row);
+
+    /**
+     * Sets the tiles currently in the viewport, so that the tiles requested
+     * outside of it are not decoded.
+     *
+     * @param subsampling: the subsampling factor of the tiles displayed
+     * @param firstColumn: the first column in the viewport
+     * @param firstRow: the first row in the viewport
+     * @param lastColumn: the last column in the viewport
+     * @param lastRow: the last row in the viewport
+     */
+    void setViewport(int subsampling, int firstColumn, int firstRow, int lastColumn, int lastRow);
+
+    /**
+     * Gets the tile specified if it has already been decoded. Otherwise, the
+     * tile is requested and null is returned.
+     *
+     * @param subsampling: the subsampling factor of the tile
+     * @param column: the column of the tile
+     * @param row: the row of the tile
+     * @return Image: the decoded tile; or null if it is not decoded yet
+     */
+    Image getTile(int subsampling, int column, int row);
+
+}
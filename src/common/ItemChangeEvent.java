@@ -20,9 +20,26 @@ public class ItemChangeEvent {
      * @param type: the type of change
      */
     public ItemChangeEvent(IItemModel item, IItemModel changedItem, ChangeType type) {
+        this(item, changedItem, type, -1);
+    }
+    
+    /**
+     * Constructor that instantiates a new item change event with the passed
+     * in item (parent), changed item, the change type, and the position of 
+     * the changed item within the parent item. For an addition, this is the
+     * position the item was added at; for a removal, the position it was
+     * removed from.
+     * 
+     * @param item: the item which has changed
+     * @param changedItem: the item that has changed for the parent item
+     * @param type: the type of change
+     * @param index: the position of the changed item within the parent item
+     */
+    public ItemChangeEvent(IItemModel item, IItemModel changedItem, ChangeType type, int index) {
         mItem = item;
         mItemChanged = changedItem;
         mChangeType = type;
+        mIndex = index;
     }
     
     /**
@@ -51,6 +68,16 @@ public class ItemChangeEvent {
     public ChangeType getType() {
         return mChangeType;
     }
+    
+    /**
+     * Gets the position of the changed item within the parent item, for the
+     * additions and removals of items.
+     * 
+     * @return int: the position of the changed item; or -1 if unknown
+     */
+    public int getIndex() {
+        return mIndex;
+    }
 
     
     // --------------------------------------------------------- Private Fields
@@ -58,5 +85,6 @@ public class ItemChangeEvent {
     private IItemModel mItem;
     private IItemModel mItemChanged;
     private ChangeType mChangeType;
+    private int mIndex;
     
 }
@@ -1,17 +1,26 @@
 // GalleryController.java
 package controller;
 
-import java.awt.Image;
+import io.DirectoryImporter;
+import io.ImageDecoder;
+import java.awt.RenderingHints;
 import java.io.File;
+import java.util.concurrent.Callable;
+import javax.swing.Icon;
 import javax.swing.ImageIcon;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
+import javax.swing.ProgressMonitor;
 import javax.swing.filechooser.FileFilter;
 import model.AlbumModel;
 import model.PhotoModel;
+import runtime.Application;
+import runtime.Constants.ConfigKeys;
 import common.IAlbumModel;
+import common.ICompletionObserver;
 import common.IGalleryController;
 import common.IGalleryModel;
+import common.IImportObserver;
 import common.IItemModel;
 import common.IPhotoModel;
 
@@ -50,18 +59,7 @@ public class GalleryController implements IGalleryController {
                 if(f.isDirectory()) {
                     return true;
                 }
-                
-                String fileName = f.getName();
-                int idx = fileName.lastIndexOf('.');
-                String ext = fileName.substring(idx + 1).toLowerCase();
-                
-                String[] supportedExts = new String[] { "jpg", "jpeg", "png" };
-                for(String supported : supportedExts) {
-                    if(ext.compareTo(supported) == 0) {
-                        return true;
-                    }
-                }
-                return false;
+                return ImageDecoder.isSupported(f.getName());
             }
         });
         int res = chooser.showOpenDialog(null);
@@ -93,6 +91,52 @@ public class GalleryController implements IGalleryController {
         mModel.addAlbum(albumModel);
     }
 
+    /*
+     * @see common.IGalleryController#importFolder()
+     */
+    @Override
+    public void importFolder() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        int res = chooser.showOpenDialog(null);
+        if(res != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File folder = chooser.getSelectedFile();
+        final ProgressMonitor monitor = new ProgressMonitor(null, "Importing " + folder.getPath(), 
+                "Looking for images...", 0, 1);
+        final DirectoryImporter importer = new DirectoryImporter(folder, 
+                Application.Settings.getInt(ConfigKeys.Import.THREADS));
+        importer.start(new IImportObserver() {
+            @Override
+            public void progress(int found, int probed) {
+                if(monitor.isCanceled()) {
+                    importer.cancel();
+                    return;
+                }
+                // The monitor closes itself once the progress reaches its
+                // maximum, which it must not do while images are still 
+                // being found.
+                monitor.setMaximum(found + 1);
+                monitor.setProgress(probed);
+                monitor.setNote(probed + " of " + found + " images");
+            }
+            
+            @Override
+            public void imported(IAlbumModel album) {
+                // The albums handed over before the import was cancelled are
+                // counted as imported, so they are kept.
+                album.setName(getUniqueName(album.getName()));
+                mModel.addAlbum(album);
+            }
+            
+            @Override
+            public void completed(int albums, int photos, boolean cancelled) {
+                monitor.close();
+            }
+        });
+    }
+
     /*
      * @see common.IGalleryController#removeLastSelected()
      */
@@ -138,12 +182,24 @@ public class GalleryController implements IGalleryController {
     public void setIconToLastSelected() {
         IItemModel itemModel = mModel.getLastSelected();
         if(itemModel instanceof IPhotoModel) {
-            IPhotoModel photoModel = (IPhotoModel)itemModel;
-            IAlbumModel album = photoModel.getAlbum();
-            Image image = photoModel.getImage();
-            Image iconImage = image.getScaledInstance(album.getIcon().getIconWidth(), album.getIcon().getIconHeight(), Image.SCALE_FAST);
-            album.setIcon(new ImageIcon(iconImage));
-            ((AlbumModel)album).setIconImagePath(photoModel.getPath());
+            final IPhotoModel photoModel = (IPhotoModel)itemModel;
+            final IAlbumModel album = photoModel.getAlbum();
+            final int width = album.getIcon().getIconWidth();
+            final int height = album.getIcon().getIconHeight();
+            Application.Imaging.submit(new Callable<Icon>() {
+                @Override
+                public Icon call() throws Exception {
+                    ImageDecoder decoder = new ImageDecoder(new File(photoModel.getPath()));
+                    return new ImageIcon(ImageDecoder.resize(decoder.decode(width, height), width, height, 
+                            RenderingHints.VALUE_INTERPOLATION_BILINEAR));
+                }
+            }, new ICompletionObserver<Icon>() {
+                @Override
+                public void completed(Icon icon) {
+                    ((AlbumModel)album).setIconImagePath(photoModel.getPath());
+                    album.setIcon(icon);
+                }
+            });
         }
     }
 
@@ -155,6 +211,24 @@ public class GalleryController implements IGalleryController {
         mModel.setSelectedItem(model);
     }
 
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Private helper method that makes the name of an album unique among the
+     * albums of the gallery, by numbering it if needed.
+     * 
+     * @param name: the name of the album
+     * @return String: the name, or the name followed by the lowest number
+     *          not taken yet
+     */
+    private String getUniqueName(String name) {
+        String uniqueName = name;
+        for(int i = 2; mModel.getAlbum(uniqueName) != null; i++) {
+            uniqueName = name + " (" + i + ")";
+        }
+        return uniqueName;
+    }
     
     // --------------------------------------------------------- Private Fields
     
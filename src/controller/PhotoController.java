@@ -43,11 +43,15 @@ public class PhotoController implements IPhotoController {
      */
     @Override
     public void zoomToFit(Dimension dim) {
+        Dimension size = mModel.getImageSize();
+        if(size == null) {
+            return;
+        }
         
         int parentWidth = dim.width;
         int parentHeight = dim.height;
-        int width = (mModel.getImage().getWidth(null));
-        int height = (mModel.getImage().getHeight(null));
+        int width = size.width;
+        int height = size.height;
         
         boolean isWidthConstraining = width > height;
         if(isWidthConstraining) {
@@ -64,10 +68,14 @@ public class PhotoController implements IPhotoController {
      */
     @Override
     public void zoomIn() {
+        Dimension size = mModel.getImageSize();
+        if(size == null) {
+            return;
+        }
         mCurZoomCount += 1;
         mZoomFactor += 0.1;
-        int width = (int)(mModel.getImage().getWidth(null) * mZoomFactor);
-        int height = (int)(mModel.getImage().getHeight(null) * mZoomFactor);
+        int width = (int)(size.width * mZoomFactor);
+        int height = (int)(size.height * mZoomFactor);
         mModel.scaleImage(width, height);
     }
 
@@ -76,10 +84,14 @@ public class PhotoController implements IPhotoController {
      */
     @Override
     public void zoomOut() {
+        Dimension size = mModel.getImageSize();
+        if(size == null) {
+            return;
+        }
         mCurZoomCount -= 1;
         mZoomFactor -= 0.1;
-        int width = (int)(mModel.getImage().getWidth(null) * mZoomFactor);
-        int height = (int) (mModel.getImage().getHeight(null) * mZoomFactor);
+        int width = (int)(size.width * mZoomFactor);
+        int height = (int)(size.height * mZoomFactor);
         mModel.scaleImage(width, height);
     }
 
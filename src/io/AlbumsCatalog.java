@@ -0,0 +1,377 @@
+// AlbumsCatalog.java
+package io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import model.GalleryModel;
+import runtime.Application;
+import common.IAlbumsReader;
+import common.IAlbumsWriter;
+import common.IFileVerifier;
+
+/**
+ * A class describing the binary catalog format of the gallery's contents and
+ * providing the converters between the catalog and the xml albums file. The
+ * catalog is read through a memory mapping of the file, so opening it costs
+ * little more than the pages actually touched; the xml albums file remains
+ * the format the gallery is exchanged and exported in.
+ *
+ * A catalog is laid out, in big-endian order, as a header of fixed size, a
+ * table of the strings, the table of the albums and the table of the photos.
+ * The albums and the photos are records of fixed width, so any of them can
+ * be reached directly from its index. Each album record holds the references
+ * to its name, description and icon path in the table of the strings, the
+ * index of its first photo in the table of the photos and its number of
+ * photos; the photos of an album follow each other. Each photo record holds
+ * the references to its name, description and path. A reference is the
+ * offset of the string in the table of the strings, where each string is
+ * stored as its length followed by its UTF-8 bytes.
+ *
+ * Each catalog is written under the generation of the journal it was written
+ * from, as in Albums.3.catalog, rather than over the previous catalog: the
+ * catalog read at startup stays mapped for as long as the application runs,
+ * and a mapped file cannot be replaced on every platform. The latest valid
+ * generation is read at startup, and the older ones are deleted once a newer
+ * one has been written and they are no longer mapped.
+ */
+public class AlbumsCatalog {
+
+    /**
+     * Converts the xml albums file specified into a catalog.
+     *
+     * @param xmlFile: the xml albums file to be converted
+     * @param catalogFile: the catalog to be written
+     * @return boolean: true if the catalog was written; false otherwise
+     */
+    public static boolean fromXml(File xmlFile, File catalogFile) {
+        return convert(new XmlAlbumsReader(xmlFile, false), catalogFile, true);
+    }
+
+    /**
+     * Converts the catalog specified into an xml albums file.
+     *
+     * @param catalogFile: the catalog to be converted
+     * @param xmlFile: the xml albums file to be written
+     * @return boolean: true if the xml albums file was written; false
+     *          otherwise
+     */
+    public static boolean toXml(File catalogFile, File xmlFile) {
+        return convert(new BinaryAlbumsReader(catalogFile), xmlFile, false);
+    }
+
+    /**
+     * Checks if the file specified is a catalog that can be read: its header
+     * must be valid and its tables must fit the file exactly.
+     *
+     * @param file: the file to check
+     * @return boolean: true if the file is a valid catalog; false otherwise
+     */
+    public static boolean isValid(File file) {
+        if(!file.isFile()) {
+            return false;
+        }
+        try {
+            readHeader(file);
+            return true;
+        }
+        catch(IOException e) {
+            Application.dump(e);
+            return false;
+        }
+    }
+
+    /**
+     * Gets the file the catalog of the generation specified is written to.
+     *
+     * @param catalogFile: the catalog whose generations are to be found, such
+     *          as Albums.catalog
+     * @param generation: the generation of the journal the catalog is written
+     *          from
+     * @return File: the catalog of the generation, such as Albums.3.catalog
+     */
+    public static File getGenerationFile(File catalogFile, long generation) {
+        String name = catalogFile.getName();
+        int extension = name.lastIndexOf('.');
+        String generationName = extension < 0 ? name + "." + generation
+            : name.substring(0, extension) + "." + generation + name.substring(extension);
+        return new File(catalogFile.getAbsoluteFile().getParentFile(), generationName);
+    }
+
+    /**
+     * Finds the latest valid generation of the catalog specified. The catalog
+     * itself, written before catalogs were written under their generation, is
+     * returned if there is no valid generation.
+     *
+     * @param catalogFile: the catalog whose generations are to be found
+     * @return File: the latest valid generation of the catalog; or the 
+     *          catalog itself
+     */
+    public static File findLatest(File catalogFile) {
+        File latest = catalogFile;
+        long latestGeneration = -1;
+        File[] files = catalogFile.getAbsoluteFile().getParentFile().listFiles();
+        if(files == null) {
+            return latest;
+        }
+        for(File file : files) {
+            long generation = getGeneration(catalogFile, file);
+            if(generation > latestGeneration && isValid(file)) {
+                latest = file;
+                latestGeneration = generation;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Deletes the generations of the catalog specified that are older than
+     * the generation specified, along with the catalog itself. A generation
+     * that cannot be deleted, because it is still mapped, is left for the
+     * next time.
+     *
+     * @param catalogFile: the catalog whose generations are to be deleted
+     * @param generation: the generation of the latest catalog written
+     */
+    public static void deleteOlder(File catalogFile, long generation) {
+        File[] files = catalogFile.getAbsoluteFile().getParentFile().listFiles();
+        if(files == null) {
+            return;
+        }
+        for(File file : files) {
+            long fileGeneration = getGeneration(catalogFile, file);
+            if((fileGeneration >= 0 && fileGeneration < generation) || file.getName().equals(catalogFile.getName())) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Converts an albums file from one format to the other, the format being
+     * determined by the extension of the file to be converted.
+     *
+     * Usage: AlbumsCatalog input.xml output.catalog | input.catalog output.xml
+     *
+     * @param args: the file to be converted and the file to be written
+     */
+    public static void main(String[] args) {
+        if(args.length != 2) {
+            System.err.println("Usage: AlbumsCatalog input.xml output.catalog | input.catalog output.xml");
+            System.exit(1);
+        }
+        File input = new File(args[0]);
+        File output = new File(args[1]);
+        boolean converted = input.getName().toLowerCase().endsWith(".xml")
+            ? fromXml(input, output) : toXml(input, output);
+        System.exit(converted ? 0 : 1);
+    }
+
+    // --------------------------------------------------------- Inner Classes
+
+    /**
+     * Class that checks that a newly written catalog can be read back: its
+     * header must be valid, its tables must fit the file exactly and it must
+     * contain the number of photos written.
+     */
+    static class Verifier implements IFileVerifier {
+
+        /**
+         * Constructor that instantiates a new verifier expecting the number
+         * of albums and photos specified.
+         *
+         * @param albums: the number of albums written
+         * @param photos: the number of photos written
+         */
+        public Verifier(int albums, int photos) {
+            mAlbums = albums;
+            mPhotos = photos;
+        }
+
+        /*
+         * @see common.IFileVerifier#verify(java.io.File)
+         */
+        @Override
+        public void verify(File file) throws IOException {
+            ByteBuffer header = readHeader(file);
+            if(header.getInt(ALBUM_COUNT) != mAlbums || header.getInt(PHOTO_COUNT) != mPhotos) {
+                throw new IOException("The catalog " + file + " contains " + header.getInt(ALBUM_COUNT) +
+                        " albums and " + header.getInt(PHOTO_COUNT) + " photos instead of " + mAlbums +
+                        " and " + mPhotos + ".");
+            }
+        }
+
+        private int mAlbums;
+        private int mPhotos;
+
+    }
+
+    // ------------------------------------------------------- Package Methods
+
+    /**
+     * Maps the catalog specified in memory, and checks that its header is
+     * valid and that its tables fit the file exactly.
+     *
+     * @param file: the catalog
+     * @return MappedByteBuffer: the catalog mapped in memory
+     * @throws IOException: if the catalog could not be mapped or is not valid
+     */
+    static MappedByteBuffer map(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            long size = channel.size();
+            if(size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("The catalog " + file + " has an invalid size: " + size + ".");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            check(file, buffer, size);
+            return buffer;
+        }
+        finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Reads the header of the catalog specified, and checks that it is valid
+     * and that the tables of the catalog fit the file exactly.
+     *
+     * @param file: the catalog
+     * @return ByteBuffer: the header of the catalog
+     * @throws IOException: if the header could not be read or is not valid
+     */
+    static ByteBuffer readHeader(File file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            if(input.length() < HEADER_SIZE) {
+                throw new IOException("The catalog " + file + " has an invalid size: " + input.length() + ".");
+            }
+            input.readFully(header.array());
+            check(file, header, input.length());
+            return header;
+        }
+        finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Checks that the header of a catalog is valid and that its tables fit
+     * the size of the catalog exactly.
+     *
+     * @param file: the catalog
+     * @param header: the header of the catalog
+     * @param size: the size of the catalog
+     * @throws IOException: if the header is not valid
+     */
+    static void check(File file, ByteBuffer header, long size) throws IOException {
+        if(header.getInt(MAGIC_OFFSET) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION) {
+            throw new IOException("The file " + file + " is not a catalog of a supported version.");
+        }
+        long albums = header.getInt(ALBUM_COUNT);
+        long photos = header.getInt(PHOTO_COUNT);
+        long strings = header.getLong(STRINGS_OFFSET);
+        long albumsOffset = header.getLong(ALBUMS_OFFSET);
+        long photosOffset = header.getLong(PHOTOS_OFFSET);
+        if(albums < 0 || photos < 0 || strings != HEADER_SIZE || albumsOffset < strings
+                || photosOffset != albumsOffset + albums * ALBUM_RECORD_SIZE
+                || size != photosOffset + photos * PHOTO_RECORD_SIZE) {
+            throw new IOException("The tables of the catalog " + file + " do not fit its size.");
+        }
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Private helper method that determines the generation of the catalog
+     * specified from its name.
+     *
+     * @param catalogFile: the catalog whose generations are to be found
+     * @param file: the file whose generation is to be determined
+     * @return long: the generation of the file; or -1 if the file is not a
+     *          generation of the catalog
+     */
+    private static long getGeneration(File catalogFile, File file) {
+        String name = catalogFile.getName();
+        int extension = name.lastIndexOf('.');
+        String prefix = (extension < 0 ? name : name.substring(0, extension)) + ".";
+        String suffix = extension < 0 ? "" : name.substring(extension);
+        String fileName = file.getName();
+        if(!fileName.startsWith(prefix) || !fileName.endsWith(suffix) 
+                || fileName.length() <= prefix.length() + suffix.length()) {
+            return -1;
+        }
+        String generation = fileName.substring(prefix.length(), fileName.length() - suffix.length());
+        for(int i = 0; i < generation.length(); i++) {
+            if(!Character.isDigit(generation.charAt(i))) {
+                return -1;
+            }
+        }
+        try {
+            return Long.parseLong(generation);
+        }
+        catch(NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Private helper method that reads the albums through the reader
+     * specified and writes them, along with their journal position, to the
+     * file specified.
+     *
+     * @param reader: the reader of the file to be converted
+     * @param output: the file to be written
+     * @param toCatalog: true to write a catalog; false to write an xml albums
+     *          file
+     * @return boolean: true if the file was written; false otherwise
+     */
+    private static boolean convert(IAlbumsReader reader, File output, boolean toCatalog) {
+        reader.read();
+        GalleryModel gallery = new GalleryModel(reader.getAlbums());
+        IAlbumsWriter writer = toCatalog ? new BinaryAlbumsWriter(gallery) : new XmlAlbumsWriter(gallery);
+        writer.setJournalPosition(reader.getJournalGeneration(), reader.getJournalOffset());
+        return writer.write(output);
+    }
+
+    // -------------------------------------------------------- Package Fields
+
+    static final int MAGIC = 0x4a474143;
+    static final int VERSION = 1;
+    static final Charset ENCODING = Charset.forName("UTF-8");
+
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int JOURNAL_GENERATION = 8;
+    static final int JOURNAL_OFFSET = 16;
+    static final int ALBUM_COUNT = 24;
+    static final int PHOTO_COUNT = 28;
+    static final int STRINGS_OFFSET = 32;
+    static final int ALBUMS_OFFSET = 40;
+    static final int PHOTOS_OFFSET = 48;
+    static final int HEADER_SIZE = 64;
+
+    static final int ALBUM_NAME = 0;
+    static final int ALBUM_DESCRIPTION = 4;
+    static final int ALBUM_ICON = 8;
+    static final int ALBUM_FIRST_PHOTO = 12;
+    static final int ALBUM_PHOTO_COUNT = 16;
+    static final int ALBUM_RECORD_SIZE = 20;
+
+    static final int PHOTO_NAME = 0;
+    static final int PHOTO_DESCRIPTION = 4;
+    static final int PHOTO_PATH = 8;
+    static final int PHOTO_RECORD_SIZE = 12;
+
+    /** The reference of a missing string. */
+    static final int NULL_STRING = -1;
+
+    /** The reference of an empty string, which is not stored. */
+    static final int EMPTY_STRING = -2;
+
+}
@@ -0,0 +1,944 @@
+// AlbumsJournal.java
+package io;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import model.AlbumModel;
+import model.GalleryModel;
+import model.PhotoModel;
+import runtime.Application;
+import common.ChangeType;
+import common.IAlbumModel;
+import common.IChangeObserver;
+import common.IGalleryModel;
+import common.IItemModel;
+import common.IPhotoModel;
+import common.ItemChangeEvent;
+
+/**
+ * A class that journals the changes made to the gallery's contents, so that
+ * they are saved as they happen without rewriting the whole albums file.
+ * Each addition, removal, renaming of an album or a photo and each change of
+ * an album's icon is appended to the journal as a small record carrying its
+ * own checksum.
+ *
+ * When the gallery is loaded, the records the albums file does not contain
+ * yet are replayed over it; a record cut short or damaged by a crash ends
+ * the replay and is dropped. Once the journal grows past a threshold, it is
+ * compacted in the background: a snapshot of the gallery is written to a
+ * fresh catalog, named after the generation of the journal and recording the
+ * position in the journal it contains the changes up to, and the journal is then started over with only the
+ * records appended since the snapshot was taken. The snapshot is exported to
+ * the xml albums file as well, along with the same position, so that the
+ * journal can be replayed over the xml albums file if the catalog cannot be
+ * read.
+ */
+public class AlbumsJournal implements IChangeObserver {
+
+    /**
+     * Constructor that instantiates a new journal for the catalog 
+     * specified. Note: Instantiating an instance through this constructor
+     * does not journal anything. After instantiating the instance you must
+     * call the open method with the gallery read from the albums file.
+     *
+     * @param file: the file containing the journal
+     * @param catalogFile: the catalog the journal is compacted into, whose
+     *          generations are written next to it
+     * @param albumsFile: the xml albums file the journal is exported to along
+     *          with the catalog
+     * @param threshold: the size of the journal, in bytes, past which it is
+     *          compacted
+     */
+    public AlbumsJournal(File file, File catalogFile, File albumsFile, long threshold) {
+        mFile = file.getAbsoluteFile();
+        mCatalogFile = catalogFile;
+        mAlbumsFile = albumsFile;
+        mThreshold = threshold;
+        mIconPaths = new IdentityHashMap<IAlbumModel, String>();
+        mBuffer = new ByteArrayOutputStream();
+        mRecord = new DataOutputStream(mBuffer);
+        mRecords = new ByteArrayOutputStream();
+        mChecksum = new CRC32();
+        mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Albums Journal");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Opens the journal for the gallery specified, which must have just been
+     * read from the albums file. The changes recorded in the journal after
+     * the position the albums file was written at are replayed over the
+     * gallery, and the changes made to the gallery from then on are appended
+     * to the journal.
+     *
+     * @param gallery: the gallery read from the albums file
+     * @param generation: the generation of the journal the albums file was
+     *          written from, or 0
+     * @param offset: the offset in that journal up to which the albums file
+     *          contains the changes
+     */
+    public synchronized void open(IGalleryModel gallery, long generation, long offset) {
+        mGallery = gallery;
+        mGeneration = generation + 1;
+        mLength = HEADER_SIZE;
+
+        boolean complete = true;
+        try {
+            complete = replay(generation, offset);
+        }
+        catch(IOException e) {
+            Application.dump(e);
+        }
+
+        try {
+            if(mLength == HEADER_SIZE) {
+                create(new byte[0]);
+            }
+            else if(!complete) {
+                // The journal was set aside by linking to it, so the records 
+                // that applied are written to a new journal rather than the
+                // set aside one being truncated.
+                create(readRecords(HEADER_SIZE, mLength));
+            }
+            mOutput = new FileOutputStream(mFile, true);
+            mOutput.getChannel().truncate(mLength);
+        }
+        catch(IOException e) {
+            Application.dump(e);
+            mOutput = null;
+        }
+
+        watch(gallery);
+        if(!complete) {
+            compact();
+        }
+        else {
+            compactIfNeeded();
+        }
+    }
+
+    /**
+     * Closes the journal, once any compaction under way has completed. If
+     * changes could not be appended to the journal, the whole gallery is
+     * written to the catalog instead, so that they are not lost. Nothing is
+     * written if the journal was never opened.
+     */
+    public void close() {
+        mExecutor.shutdown();
+        try {
+            mExecutor.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS);
+        }
+        catch(InterruptedException e) {
+            Application.dump(e);
+        }
+        synchronized(this) {
+            if(mGallery == null) {
+                return;
+            }
+            if(mOutput == null) {
+                writeAlbums(mGallery, mGeneration, mLength);
+                return;
+            }
+            try {
+                mOutput.close();
+            }
+            catch(IOException e) {
+                Application.dump(e);
+            }
+        }
+    }
+
+    /**
+     * Gets the size of the journal.
+     *
+     * @return long: the size of the journal, in bytes
+     */
+    public synchronized long getLength() {
+        return mLength;
+    }
+
+    /**
+     * Forces the records appended since the last call to the disk, so that
+     * they survive a crash of the system and not only of the application.
+     * The records are appended without being forced, since forcing each of 
+     * them would make each change wait for the disk; this is meant to be 
+     * called once a burst of changes is over, off the thread the gallery is
+     * changed on. The journal is not locked while it is being forced.
+     */
+    public void sync() {
+        FileChannel channel;
+        synchronized(this) {
+            if(mOutput == null || !mUnsynced) {
+                return;
+            }
+            channel = mOutput.getChannel();
+            mUnsynced = false;
+        }
+        try {
+            channel.force(false);
+        }
+        catch(ClosedChannelException e) {
+            // The journal was started over meanwhile; the new journal was
+            // forced to the disk when it was created.
+        }
+        catch(IOException e) {
+            Application.dump(e);
+        }
+    }
+
+    /**
+     * Compacts the journal in the background, whatever its size, unless it is
+     * being compacted already. This must be called on the thread the gallery
+     * is changed on: the snapshot of the gallery written to the catalog is 
+     * taken right away, so that it contains exactly the changes recorded so
+     * far. The photos' names and descriptions are read when they are written,
+     * which is harmless: a photo renamed meanwhile is renamed again, to the
+     * same name, when the journal is replayed.
+     */
+    public synchronized void compact() {
+        writeRecords();
+        if(mCompacting || mGallery == null || mExecutor.isShutdown()) {
+            return;
+        }
+        mCompacting = true;
+        final IGalleryModel snapshot = snapshot();
+        final long generation = mGeneration;
+        final long offset = mLength;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                boolean written = writeAlbums(snapshot, generation, offset);
+                synchronized(AlbumsJournal.this) {
+                    if(written) {
+                        restart(offset);
+                        Application.log("Compacted " + mFile + " into " + 
+                                AlbumsCatalog.getGenerationFile(mCatalogFile, generation) + " in " +
+                                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms.");
+                    }
+                    mCompacting = false;
+                }
+            }
+        });
+    }
+
+    // -------------------------------------------------------- IChangeObserver
+
+    /*
+     * @see common.IChangeObserver#updateChange(common.ItemChangeEvent)
+     */
+    @Override
+    public void updateChange(ItemChangeEvent e) {
+
+        // The photos change state each time their image is loaded, which
+        // does not change the gallery's contents.
+        if(e.getType() == ChangeType.STATE && !(e.getChange() instanceof AlbumModel)) {
+            return;
+        }
+
+        synchronized(this) {
+            if(mGallery == null) {
+                return;
+            }
+            IItemModel change = e.getChange();
+            switch(e.getType()) {
+            case ADDITION:
+                if(change instanceof IAlbumModel) {
+                    IAlbumModel album = (IAlbumModel)change;
+                    int index = e.getIndex() >= 0 ? e.getIndex() : indexOf(album);
+                    appendAlbum(index, album);
+                    watch(album);
+                }
+                else if(change instanceof IPhotoModel) {
+                    IPhotoModel photo = (IPhotoModel)change;
+                    IAlbumModel album = (IAlbumModel)e.getItem();
+                    int index = e.getIndex() >= 0 ? e.getIndex() : album.getPhotos().indexOf(photo);
+                    int albumIndex = indexOf(album);
+                    if(albumIndex >= 0) {
+                        appendPhoto(albumIndex, index, photo);
+                        photo.registerChangeObserver(this);
+                    }
+                }
+                break;
+            case REMOVAL:
+                if(e.getIndex() < 0) {
+                    compact();
+                }
+                else if(change instanceof IAlbumModel) {
+                    append(REMOVE_ALBUM, e.getIndex());
+                    unwatch((IAlbumModel)change);
+                }
+                else if(change instanceof IPhotoModel) {
+                    append(REMOVE_PHOTO, indexOf((IAlbumModel)e.getItem()), e.getIndex());
+                    change.removeChangeObserver(this);
+                }
+                break;
+            case RENAMED:
+                if(change instanceof IAlbumModel) {
+                    int albumIndex = indexOf((IAlbumModel)change);
+                    if(albumIndex >= 0) {
+                        append(RENAME_ALBUM, albumIndex, change.getName());
+                    }
+                }
+                else if(change instanceof IPhotoModel) {
+                    IPhotoModel photo = (IPhotoModel)change;
+                    int albumIndex = photo.getAlbum() == null ? -1 : indexOf(photo.getAlbum());
+                    int index = albumIndex < 0 ? -1 : photo.getAlbum().getPhotos().indexOf(photo);
+                    if(index >= 0) {
+                        append(RENAME_PHOTO, albumIndex, index, photo.getName());
+                    }
+                }
+                break;
+            case LOADED:
+                // The photos of an album loaded on demand are only watched
+                // once they have been created.
+                for(IPhotoModel photo : (IAlbumModel)change) {
+                    photo.registerChangeObserver(this);
+                }
+                break;
+            case STATE:
+                AlbumModel album = (AlbumModel)change;
+                String path = album.getIconImagePath();
+                int albumIndex = indexOf(album);
+                if(albumIndex >= 0 && !equal(path, mIconPaths.get(album))) {
+                    mIconPaths.put(album, path);
+                    append(SET_ALBUM_ICON, albumIndex, path);
+                }
+                break;
+            }
+            writeRecords();
+            compactIfNeeded();
+        }
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Private helper method that replays over the gallery the records of the
+     * journal the albums file does not contain yet, and sets the generation
+     * and the length of the journal to be appended to. Only the journal the
+     * albums file was written from, replayed from the offset the albums file
+     * contains the changes up to, and the next generation, replayed from its
+     * start, can be replayed: the records refer to the albums and photos by
+     * position, so they only apply to the albums they were recorded over. A
+     * journal older than the albums file is ignored; a journal further ahead
+     * of it is set aside, as is a journal containing a record that does not
+     * apply, before it is started over.
+     *
+     * @param generation: the generation of the journal the albums file was
+     *          written from, or 0
+     * @param offset: the offset in that journal up to which the albums file
+     *          contains the changes
+     * @return boolean: false if a record did not apply to the gallery, which
+     *          then no longer matches the journal; true otherwise
+     * @throws IOException: if the journal could not be read
+     */
+    private boolean replay(long generation, long offset) throws IOException {
+        if(!mFile.exists()) {
+            return true;
+        }
+
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile), BUFFER_SIZE));
+        try {
+            long journalGeneration;
+            try {
+                if(input.readInt() != MAGIC || input.readInt() != VERSION) {
+                    return true;
+                }
+                journalGeneration = input.readLong();
+            }
+            catch(EOFException e) {
+                return true;
+            }
+            if(journalGeneration < generation) {
+                return true;
+            }
+            if(journalGeneration > generation + 1) {
+                setAside("Its generation " + journalGeneration + " does not follow the generation " + 
+                        generation + " of the albums.");
+                return true;
+            }
+
+            long position = HEADER_SIZE;
+            long start = journalGeneration == generation ? Math.max(offset, HEADER_SIZE) : HEADER_SIZE;
+            int replayed = 0;
+            byte[] payload = new byte[0];
+            while(true) {
+                int length;
+                try {
+                    length = input.readInt();
+                    if(length <= 0 || length > MAXIMUM_RECORD_SIZE) {
+                        break;
+                    }
+                    if(payload.length < length) {
+                        payload = new byte[length];
+                    }
+                    input.readFully(payload, 0, length);
+                    mChecksum.reset();
+                    mChecksum.update(payload, 0, length);
+                    if(input.readInt() != (int)mChecksum.getValue()) {
+                        break;
+                    }
+                }
+                catch(EOFException e) {
+                    break;
+                }
+
+                if(position >= start) {
+                    if(!apply(new DataInputStream(new ByteArrayInputStream(payload, 0, length)))) {
+                        setAside("The record at " + position + " does not apply to the albums; the " + 
+                                "albums will be written in full.");
+                        mGeneration = journalGeneration;
+                        mLength = position;
+                        return false;
+                    }
+                    replayed++;
+                }
+                position += RECORD_OVERHEAD + length;
+            }
+
+            if(position < mFile.length()) {
+                Application.log("Dropped the damaged end of " + mFile + " from " + position + ".");
+            }
+            if(replayed > 0) {
+                Application.log("Replayed " + replayed + " changes from " + mFile + ".");
+            }
+            mGeneration = journalGeneration;
+            mLength = position;
+            return true;
+        }
+        finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Private helper method that applies a record of the journal to the
+     * gallery.
+     *
+     * @param record: the payload of the record
+     * @return boolean: true if the record applied; false if it refers to an
+     *          album or a photo the gallery does not contain
+     * @throws IOException: if the record could not be read
+     */
+    private boolean apply(DataInputStream record) throws IOException {
+        byte type = record.readByte();
+        int albumIndex = record.readInt();
+        if(type == ADD_ALBUM) {
+            if(albumIndex != mGallery.getCount()) {
+                return false;
+            }
+            AlbumModel album = new AlbumModel(readString(record));
+            album.setDescription(readString(record));
+            String path = readString(record);
+            mGallery.addAlbum(album);
+            if(path != null) {
+                album.loadIcon(path);
+            }
+            return true;
+        }
+
+        IAlbumModel album = mGallery.getAlbum(albumIndex);
+        if(album == null || albumIndex < 0) {
+            return false;
+        }
+        switch(type) {
+        case REMOVE_ALBUM:
+            mGallery.removeAlbum(album);
+            return true;
+        case RENAME_ALBUM:
+            album.setName(readString(record));
+            return true;
+        case SET_ALBUM_ICON:
+            String path = readString(record);
+            if(path != null && album instanceof AlbumModel) {
+                ((AlbumModel)album).loadIcon(path);
+            }
+            return true;
+        }
+
+        int photoIndex = record.readInt();
+        if(type == ADD_PHOTO) {
+            if(photoIndex != album.getCount()) {
+                return false;
+            }
+            String name = readString(record);
+            String description = readString(record);
+            IPhotoModel photo = new PhotoModel(readString(record));
+            photo.setName(name);
+            photo.setDescription(description);
+            album.addPhoto(photo);
+            return true;
+        }
+        if(photoIndex < 0 || photoIndex >= album.getCount()) {
+            return false;
+        }
+        IPhotoModel photo = album.getPhoto(photoIndex);
+        switch(type) {
+        case REMOVE_PHOTO:
+            album.removePhoto(photo);
+            return true;
+        case RENAME_PHOTO:
+            photo.setName(readString(record));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Private helper method that starts a new journal, of the current
+     * generation, containing the records specified. The new journal replaces
+     * the previous one atomically.
+     *
+     * @param records: the records the new journal starts with
+     * @throws IOException: if the new journal could not be written
+     */
+    private void create(byte[] records) throws IOException {
+        AtomicFile atomicFile = new AtomicFile(mFile);
+        FileOutputStream output = atomicFile.startWrite();
+        try {
+            DataOutputStream header = new DataOutputStream(output);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.writeLong(mGeneration);
+            header.write(records);
+            header.flush();
+            atomicFile.finishWrite(output, null);
+        }
+        finally {
+            atomicFile.failWrite(output);
+        }
+        mLength = HEADER_SIZE + records.length;
+    }
+
+    /**
+     * Private helper method that encodes a record to be appended to the
+     * journal. The records are only written by writeRecords(), so that all
+     * the records of a change are appended with a single write. Does nothing
+     * if the journal could not be opened.
+     *
+     * @param type: the type of the record
+     * @param fields: the fields of the record, either integers or strings
+     */
+    private void append(byte type, Object... fields) {
+        if(mOutput == null) {
+            return;
+        }
+        try {
+            mBuffer.reset();
+            mRecord.writeInt(0);
+            mRecord.writeByte(type);
+            for(Object field : fields) {
+                if(field instanceof Integer) {
+                    mRecord.writeInt((Integer)field);
+                }
+                else {
+                    writeString(mRecord, (String)field);
+                }
+            }
+            mRecord.writeInt(0);
+            mRecord.flush();
+        }
+        catch(IOException e) {
+            // Writing to memory does not fail.
+            Application.dump(e);
+            return;
+        }
+
+        byte[] record = mBuffer.toByteArray();
+        int length = record.length - RECORD_OVERHEAD;
+        mChecksum.reset();
+        mChecksum.update(record, 4, length);
+        writeInt(record, 0, length);
+        writeInt(record, record.length - 4, (int)mChecksum.getValue());
+        mRecords.write(record, 0, record.length);
+    }
+
+    /**
+     * Private helper method that appends the records encoded since the last
+     * call to the journal, with a single write, so that they reach the file
+     * even if the application crashes right after.
+     */
+    private void writeRecords() {
+        if(mRecords.size() == 0) {
+            return;
+        }
+        if(mOutput == null) {
+            mRecords.reset();
+            return;
+        }
+        try {
+            mRecords.writeTo(mOutput);
+            mLength += mRecords.size();
+            mUnsynced = true;
+        }
+        catch(IOException e) {
+            Application.dump(e);
+            try {
+                mOutput.close();
+            }
+            catch(IOException closeException) {
+                Application.dump(closeException);
+            }
+            mOutput = null;
+        }
+        finally {
+            mRecords.reset();
+        }
+    }
+
+    /**
+     * Private helper method that appends the records adding an album, along
+     * with the photos it already contains, to the journal.
+     *
+     * @param index: the position of the album in the gallery
+     * @param album: the album added
+     */
+    private void appendAlbum(int index, IAlbumModel album) {
+        String path = album instanceof AlbumModel ? ((AlbumModel)album).getIconImagePath() : null;
+        append(ADD_ALBUM, index, album.getName(), album.getDescription(), path);
+        int photoIndex = 0;
+        for(IPhotoModel photo : album) {
+            appendPhoto(index, photoIndex++, photo);
+        }
+    }
+
+    /**
+     * Private helper method that appends the record adding a photo to the
+     * journal.
+     *
+     * @param albumIndex: the position of the photo's album in the gallery
+     * @param index: the position of the photo in its album
+     * @param photo: the photo added
+     */
+    private void appendPhoto(int albumIndex, int index, IPhotoModel photo) {
+        append(ADD_PHOTO, albumIndex, index, photo.getName(), photo.getDescription(), photo.getPath());
+    }
+
+    /**
+     * Private helper method that compacts the journal if it has grown past
+     * the threshold and is not being compacted already.
+     */
+    private void compactIfNeeded() {
+        if(mLength - HEADER_SIZE > mThreshold) {
+            compact();
+        }
+    }
+
+    /**
+     * Private helper method that starts the next generation of the journal,
+     * once the albums file contains the changes recorded up to the offset
+     * specified. The records appended after the offset are carried over to
+     * the new journal. If the journal cannot be started over, the current one
+     * is kept and appended to: the albums file records the offset it was
+     * written at, so its records are not replayed twice.
+     *
+     * @param offset: the offset up to which the albums file contains the
+     *          changes
+     */
+    private void restart(long offset) {
+        boolean open = mOutput != null;
+        try {
+            byte[] records = readRecords(offset, mLength);
+            if(mOutput != null) {
+                mOutput.close();
+                mOutput = null;
+            }
+            mGeneration++;
+            try {
+                create(records);
+            }
+            catch(IOException e) {
+                mGeneration--;
+                mLength = mFile.length();
+                throw e;
+            }
+        }
+        catch(IOException e) {
+            Application.dump(e);
+        }
+        finally {
+            try {
+                if(open && mOutput == null) {
+                    mOutput = new FileOutputStream(mFile, true);
+                }
+            }
+            catch(IOException e) {
+                Application.dump(e);
+            }
+        }
+    }
+
+    /**
+     * Private helper method that writes the gallery specified, along with the
+     * position in the journal it contains the changes up to, to the xml 
+     * albums file and then to the catalog. The xml albums file is written 
+     * first, so that the catalog is never older than it and is still the file
+     * read at the next startup; both files then contain the same changes, so
+     * the journal replays over either of them. The catalog is written under
+     * the generation specified rather than over the catalog the gallery was
+     * read from, which may still be mapped, and the older generations are 
+     * then deleted.
+     *
+     * @param gallery: the gallery to be written
+     * @param generation: the generation of the journal
+     * @param offset: the offset in the journal up to which the gallery
+     *          contains the changes
+     * @return boolean: true if the catalog was written; false otherwise
+     */
+    private boolean writeAlbums(IGalleryModel gallery, long generation, long offset) {
+        XmlAlbumsWriter xmlWriter = new XmlAlbumsWriter(gallery);
+        xmlWriter.setJournalPosition(generation, offset);
+        xmlWriter.write(mAlbumsFile);
+        BinaryAlbumsWriter writer = new BinaryAlbumsWriter(gallery);
+        writer.setJournalPosition(generation, offset);
+        if(!writer.write(AlbumsCatalog.getGenerationFile(mCatalogFile, generation))) {
+            return false;
+        }
+        AlbumsCatalog.deleteOlder(mCatalogFile, generation);
+        return true;
+    }
+
+    /**
+     * Private helper method that reads the records of the journal between
+     * the offsets specified.
+     *
+     * @param from: the offset of the first record
+     * @param to: the offset following the last record
+     * @return byte[]: the records
+     * @throws IOException: if the journal could not be read
+     */
+    private byte[] readRecords(long from, long to) throws IOException {
+        byte[] records = new byte[(int)(to - from)];
+        RandomAccessFile journal = new RandomAccessFile(mFile, "r");
+        try {
+            journal.seek(from);
+            journal.readFully(records);
+        }
+        finally {
+            journal.close();
+        }
+        return records;
+    }
+
+    /**
+     * Private helper method that keeps a copy of the journal next to it, 
+     * before the journal is started over without some of its records, so 
+     * that the changes they record can still be recovered by hand.
+     *
+     * @param reason: the reason the journal is set aside
+     */
+    private void setAside(String reason) {
+        new AtomicFile(mFile).backup();
+        Application.log("Set aside a copy of " + mFile + " before starting it over. " + reason);
+    }
+
+    /**
+     * Private helper method that takes a snapshot of the gallery's albums.
+     * The albums are copied, but they share their photos with the gallery;
+     * the albums whose photos have not been loaded yet are not loaded, their
+     * copies loading the photos on their own when the snapshot is written.
+     *
+     * @return IGalleryModel: the snapshot of the gallery
+     */
+    private IGalleryModel snapshot() {
+        List<IAlbumModel> albums = new ArrayList<IAlbumModel>(mGallery.getCount());
+        for(IAlbumModel album : mGallery) {
+            if(album instanceof AlbumModel) {
+                albums.add(((AlbumModel)album).copy());
+            }
+            else {
+                AlbumModel copy = new AlbumModel(album.getName(), album.getPhotos());
+                copy.setDescription(album.getDescription());
+                albums.add(copy);
+            }
+        }
+        return new GalleryModel(albums);
+    }
+
+    /**
+     * Private helper method that registers the journal as an observer of the
+     * gallery, of its albums and of their photos.
+     *
+     * @param gallery: the gallery to be journaled
+     */
+    private void watch(IGalleryModel gallery) {
+        gallery.registerChangeObserver(this);
+        for(IAlbumModel album : gallery) {
+            watch(album);
+        }
+    }
+
+    /**
+     * Private helper method that registers the journal as an observer of the
+     * album specified and of its photos.
+     *
+     * @param album: the album to be journaled
+     */
+    private void watch(IAlbumModel album) {
+        album.registerChangeObserver(this);
+        mIconPaths.put(album, album instanceof AlbumModel ? ((AlbumModel)album).getIconImagePath() : null);
+        if(album.isLoaded()) {
+            for(IPhotoModel photo : album) {
+                photo.registerChangeObserver(this);
+            }
+        }
+    }
+
+    /**
+     * Private helper method that removes the journal from the observers of
+     * the album specified and of its photos.
+     *
+     * @param album: the album no longer journaled
+     */
+    private void unwatch(IAlbumModel album) {
+        album.removeChangeObserver(this);
+        mIconPaths.remove(album);
+        if(album.isLoaded()) {
+            for(IPhotoModel photo : album) {
+                photo.removeChangeObserver(this);
+            }
+        }
+    }
+
+    /**
+     * Private helper method that determines the position of an album in the
+     * gallery.
+     *
+     * @param album: the album
+     * @return int: the position of the album; or -1 if the gallery does not
+     *          contain the album
+     */
+    private int indexOf(IAlbumModel album) {
+        int index = 0;
+        for(IAlbumModel galleryAlbum : mGallery) {
+            if(galleryAlbum == album) {
+                return index;
+            }
+            index++;
+        }
+        return -1;
+    }
+
+    /**
+     * Private helper method that writes a string to a record, as its length
+     * followed by its UTF-8 bytes.
+     *
+     * @param record: the record
+     * @param value: the string, or null
+     * @throws IOException: if the string could not be written
+     */
+    private static void writeString(DataOutputStream record, String value) throws IOException {
+        if(value == null) {
+            record.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(ENCODING);
+        record.writeInt(bytes.length);
+        record.write(bytes);
+    }
+
+    /**
+     * Private helper method that reads a string written by writeString().
+     *
+     * @param record: the record
+     * @return String: the string, or null
+     * @throws IOException: if the string could not be read
+     */
+    private static String readString(DataInputStream record) throws IOException {
+        int length = record.readInt();
+        if(length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        record.readFully(bytes);
+        return new String(bytes, ENCODING);
+    }
+
+    /**
+     * Private helper method that writes a big-endian integer into an array.
+     *
+     * @param bytes: the array
+     * @param offset: the offset of the integer in the array
+     * @param value: the integer
+     */
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte)(value >>> 24);
+        bytes[offset + 1] = (byte)(value >>> 16);
+        bytes[offset + 2] = (byte)(value >>> 8);
+        bytes[offset + 3] = (byte)value;
+    }
+
+    /**
+     * Private helper method that compares two strings which may be null.
+     *
+     * @param a: the first string, or null
+     * @param b: the second string, or null
+     * @return boolean: true if both strings are equal or null; false otherwise
+     */
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    // --------------------------------------------------------- Private Fields
+
+    private static final int MAGIC = 0x4a414c42;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_OVERHEAD = 8;
+    private static final int MAXIMUM_RECORD_SIZE = 16 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long CLOSE_TIMEOUT = 60;
+    private static final String ENCODING = "UTF-8";
+
+    private static final byte ADD_ALBUM = 1;
+    private static final byte REMOVE_ALBUM = 2;
+    private static final byte RENAME_ALBUM = 3;
+    private static final byte SET_ALBUM_ICON = 4;
+    private static final byte ADD_PHOTO = 5;
+    private static final byte REMOVE_PHOTO = 6;
+    private static final byte RENAME_PHOTO = 7;
+
+    private File mFile;
+    private File mCatalogFile;
+    private File mAlbumsFile;
+    private long mThreshold;
+    private long mGeneration;
+    private long mLength;
+    private boolean mCompacting;
+    private boolean mUnsynced;
+    private IGalleryModel mGallery;
+    private FileOutputStream mOutput;
+    private ExecutorService mExecutor;
+    private Map<IAlbumModel, String> mIconPaths;
+    private ByteArrayOutputStream mBuffer;
+    private DataOutputStream mRecord;
+    private ByteArrayOutputStream mRecords;
+    private CRC32 mChecksum;
+
+}
@@ -0,0 +1,182 @@
+// AtomicFile.java
+package io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.DateFormat;
+import java.util.Date;
+import runtime.Application;
+import common.IFileVerifier;
+
+/**
+ * A class that provides crash safe writing of a file. The new contents are
+ * written to a temporary file next to the file, forced to the disk, and 
+ * checked to be readable before the temporary file is atomically renamed 
+ * over the file. Until then the file keeps its previous contents, so a 
+ * crash or a failure while writing never leaves it truncated or half 
+ * written.
+ */
+public class AtomicFile {
+
+    /**
+     * Constructor that instantiates a new atomic file for the file specified.
+     * 
+     * @param file: the file to be written
+     */
+    public AtomicFile(File file) {
+        mFile = file.getAbsoluteFile();
+    }
+
+    /**
+     * Gets the file written through this atomic file.
+     * 
+     * @return File: the file
+     */
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * Starts writing a new version of the file, to a temporary file in the 
+     * same directory.
+     * 
+     * @return FileOutputStream: the stream to write the new contents to
+     * @throws IOException: if the temporary file could not be created
+     */
+    public FileOutputStream startWrite() throws IOException {
+        mTemporary = File.createTempFile(mFile.getName() + ".", ".tmp", mFile.getParentFile());
+        return new FileOutputStream(mTemporary);
+    }
+
+    /**
+     * Finishes writing the new version of the file: its contents are forced 
+     * to the disk, checked by the verifier, and the temporary file is renamed
+     * over the file. If anything fails, the temporary file is deleted and 
+     * the file is left as it was.
+     * 
+     * @param output: the stream returned by {@link #startWrite()}
+     * @param verifier: the verifier checking the new contents, or null
+     * @throws IOException: if the new contents could not be forced to the
+     *          disk, were rejected by the verifier, or could not replace the
+     *          file
+     */
+    public void finishWrite(FileOutputStream output, IFileVerifier verifier) throws IOException {
+        try {
+            output.flush();
+            output.getChannel().force(true);
+            output.close();
+            if(verifier != null) {
+                verifier.verify(mTemporary);
+            }
+            Path source = mTemporary.toPath();
+            Path target = mFile.toPath();
+            try {
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch(AtomicMoveNotSupportedException e) {
+                Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            mTemporary = null;
+            forceDirectory();
+        }
+        finally {
+            failWrite(output);
+        }
+    }
+
+    /**
+     * Abandons writing the new version of the file: the temporary file is 
+     * deleted and the file is left as it was. Does nothing once the new 
+     * version has replaced the file.
+     * 
+     * @param output: the stream returned by {@link #startWrite()}
+     */
+    public void failWrite(FileOutputStream output) {
+        try {
+            output.close();
+        }
+        catch(IOException e) {
+            Application.dump(e);
+        }
+        if(mTemporary != null) {
+            mTemporary.delete();
+            mTemporary = null;
+        }
+    }
+
+    /**
+     * Backs up the current version of the file, if it exists, next to it 
+     * under a name stamped with the current date and time. The backup is a
+     * hard link to the file, which costs no copying and keeps the current 
+     * contents once a new version replaces the file; where hard links are not
+     * supported, the file is copied.
+     */
+    public void backup() {
+        if(!mFile.exists()) {
+            return;
+        }
+        String date = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT)
+                .format(new Date(System.currentTimeMillis())).replace('/', '.').replace(':', '.');
+        String name = mFile.getName();
+        int extension = name.lastIndexOf('.');
+        String backupName = extension < 0 ? name + " [" + date + "]" 
+                : name.substring(0, extension) + " [" + date + "]" + name.substring(extension);
+        Path backup = new File(mFile.getParentFile(), backupName).toPath();
+        try {
+            Files.deleteIfExists(backup);
+            try {
+                Files.createLink(backup, mFile.toPath());
+            }
+            catch(IOException e) {
+                Files.copy(mFile.toPath(), backup, StandardCopyOption.COPY_ATTRIBUTES);
+            }
+            catch(UnsupportedOperationException e) {
+                Files.copy(mFile.toPath(), backup, StandardCopyOption.COPY_ATTRIBUTES);
+            }
+        }
+        catch(IOException e) {
+            Application.dump(e);
+        }
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Private helper method that forces the directory of the file to the 
+     * disk, so that the rename survives a crash. Not every platform can open
+     * a directory, in which case the rename is left to the file system.
+     */
+    private void forceDirectory() {
+        FileChannel directory = null;
+        try {
+            directory = FileChannel.open(mFile.getParentFile().toPath(), StandardOpenOption.READ);
+            directory.force(true);
+        }
+        catch(IOException e) {
+            // Directories cannot be opened on this platform...
+        }
+        finally {
+            if(directory != null) {
+                try {
+                    directory.close();
+                }
+                catch(IOException e) {
+                    Application.dump(e);
+                }
+            }
+        }
+    }
+
+    // --------------------------------------------------------- Private Fields
+
+    private File mFile;
+    private File mTemporary;
+
+}
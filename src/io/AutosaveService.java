@@ -0,0 +1,265 @@
+// AutosaveService.java
+package io;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.swing.Timer;
+import runtime.Application;
+import common.IAlbumModel;
+import common.IChangeObserver;
+import common.IGalleryModel;
+import common.IPhotoModel;
+import common.ISettingsModel;
+import common.ItemChangeEvent;
+
+/**
+ * A class that saves the changes made to the gallery and to the settings in
+ * the background, so that a crash does not lose the session. The changes are
+ * not saved one by one: each change postpones the save until the changes
+ * have quieted down for a while, so that a burst of changes is saved once,
+ * though never later than a maximum delay after the first of them.
+ *
+ * The save is started on the event dispatch thread, where the settings are
+ * copied, and is then performed on a background thread. The changes made to
+ * the gallery are already appended to the albums journal as they happen;
+ * saving them forces the journal to the disk. The settings are written to
+ * the settings file.
+ */
+public class AutosaveService implements IChangeObserver, PropertyChangeListener {
+
+    /**
+     * Constructor that instantiates a new autosave service for the gallery
+     * and the settings specified. Note: Instantiating an instance through
+     * this constructor does not save anything. After instantiating the
+     * instance you must call the start method.
+     *
+     * @param gallery: the gallery whose changes are saved
+     * @param journal: the journal the changes of the gallery are appended to
+     * @param settings: the settings whose changes are saved
+     * @param settingsFile: the file the settings are written to
+     * @param quietPeriod: the time, in milliseconds, without changes after
+     *          which the changes are saved
+     * @param maximumDelay: the longest time, in milliseconds, a change waits
+     *          for the changes to quiet down
+     */
+    public AutosaveService(IGalleryModel gallery, AlbumsJournal journal, ISettingsModel settings,
+            File settingsFile, long quietPeriod, long maximumDelay) {
+        mGallery = gallery;
+        mJournal = journal;
+        mSettings = settings;
+        mSettingsFile = settingsFile;
+        mQuietPeriod = (int)Math.max(1, Math.min(quietPeriod, Integer.MAX_VALUE));
+        mMaximumDelay = TimeUnit.MILLISECONDS.toNanos(Math.max(quietPeriod, maximumDelay));
+        mTimer = new Timer(mQuietPeriod, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                save();
+            }
+        });
+        mTimer.setRepeats(false);
+        mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Autosave");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Starts observing the changes made to the gallery, to its albums and
+     * their photos, and to the settings.
+     */
+    public void start() {
+        mSettings.registerObserver(this);
+        mGallery.registerChangeObserver(this);
+        for(IAlbumModel album : mGallery) {
+            watch(album);
+        }
+    }
+
+    /**
+     * Stops saving the changes, once any save under way has completed. The
+     * changes still waiting for the changes to quiet down are not saved:
+     * this is meant to be called when the application exits, which saves
+     * them itself.
+     */
+    public void close() {
+        synchronized(this) {
+            mClosed = true;
+            mTimer.stop();
+        }
+        mExecutor.shutdown();
+        try {
+            if(!mExecutor.awaitTermination(60, TimeUnit.SECONDS)) {
+                Application.log("Gave up waiting for the autosave to complete.");
+            }
+        }
+        catch(InterruptedException e) {
+            Application.dump(e);
+        }
+    }
+
+    // -------------------------------------------------------- IChangeObserver
+
+    /*
+     * @see common.IChangeObserver#updateChange(common.ItemChangeEvent)
+     */
+    @Override
+    public void updateChange(ItemChangeEvent e) {
+        switch(e.getType()) {
+        case ADDITION:
+            if(e.getChange() instanceof IAlbumModel) {
+                watch((IAlbumModel)e.getChange());
+            }
+            else {
+                e.getChange().registerChangeObserver(this);
+            }
+            break;
+        case REMOVAL:
+            if(e.getChange() instanceof IAlbumModel) {
+                unwatch((IAlbumModel)e.getChange());
+            }
+            else {
+                e.getChange().removeChangeObserver(this);
+            }
+            break;
+        case STATE:
+            // The photos change state each time their image is loaded, which
+            // does not change the gallery's contents.
+            if(e.getChange() instanceof IPhotoModel) {
+                return;
+            }
+            break;
+        case LOADED:
+            for(IPhotoModel photo : (IAlbumModel)e.getChange()) {
+                photo.registerChangeObserver(this);
+            }
+            return;
+        default:
+            break;
+        }
+        synchronized(this) {
+            mAlbumsChanged = true;
+        }
+        schedule();
+    }
+
+    // ------------------------------------------------- PropertyChangeListener
+
+    /*
+     * @see java.beans.PropertyChangeListener#propertyChange(java.beans.PropertyChangeEvent)
+     */
+    @Override
+    public void propertyChange(PropertyChangeEvent e) {
+        synchronized(this) {
+            mSettingsChanged = true;
+        }
+        schedule();
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Private helper method that postpones the save until the changes have
+     * quieted down, unless the first change not saved yet has been waiting
+     * for the maximum delay already.
+     */
+    private synchronized void schedule() {
+        if(mClosed) {
+            return;
+        }
+        long now = System.nanoTime();
+        if(!mTimer.isRunning()) {
+            mFirstChange = now;
+        }
+        long remaining = TimeUnit.NANOSECONDS.toMillis(mMaximumDelay - (now - mFirstChange));
+        mTimer.setInitialDelay((int)Math.max(0, Math.min(mQuietPeriod, remaining)));
+        mTimer.restart();
+    }
+
+    /**
+     * Private helper method that saves the changes made since the last save.
+     * It is called on the event dispatch thread, where the settings are
+     * copied before being written in the background.
+     */
+    private void save() {
+        final boolean albumsChanged;
+        final boolean settingsChanged;
+        synchronized(this) {
+            if(mClosed) {
+                return;
+            }
+            albumsChanged = mAlbumsChanged;
+            settingsChanged = mSettingsChanged;
+            mAlbumsChanged = false;
+            mSettingsChanged = false;
+        }
+        final XmlSettingsWriter settingsWriter = settingsChanged ? new XmlSettingsWriter(mSettings) : null;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if(albumsChanged) {
+                    mJournal.sync();
+                }
+                if(settingsWriter != null) {
+                    settingsWriter.write(mSettingsFile);
+                }
+            }
+        });
+    }
+
+    /**
+     * Private helper method that observes the album specified and, if they
+     * have been loaded, its photos.
+     *
+     * @param album: the album to be observed
+     */
+    private void watch(IAlbumModel album) {
+        album.registerChangeObserver(this);
+        if(album.isLoaded()) {
+            for(IPhotoModel photo : album) {
+                photo.registerChangeObserver(this);
+            }
+        }
+    }
+
+    /**
+     * Private helper method that no longer observes the album specified and
+     * its photos.
+     *
+     * @param album: the album no longer observed
+     */
+    private void unwatch(IAlbumModel album) {
+        album.removeChangeObserver(this);
+        if(album.isLoaded()) {
+            for(IPhotoModel photo : album) {
+                photo.removeChangeObserver(this);
+            }
+        }
+    }
+
+    // --------------------------------------------------------- Private Fields
+
+    private IGalleryModel mGallery;
+    private AlbumsJournal mJournal;
+    private ISettingsModel mSettings;
+    private File mSettingsFile;
+    private int mQuietPeriod;
+    private long mMaximumDelay;
+    private long mFirstChange;
+    private boolean mAlbumsChanged;
+    private boolean mSettingsChanged;
+    private boolean mClosed;
+    private Timer mTimer;
+    private ExecutorService mExecutor;
+
+}
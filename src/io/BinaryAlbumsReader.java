@@ -0,0 +1,278 @@
+// BinaryAlbumsReader.java
+package io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import model.AlbumModel;
+import model.PhotoModel;
+import runtime.Application;
+import common.IAlbumModel;
+import common.IAlbumsReader;
+import common.IPhotoLoader;
+import common.IPhotoModel;
+
+/**
+ * A class that provides an interface for reading in the gallery's contents
+ * from a binary catalog. The catalog is mapped in memory rather than parsed:
+ * its albums and photos are fixed-width records decoded in place, and only
+ * the strings they refer to are copied out of the mapping.
+ *
+ * The photos of the albums can also be loaded on demand: the albums are then
+ * read with their name, description, icon path and number of photos only, 
+ * and each of them creates its photos from the mapping the first time they
+ * are accessed. The mapping is kept for as long as an album has not loaded 
+ * its photos, even once the catalog has been written again under a newer
+ * generation, so the photos loaded are always those of the catalog the album
+ * was read from.
+ *
+ * @see io.AlbumsCatalog
+ */
+public class BinaryAlbumsReader implements IAlbumsReader {
+
+    /**
+     * Constructor that takes in the catalog from which the gallery contents
+     * are to be read. Note: Instantiating an instance through this
+     * constructor is not enough to be able get the contents. After
+     * instantiating the instance you must call the read method to perform
+     * the actual reading of the catalog.
+     *
+     * @param file: the catalog containing the gallery contents
+     */
+    public BinaryAlbumsReader(File file) {
+        this(file, false);
+    }
+
+    /**
+     * Constructor that takes in the catalog from which the gallery contents
+     * are to be read, and whether the photos of the albums are to be loaded
+     * on demand rather than read along with the albums.
+     *
+     * @param file: the catalog containing the gallery contents
+     * @param onDemand: true to load the photos of each album the first time
+     *          they are accessed; false to read them up front
+     */
+    public BinaryAlbumsReader(File file, boolean onDemand) {
+        mAlbums = new LinkedList<IAlbumModel>();
+        mFile = file;
+        mOnDemand = onDemand;
+    }
+
+    /*
+     * @see common.IAlbumsReader#read()
+     */
+    @Override
+    public void read() {
+        try {
+            MappedByteBuffer catalog = AlbumsCatalog.map(mFile);
+            byte[] bytes = new byte[BUFFER_SIZE];
+            mJournalGeneration = catalog.getLong(AlbumsCatalog.JOURNAL_GENERATION);
+            mJournalOffset = catalog.getLong(AlbumsCatalog.JOURNAL_OFFSET);
+            int albums = catalog.getInt(AlbumsCatalog.ALBUM_COUNT);
+            int photos = catalog.getInt(AlbumsCatalog.PHOTO_COUNT);
+            int albumsOffset = (int)catalog.getLong(AlbumsCatalog.ALBUMS_OFFSET);
+
+            for(int i = 0; i < albums; i++) {
+                int album = albumsOffset + i * AlbumsCatalog.ALBUM_RECORD_SIZE;
+                String name = readString(catalog, album + AlbumsCatalog.ALBUM_NAME, bytes);
+                String iconPath = readString(catalog, album + AlbumsCatalog.ALBUM_ICON, bytes);
+                int firstPhoto = catalog.getInt(album + AlbumsCatalog.ALBUM_FIRST_PHOTO);
+                int photoCount = catalog.getInt(album + AlbumsCatalog.ALBUM_PHOTO_COUNT);
+                if(firstPhoto < 0 || photoCount < 0 || firstPhoto > photos - photoCount) {
+                    throw new IOException("The album " + name + " of the catalog " + mFile +
+                            " refers to photos it does not contain.");
+                }
+
+                PhotoLoader loader = new PhotoLoader(catalog, firstPhoto, photoCount);
+                AlbumModel albumModel = mOnDemand 
+                    ? new AlbumModel(name, loader) : new AlbumModel(name);
+                albumModel.setDescription(readString(catalog, album + AlbumsCatalog.ALBUM_DESCRIPTION, bytes));
+                if(!mOnDemand) {
+                    for(IPhotoModel photoModel : loader.load()) {
+                        albumModel.addPhoto(photoModel);
+                    }
+                }
+
+                mAlbums.add(albumModel);
+                if(iconPath != null) {
+                    albumModel.loadIcon(iconPath);
+                }
+            }
+        }
+        catch(Exception e) {
+            // The gallery is not partially read, and the failure is reported
+            // so that the gallery is read from the xml albums file instead.
+            Application.dump(e);
+            mAlbums.clear();
+            mFailed = true;
+        }
+    }
+
+    /*
+     * @see common.IAlbumsReader#getAlbums()
+     */
+    @Override
+    public Collection<IAlbumModel> getAlbums() {
+        return mAlbums;
+    }
+
+    /*
+     * @see common.IAlbumsReader#hasFailed()
+     */
+    @Override
+    public boolean hasFailed() {
+        return mFailed;
+    }
+
+    /*
+     * @see common.IAlbumsReader#getJournalGeneration()
+     */
+    @Override
+    public long getJournalGeneration() {
+        return mJournalGeneration;
+    }
+
+    /*
+     * @see common.IAlbumsReader#getJournalOffset()
+     */
+    @Override
+    public long getJournalOffset() {
+        return mJournalOffset;
+    }
+
+    // --------------------------------------------------------- Inner Classes
+
+    /**
+     * Class that creates the photos of an album from the records of the 
+     * catalog. Each load decodes the records through its own view of the 
+     * mapping, so albums sharing the loader can load their photos from any
+     * thread.
+     */
+    private static class PhotoLoader implements IPhotoLoader {
+
+        /**
+         * Constructor that instantiates a new loader of the photos whose 
+         * records are at the range specified of the table of the photos.
+         *
+         * @param catalog: the catalog mapped in memory
+         * @param first: the index of the first photo of the album
+         * @param count: the number of photos of the album
+         */
+        public PhotoLoader(MappedByteBuffer catalog, int first, int count) {
+            mCatalog = catalog;
+            mFirst = first;
+            mCount = count;
+        }
+
+        /*
+         * @see common.IPhotoLoader#getCount()
+         */
+        @Override
+        public int getCount() {
+            return mCount;
+        }
+
+        /*
+         * @see common.IPhotoLoader#load()
+         */
+        @Override
+        public List<IPhotoModel> load() throws IOException {
+            ByteBuffer catalog = mCatalog.duplicate();
+            byte[] bytes = new byte[BUFFER_SIZE];
+            int photosOffset = (int)catalog.getLong(AlbumsCatalog.PHOTOS_OFFSET);
+            List<IPhotoModel> photos = new ArrayList<IPhotoModel>(mCount);
+            for(int i = mFirst; i < mFirst + mCount; i++) {
+                photos.add(readPhoto(catalog, photosOffset + i * AlbumsCatalog.PHOTO_RECORD_SIZE, bytes));
+            }
+            return photos;
+        }
+
+        /*
+         * @see common.IPhotoLoader#load(int)
+         */
+        @Override
+        public IPhotoModel load(int index) throws IOException {
+            if(index < 0 || index >= mCount) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mCount);
+            }
+            ByteBuffer catalog = mCatalog.duplicate();
+            int photosOffset = (int)catalog.getLong(AlbumsCatalog.PHOTOS_OFFSET);
+            return readPhoto(catalog, photosOffset + (mFirst + index) * AlbumsCatalog.PHOTO_RECORD_SIZE, 
+                    new byte[BUFFER_SIZE]);
+        }
+
+        private MappedByteBuffer mCatalog;
+        private int mFirst;
+        private int mCount;
+
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Private helper method that creates the photo a record describes.
+     *
+     * @param catalog: the catalog, or a view of it, positioned anywhere
+     * @param photo: the position in the catalog of the photo's record
+     * @param bytes: the buffer the strings are read into, if they fit
+     * @return IPhotoModel: the photo
+     * @throws IOException: if a string of the record is not within the table
+     *          of the strings
+     */
+    private static IPhotoModel readPhoto(ByteBuffer catalog, int photo, byte[] bytes) throws IOException {
+        IPhotoModel photoModel = new PhotoModel(readString(catalog, photo + AlbumsCatalog.PHOTO_PATH, bytes));
+        photoModel.setName(readString(catalog, photo + AlbumsCatalog.PHOTO_NAME, bytes));
+        photoModel.setDescription(readString(catalog, photo + AlbumsCatalog.PHOTO_DESCRIPTION, bytes));
+        return photoModel;
+    }
+
+    /**
+     * Private helper method that reads the string a record refers to.
+     *
+     * @param catalog: the catalog, or a view of it, positioned anywhere
+     * @param reference: the position in the catalog of the reference to the
+     *          string
+     * @param bytes: the buffer the string is read into, if it fits
+     * @return String: the string, or null if it is missing
+     * @throws IOException: if the string is not within the table of the
+     *          strings
+     */
+    private static String readString(ByteBuffer catalog, int reference, byte[] bytes) throws IOException {
+        int offset = catalog.getInt(reference);
+        if(offset == AlbumsCatalog.NULL_STRING) {
+            return null;
+        }
+        if(offset == AlbumsCatalog.EMPTY_STRING) {
+            return "";
+        }
+        long end = catalog.getLong(AlbumsCatalog.ALBUMS_OFFSET);
+        int position = AlbumsCatalog.HEADER_SIZE + offset;
+        int length = offset < 0 || position + 4L > end ? -1 : catalog.getInt(position);
+        if(length < 0 || position + 4L + length > end) {
+            throw new IOException("The catalog refers to a string outside of its table of the strings.");
+        }
+        if(length > bytes.length) {
+            bytes = new byte[length];
+        }
+        catalog.position(position + 4);
+        catalog.get(bytes, 0, length);
+        return new String(bytes, 0, length, AlbumsCatalog.ENCODING);
+    }
+
+    // --------------------------------------------------------- Private Fields
+
+    private static final int BUFFER_SIZE = 256;
+
+    private List<IAlbumModel> mAlbums;
+    private long mJournalGeneration;
+    private long mJournalOffset;
+    private boolean mOnDemand;
+    private boolean mFailed;
+    private File mFile;
+
+}
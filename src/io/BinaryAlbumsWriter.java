@@ -0,0 +1,180 @@
+// BinaryAlbumsWriter.java
+package io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import model.AlbumModel;
+import runtime.Application;
+import common.IAlbumModel;
+import common.IAlbumsWriter;
+import common.IGalleryModel;
+import common.IPhotoModel;
+
+/**
+ * A class that provides an interface for writing the gallery's contents to a
+ * binary catalog. The strings are streamed out to the catalog as the albums
+ * and photos are visited, while their fixed-width records, which only refer
+ * to the strings, are gathered in memory and written after them.
+ *
+ * @see io.AlbumsCatalog
+ */
+public class BinaryAlbumsWriter implements IAlbumsWriter {
+
+    /**
+     * Constructor that takes in the gallery model from which the contents of
+     * the catalog are to be taken from. Note: Instantiating an instance
+     * through this constructor does not result in a written catalog. After
+     * instantiating the instance you must call the write method to perform
+     * the actual writing of the catalog.
+     *
+     * @param model: the gallery model to be written to the catalog
+     */
+    public BinaryAlbumsWriter(IGalleryModel model) {
+        mModel = model;
+    }
+
+    /*
+     * @see common.IAlbumsWriter#setJournalPosition(long, long)
+     */
+    @Override
+    public void setJournalPosition(long generation, long offset) {
+        mJournalGeneration = generation;
+        mJournalOffset = offset;
+    }
+
+    /*
+     * @see common.IAlbumsWriter#write(java.io.File)
+     */
+    @Override
+    public boolean write(File file) {
+
+        AtomicFile atomicFile = new AtomicFile(file);
+        if(Application.Runtime.backupFilesEnabled()) {
+            atomicFile.backup();
+        }
+
+        FileOutputStream output = null;
+        try {
+            output = atomicFile.startWrite();
+            write(output.getChannel());
+            atomicFile.finishWrite(output, new AlbumsCatalog.Verifier(mAlbums, mPhotos));
+            return true;
+        }
+        catch(IOException e) {
+            Application.dump(e);
+        }
+        finally {
+            if(output != null) {
+                atomicFile.failWrite(output);
+            }
+        }
+        return false;
+
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Private helper method that writes the catalog to the channel specified,
+     * which must be positioned at its start.
+     *
+     * @param channel: the channel to write the catalog to
+     * @throws IOException: if the catalog could not be written
+     */
+    private void write(FileChannel channel) throws IOException {
+        channel.position(AlbumsCatalog.HEADER_SIZE);
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel),
+                BUFFER_SIZE));
+        ByteArrayOutputStream albumTable = new ByteArrayOutputStream();
+        ByteArrayOutputStream photoTable = new ByteArrayOutputStream();
+        DataOutputStream albumRecords = new DataOutputStream(albumTable);
+        DataOutputStream photoRecords = new DataOutputStream(photoTable);
+        mStringsLength = 0;
+        mAlbums = 0;
+        mPhotos = 0;
+
+        for(IAlbumModel album : mModel) {
+            String iconPath = album instanceof AlbumModel ? ((AlbumModel)album).getIconImagePath() : null;
+            albumRecords.writeInt(writeString(output, album.getName()));
+            albumRecords.writeInt(writeString(output, album.getDescription()));
+            albumRecords.writeInt(writeString(output, iconPath));
+            albumRecords.writeInt(mPhotos);
+            int photos = 0;
+            for(IPhotoModel photo : album) {
+                photoRecords.writeInt(writeString(output, photo.getName()));
+                photoRecords.writeInt(writeString(output, photo.getDescription()));
+                photoRecords.writeInt(writeString(output, photo.getPath()));
+                photos++;
+            }
+            albumRecords.writeInt(photos);
+            mPhotos += photos;
+            mAlbums++;
+        }
+
+        albumTable.writeTo(output);
+        photoTable.writeTo(output);
+        output.flush();
+
+        long albumsOffset = AlbumsCatalog.HEADER_SIZE + mStringsLength;
+        ByteBuffer header = ByteBuffer.allocate(AlbumsCatalog.HEADER_SIZE);
+        header.putInt(AlbumsCatalog.MAGIC_OFFSET, AlbumsCatalog.MAGIC);
+        header.putInt(AlbumsCatalog.VERSION_OFFSET, AlbumsCatalog.VERSION);
+        header.putLong(AlbumsCatalog.JOURNAL_GENERATION, mJournalGeneration);
+        header.putLong(AlbumsCatalog.JOURNAL_OFFSET, mJournalOffset);
+        header.putInt(AlbumsCatalog.ALBUM_COUNT, mAlbums);
+        header.putInt(AlbumsCatalog.PHOTO_COUNT, mPhotos);
+        header.putLong(AlbumsCatalog.STRINGS_OFFSET, AlbumsCatalog.HEADER_SIZE);
+        header.putLong(AlbumsCatalog.ALBUMS_OFFSET, albumsOffset);
+        header.putLong(AlbumsCatalog.PHOTOS_OFFSET, albumsOffset + albumTable.size());
+        while(header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    /**
+     * Private helper method that appends a string to the table of the
+     * strings, unless it is missing or empty.
+     *
+     * @param output: the stream of the table of the strings
+     * @param value: the string, or null
+     * @return int: the reference to the string
+     * @throws IOException: if the string could not be written, or the table
+     *          of the strings has grown too large to be referred to
+     */
+    private int writeString(DataOutputStream output, String value) throws IOException {
+        if(value == null) {
+            return AlbumsCatalog.NULL_STRING;
+        }
+        if(value.isEmpty()) {
+            return AlbumsCatalog.EMPTY_STRING;
+        }
+        if(mStringsLength > Integer.MAX_VALUE) {
+            throw new IOException("The strings of the gallery are too large to be written to a catalog.");
+        }
+        int reference = (int)mStringsLength;
+        byte[] bytes = value.getBytes(AlbumsCatalog.ENCODING);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+        mStringsLength += 4 + bytes.length;
+        return reference;
+    }
+
+    // --------------------------------------------------------- Private Fields
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private IGalleryModel mModel;
+    private long mJournalGeneration;
+    private long mJournalOffset;
+    private long mStringsLength;
+    private int mAlbums;
+    private int mPhotos;
+
+}
@@ -0,0 +1,403 @@
+// DirectoryImporter.java
+package io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingUtilities;
+import model.AlbumModel;
+import model.PhotoModel;
+import runtime.Application;
+import common.IAlbumModel;
+import common.IImportObserver;
+import common.IPhotoModel;
+
+/**
+ * A class that imports a folder tree into the gallery, creating an album for
+ * each folder containing images. The tree is walked on a thread of its own,
+ * and each file of a supported format found is handed over to a pool of
+ * threads that probe it, reading its header to check that it is an image
+ * that can be decoded. The walk and the probing overlap: the walker only
+ * gets ahead of the probes by a bounded number of files, so walking a large
+ * tree does not queue up every file of it in memory.
+ *
+ * An album is created for a folder once it has been walked and all of its
+ * images have been probed. Its photos are sorted by path, and the albums are
+ * handed over in the order the walk leaves their folders, subfolders first,
+ * so an import produces the same albums in the same order whatever the
+ * number of threads. The import can be
+ * cancelled at any time: the albums handed over until then are kept.
+ */
+public class DirectoryImporter {
+
+    /**
+     * Constructor that instantiates a new importer of the folder tree
+     * specified. Note: Instantiating an instance through this constructor
+     * does not import anything. After instantiating the instance you must
+     * call the start method.
+     *
+     * @param root: the root folder of the tree to be imported
+     * @param threads: the number of threads probing the images; or 0 for two
+     *          per processor, since probing mostly waits for the disk
+     */
+    public DirectoryImporter(File root, int threads) {
+        if(threads <= 0) {
+            threads = 2 * Runtime.getRuntime().availableProcessors();
+        }
+        mRoot = root.toPath();
+        mThreads = threads;
+        mPermits = new Semaphore(threads * QUEUED_PER_THREAD);
+        mFolders = new LinkedList<Folder>();
+        mFound = new AtomicInteger();
+        mProbed = new AtomicInteger();
+        mProgressPosted = new AtomicBoolean();
+        mProbes = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int mCount = 0;
+            @Override
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Import Probe " + (++mCount));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Starts the import in the background. The observer is notified on the
+     * Event Dispatch Thread of the progress of the import, of each album
+     * imported and of the completion of the import.
+     *
+     * @param observer: the observer of the import
+     */
+    public void start(IImportObserver observer) {
+        mObserver = observer;
+        Thread walker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                walk();
+            }
+        }, "Import Walker");
+        walker.setDaemon(true);
+        walker.start();
+    }
+
+    /**
+     * Cancels the import. The files found but not probed yet are skipped,
+     * and no album is handed over once the import has been cancelled; the
+     * albums handed over already are still delivered to the observer.
+     */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    /**
+     * Checks if the import has been cancelled.
+     *
+     * @return boolean: true if the import has been cancelled; false otherwise
+     */
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Gets the number of threads probing the images.
+     *
+     * @return int: the number of probing threads
+     */
+    public int getThreads() {
+        return mThreads;
+    }
+
+    // --------------------------------------------------------- Inner Classes
+
+    /**
+     * Class that gathers the photos of a folder as they are probed.
+     */
+    private static class Folder {
+
+        /**
+         * Constructor that instantiates a new folder, none of whose images
+         * has been found yet.
+         *
+         * @param path: the path of the folder
+         */
+        public Folder(Path path) {
+            mPath = path;
+            mPhotos = new ArrayList<IPhotoModel>();
+        }
+
+        private Path mPath;
+        private List<IPhotoModel> mPhotos;
+        private int mPending;
+        private boolean mWalked;
+
+    }
+
+    /**
+     * Class that visits the folder tree, handing each file of a supported
+     * format over to the probing threads.
+     */
+    private class Walker extends SimpleFileVisitor<Path> {
+
+        /*
+         * @see java.nio.file.SimpleFileVisitor#preVisitDirectory(java.lang.Object, java.nio.file.attribute.BasicFileAttributes)
+         */
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            if(mCancelled) {
+                return FileVisitResult.TERMINATE;
+            }
+            mStack.push(new Folder(dir));
+            return FileVisitResult.CONTINUE;
+        }
+
+        /*
+         * @see java.nio.file.SimpleFileVisitor#visitFile(java.lang.Object, java.nio.file.attribute.BasicFileAttributes)
+         */
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            if(mCancelled) {
+                return FileVisitResult.TERMINATE;
+            }
+            if(mStack.isEmpty() || !attrs.isRegularFile() 
+                    || !ImageDecoder.isSupported(file.getFileName().toString())) {
+                return FileVisitResult.CONTINUE;
+            }
+            try {
+                mPermits.acquire();
+            }
+            catch(InterruptedException e) {
+                Application.dump(e);
+                mCancelled = true;
+                return FileVisitResult.TERMINATE;
+            }
+            final Folder folder = mStack.peek();
+            final Path path = file;
+            synchronized(DirectoryImporter.this) {
+                folder.mPending++;
+                mPending++;
+            }
+            mFound.incrementAndGet();
+            mProbes.execute(new Runnable() {
+                @Override
+                public void run() {
+                    probe(folder, path);
+                }
+            });
+            postProgress();
+            return FileVisitResult.CONTINUE;
+        }
+
+        /*
+         * @see java.nio.file.SimpleFileVisitor#visitFileFailed(java.lang.Object, java.io.IOException)
+         */
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException e) {
+            // A folder that cannot be read is skipped rather than failing the
+            // whole import.
+            Application.log("Skipped " + file + " while importing: " + e);
+            return mCancelled ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+        }
+
+        /*
+         * @see java.nio.file.SimpleFileVisitor#postVisitDirectory(java.lang.Object, java.io.IOException)
+         */
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+            if(e != null) {
+                Application.log("Could not walk all of " + dir + " while importing: " + e);
+            }
+            Folder folder = mStack.pop();
+            synchronized(DirectoryImporter.this) {
+                folder.mWalked = true;
+                mFolders.add(folder);
+                publish();
+            }
+            return mCancelled ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+        }
+
+        private LinkedList<Folder> mStack = new LinkedList<Folder>();
+
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Private helper method that walks the folder tree, and then waits for
+     * the probes to complete the import.
+     */
+    private void walk() {
+        try {
+            Files.walkFileTree(mRoot, new Walker());
+        }
+        catch(IOException e) {
+            Application.dump(e);
+        }
+        catch(RuntimeException e) {
+            Application.dump(e);
+        }
+        finally {
+            synchronized(this) {
+                mWalked = true;
+                publish();
+            }
+        }
+    }
+
+    /**
+     * Private helper method that probes a file found by the walker, adding
+     * a photo for it to its folder if it is an image that can be read.
+     *
+     * @param folder: the folder of the file
+     * @param file: the file to be probed
+     */
+    private void probe(Folder folder, Path file) {
+        try {
+            if(!mCancelled) {
+                new ImageDecoder(file.toFile()).getSize();
+                PhotoModel photo = new PhotoModel(file.toString());
+                synchronized(this) {
+                    folder.mPhotos.add(photo);
+                }
+            }
+        }
+        catch(IOException e) {
+            Application.log("Skipped " + file + " while importing: " + e.getMessage());
+        }
+        catch(RuntimeException e) {
+            // Some image readers fail with runtime exceptions on damaged
+            // files, which must not stop the import.
+            Application.dump(e);
+        }
+        finally {
+            mPermits.release();
+            mProbed.incrementAndGet();
+            synchronized(this) {
+                folder.mPending--;
+                mPending--;
+                publish();
+            }
+            postProgress();
+        }
+    }
+
+    /**
+     * Private helper method that hands over the albums of the folders that
+     * are complete, in the order their folders were walked, and notifies
+     * the observer once the import has completed. It must be called while
+     * holding the lock of this importer.
+     */
+    private void publish() {
+        while(!mCancelled && !mFolders.isEmpty()) {
+            Folder folder = mFolders.getFirst();
+            if(!folder.mWalked || folder.mPending > 0) {
+                break;
+            }
+            mFolders.removeFirst();
+            if(!folder.mPhotos.isEmpty()) {
+                final IAlbumModel album = createAlbum(folder);
+                mAlbums++;
+                mPhotos += album.getCount();
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        mObserver.imported(album);
+                    }
+                });
+            }
+        }
+
+        if(mWalked && mPending == 0 && !mCompleted) {
+            mCompleted = true;
+            mProbes.shutdown();
+            final int albums = mAlbums;
+            final int photos = mPhotos;
+            final boolean cancelled = mCancelled;
+            Application.log("Imported " + photos + " photos in " + albums + " albums from " + mRoot +
+                    (cancelled ? " before the import was cancelled." : "."));
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    mObserver.progress(mFound.get(), mProbed.get());
+                    mObserver.completed(albums, photos, cancelled);
+                }
+            });
+        }
+    }
+
+    /**
+     * Private helper method that creates the album of a folder whose images
+     * have all been probed.
+     *
+     * @param folder: the folder
+     * @return IAlbumModel: the album, containing the photos sorted by path
+     */
+    private IAlbumModel createAlbum(Folder folder) {
+        Path name = folder.mPath.getFileName();
+        AlbumModel album = new AlbumModel(name != null ? name.toString() : folder.mPath.toString());
+        Collections.sort(folder.mPhotos, new Comparator<IPhotoModel>() {
+            @Override
+            public int compare(IPhotoModel first, IPhotoModel second) {
+                return first.getPath().compareTo(second.getPath());
+            }
+        });
+        for(IPhotoModel photo : folder.mPhotos) {
+            album.addPhoto(photo);
+        }
+        return album;
+    }
+
+    /**
+     * Private helper method that notifies the observer of the progress of
+     * the import, unless a notification is still waiting to be delivered,
+     * so that the Event Dispatch Thread is not flooded with them.
+     */
+    private void postProgress() {
+        if(mProgressPosted.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    mProgressPosted.set(false);
+                    mObserver.progress(mFound.get(), mProbed.get());
+                }
+            });
+        }
+    }
+
+    // --------------------------------------------------------- Private Fields
+
+    /** The number of files the walker may get ahead of each probing thread. */
+    private static final int QUEUED_PER_THREAD = 64;
+
+    private Path mRoot;
+    private int mThreads;
+    private IImportObserver mObserver;
+    private ExecutorService mProbes;
+    private Semaphore mPermits;
+    private LinkedList<Folder> mFolders;
+    private AtomicInteger mFound;
+    private AtomicInteger mProbed;
+    private AtomicBoolean mProgressPosted;
+    private volatile boolean mCancelled;
+    private boolean mWalked;
+    private boolean mCompleted;
+    private int mPending;
+    private int mAlbums;
+    private int mPhotos;
+
+}
@@ -0,0 +1,398 @@
+// ImageDecoder.java
+package io;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import model.ImagingExecutor;
+import runtime.Application;
+
+/**
+ * A class that provides an interface for decoding the image stored in a file.
+ * Unlike ImageIO.read(), an image decoder can decode a subsampled version of
+ * the image or only a region of it, so that a small thumbnail of a large photo
+ * never requires the full resolution image to be held in memory.
+ */
+public class ImageDecoder {
+
+    /**
+     * Constructor that takes in the file containing the image to be decoded.
+     * Note: Instantiating an instance through this constructor does not read
+     * anything from the file. The file is only opened when one of the decode
+     * methods is called.
+     *
+     * @param file: the file containing the image
+     */
+    public ImageDecoder(File file) {
+        mFile = file;
+        mData = null;
+    }
+
+    /**
+     * Constructor that takes in the contents of an image file that have 
+     * already been read into memory, so that the image can be decoded without
+     * reading the file again.
+     *
+     * @param file: the file the contents were read from
+     * @param data: the contents of the file
+     */
+    public ImageDecoder(File file, byte[] data) {
+        mFile = file;
+        mData = data;
+    }
+
+    /**
+     * Reads the dimensions of the image from the file's header without
+     * decoding any of the image's pixels.
+     *
+     * @return Dimension: the width and height of the image
+     * @throws IOException: if the file could not be read or is not an image
+     */
+    public Dimension getSize() throws IOException {
+        ImageInputStream input = openStream();
+        try {
+            ImageReader reader = openReader(input);
+            try {
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            }
+            finally {
+                reader.dispose();
+            }
+        }
+        finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Decodes the full resolution image.
+     *
+     * @return BufferedImage: the decoded image
+     * @throws IOException: if the file could not be read or is not an image
+     */
+    public BufferedImage decode() throws IOException {
+        return decode(null, 1);
+    }
+
+    /**
+     * Decodes the image subsampled by the largest integer factor that still
+     * leaves it large enough to be scaled to fit within the width and height
+     * specified. The returned image is therefore close to, but never smaller
+     * than, the size it will be displayed at.
+     *
+     * @param width: the width the decoded image is to be fit within
+     * @param height: the height the decoded image is to be fit within
+     * @return BufferedImage: the decoded image
+     * @throws IOException: if the file could not be read or is not an image
+     */
+    public BufferedImage decode(int width, int height) throws IOException {
+        ImageInputStream input = openStream();
+        try {
+            ImageReader reader = openReader(input);
+            try {
+                int subsampling = getSubsampling(reader.getWidth(0), reader.getHeight(0), width, height);
+                return read(reader, null, subsampling);
+            }
+            finally {
+                reader.dispose();
+            }
+        }
+        finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Decodes only the specified region of the image, subsampled by the factor
+     * specified. Only the pixels within the region are held in memory.
+     *
+     * @param region: the region of the full resolution image to decode, or
+     *          null to decode the whole image
+     * @param subsampling: the factor by which to subsample the region
+     * @return BufferedImage: the decoded region
+     * @throws IOException: if the file could not be read or is not an image
+     */
+    public BufferedImage decode(Rectangle region, int subsampling) throws IOException {
+        ImageInputStream input = openStream();
+        try {
+            ImageReader reader = openReader(input);
+            try {
+                return read(reader, region, subsampling);
+            }
+            finally {
+                reader.dispose();
+            }
+        }
+        finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Opens a reader on the image that can decode any number of its regions
+     * with {@link #decode(ImageReader, Rectangle, int)}, so that decoding
+     * many regions of the same image does not open the file and parse its
+     * header again for each of them. The reader is not thread safe and must
+     * be closed with {@link #close(ImageReader)} once it is no longer needed.
+     *
+     * @return ImageReader: the reader attached to the image
+     * @throws IOException: if the file could not be read or is not an image
+     */
+    public ImageReader openReader() throws IOException {
+        ImageInputStream input = openStream();
+        try {
+            ImageReader reader = openReader(input);
+            // Each region is read from the start of the image again, so the
+            // reader must be able to seek back in the stream.
+            reader.setInput(input, false, true);
+            return reader;
+        }
+        catch(IOException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Decodes only the specified region of the image with a reader opened by
+     * {@link #openReader()}, subsampled by the factor specified.
+     *
+     * @param reader: the reader opened on the image
+     * @param region: the region of the full resolution image to decode
+     * @param subsampling: the factor by which to subsample the region
+     * @return BufferedImage: the decoded region
+     * @throws IOException: if the region could not be decoded
+     */
+    public BufferedImage decode(ImageReader reader, Rectangle region, int subsampling) throws IOException {
+        return read(reader, region, subsampling);
+    }
+
+    /**
+     * Closes a reader opened by {@link #openReader()}, along with the stream
+     * it reads the image from.
+     *
+     * @param reader: the reader to be closed
+     */
+    public static void close(ImageReader reader) {
+        Object input = reader.getInput();
+        reader.dispose();
+        if(input instanceof ImageInputStream) {
+            try {
+                ((ImageInputStream)input).close();
+            }
+            catch(IOException e) {
+                Application.dump(e);
+            }
+        }
+    }
+
+    /**
+     * Gets the file containing the image this decoder decodes. If the decoder
+     * was given the file's contents, the file is not read again.
+     *
+     * @return File: the file containing the image
+     */
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * Checks if the name of a file has the extension of one of the image 
+     * formats supported by the gallery. The contents of the file are not 
+     * checked.
+     *
+     * @param fileName: the name of the file
+     * @return boolean: true if the format of the file is supported; false
+     *          otherwise
+     */
+    public static boolean isSupported(String fileName) {
+        int idx = fileName.lastIndexOf('.');
+        String ext = fileName.substring(idx + 1).toLowerCase();
+        for(String supported : SUPPORTED_EXTENSIONS) {
+            if(ext.compareTo(supported) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines the largest integer subsampling factor for which an image of
+     * the specified size, once subsampled, is still at least as large as the
+     * image would be after being scaled to fit within the target width and
+     * height. The result is never less than 1.
+     *
+     * @param imageWidth: the width of the full resolution image
+     * @param imageHeight: the height of the full resolution image
+     * @param width: the target width
+     * @param height: the target height
+     * @return int: the subsampling factor
+     */
+    public static int getSubsampling(int imageWidth, int imageHeight, int width, int height) {
+        if(width <= 0 || height <= 0 || imageWidth <= 0 || imageHeight <= 0) {
+            return 1;
+        }
+        double scale = Math.min((double)width / imageWidth, (double)height / imageHeight);
+        int fitWidth = Math.max(1, (int)Math.ceil(imageWidth * scale));
+        int fitHeight = Math.max(1, (int)Math.ceil(imageHeight * scale));
+        int subsampling = Math.min(imageWidth / fitWidth, imageHeight / fitHeight);
+        return Math.max(1, subsampling);
+    }
+
+    /**
+     * Scales the image passed in so that it fits within the width and height
+     * specified while preserving its aspect ratio.
+     *
+     * @param source: the image to be scaled
+     * @param width: the width the scaled image must fit within
+     * @param height: the height the scaled image must fit within
+     * @return BufferedImage: the resulting scaled image
+     */
+    public static BufferedImage scale(Image source, int width, int height) {
+        return scale(source, width, height, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    }
+
+    /**
+     * Scales the image passed in so that it fits within the width and height
+     * specified while preserving its aspect ratio, using the interpolation
+     * specified.
+     *
+     * @param source: the image to be scaled
+     * @param width: the width the scaled image must fit within
+     * @param height: the height the scaled image must fit within
+     * @param interpolation: one of the RenderingHints.VALUE_INTERPOLATION_*
+     *          values
+     * @return BufferedImage: the resulting scaled image
+     */
+    public static BufferedImage scale(Image source, int width, int height, Object interpolation) {
+        Dimension size = getScaledSize(source.getWidth(null), source.getHeight(null), width, height);
+        return resize(source, size.width, size.height, interpolation);
+    }
+
+    /**
+     * Determines the size of an image of the size specified once scaled to 
+     * fit within the width and height specified while preserving its aspect
+     * ratio.
+     *
+     * @param imageWidth: the width of the image
+     * @param imageHeight: the height of the image
+     * @param width: the width the scaled image must fit within
+     * @param height: the height the scaled image must fit within
+     * @return Dimension: the size of the scaled image
+     */
+    public static Dimension getScaledSize(int imageWidth, int imageHeight, int width, int height) {
+        double thumbRatio = (double)width / (double)height;
+        double imageRatio = (double)imageWidth / (double)imageHeight;
+
+        if (thumbRatio < imageRatio) {
+            height = (int)(width / imageRatio);
+        } else {
+            width = (int)(height * imageRatio);
+        }
+        return new Dimension(Math.max(1, width), Math.max(1, height));
+    }
+
+    /**
+     * Resizes the image passed in to exactly the width and height specified,
+     * using the interpolation specified.
+     *
+     * @param source: the image to be resized
+     * @param width: the width of the resized image
+     * @param height: the height of the resized image
+     * @param interpolation: one of the RenderingHints.VALUE_INTERPOLATION_*
+     *          values
+     * @return BufferedImage: the resulting resized image
+     */
+    public static BufferedImage resize(Image source, int width, int height, Object interpolation) {
+        ImagingExecutor.checkThread("Resizing an image to " + width + "x" + height);
+        BufferedImage thumb = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = thumb.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        g2.drawImage(source, 0, 0, width, height, null);
+        g2.dispose();
+
+        return thumb;
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Private helper method that opens an image input stream on the file.
+     *
+     * @return ImageInputStream: the opened stream
+     * @throws IOException: if the file could not be opened
+     */
+    private ImageInputStream openStream() throws IOException {
+        ImageInputStream input;
+        if(mData != null) {
+            input = new MemoryCacheImageInputStream(new ByteArrayInputStream(mData));
+        }
+        else {
+            input = ImageIO.createImageInputStream(mFile);
+        }
+        if(input == null) {
+            throw new IOException("Unable to open image file: " + mFile);
+        }
+        return input;
+    }
+
+    /**
+     * Private helper method that finds an image reader capable of decoding the
+     * stream passed in and attaches it to the stream.
+     *
+     * @param input: the stream to decode
+     * @return ImageReader: the reader attached to the stream
+     * @throws IOException: if no reader supports the stream's format
+     */
+    private ImageReader openReader(ImageInputStream input) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if(!readers.hasNext()) {
+            throw new IOException("Unsupported image format: " + mFile);
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(input, true, true);
+        return reader;
+    }
+
+    /**
+     * Private helper method that performs the actual decoding of the first
+     * image of the reader passed in.
+     *
+     * @param reader: the reader to decode with
+     * @param region: the region to decode, or null for the whole image
+     * @param subsampling: the subsampling factor in both directions
+     * @return BufferedImage: the decoded image
+     * @throws IOException: if decoding fails
+     */
+    private BufferedImage read(ImageReader reader, Rectangle region, int subsampling) throws IOException {
+        ImagingExecutor.checkThread("Decoding " + mFile);
+        ImageReadParam param = reader.getDefaultReadParam();
+        if(region != null) {
+            param.setSourceRegion(region);
+        }
+        if(subsampling > 1) {
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        }
+        return reader.read(0, param);
+    }
+
+    // --------------------------------------------------------- Private Fields
+
+    private static final String[] SUPPORTED_EXTENSIONS = new String[] { "jpg", "jpeg", "png" };
+
+    private File mFile;
+    private byte[] mData;
+
+}
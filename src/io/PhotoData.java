@@ -0,0 +1,112 @@
+// PhotoData.java
+package io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import com.drew.imaging.jpeg.JpegMetadataReader;
+import com.drew.imaging.jpeg.JpegProcessingException;
+import com.drew.imaging.jpeg.JpegSegmentReader;
+import com.drew.metadata.Metadata;
+import model.ImagingExecutor;
+
+/**
+ * A class that holds the complete contents of a photo's file in memory, so
+ * that both its metadata and its pixels can be extracted from a single read
+ * of the file. Reading a photo's metadata and decoding its image separately
+ * otherwise opens and reads the same file twice, which doubles the I/O per
+ * photo on cold caches and network mounts.
+ */
+public class PhotoData {
+
+    /**
+     * Private constructor that takes in the file and the contents read from 
+     * it. Instances are created through {@link #read(File)}.
+     *
+     * @param file: the photo's file
+     * @param data: the contents of the file
+     */
+    private PhotoData(File file, byte[] data) {
+        mFile = file;
+        mData = data;
+    }
+
+    /**
+     * Reads the entire contents of the file specified with a single pass
+     * over the file.
+     *
+     * @param file: the photo's file
+     * @return PhotoData: the contents of the file
+     * @throws IOException: if the file could not be read
+     */
+    public static PhotoData read(File file) throws IOException {
+        ImagingExecutor.checkThread("Reading " + file);
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if(size > Integer.MAX_VALUE) {
+                throw new IOException("File too large: " + file);
+            }
+            byte[] data = new byte[(int)size];
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while(buffer.hasRemaining()) {
+                if(channel.read(buffer) < 0) {
+                    throw new IOException("Unexpected end of file: " + file);
+                }
+            }
+            return new PhotoData(file, data);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Gets the file the contents were read from.
+     *
+     * @return File: the photo's file
+     */
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * Gets the number of bytes that were read from the file.
+     *
+     * @return int: the length of the contents
+     */
+    public int getLength() {
+        return mData.length;
+    }
+
+    /**
+     * Extracts the metadata of the photo from the contents of its file. Only
+     * JPEG files contain metadata that can be extracted.
+     *
+     * @return Metadata: the metadata of the photo
+     * @throws JpegProcessingException: if the contents are not a valid JPEG
+     */
+    public Metadata getMetadata() throws JpegProcessingException {
+        JpegSegmentReader reader = new JpegSegmentReader(mData);
+        return JpegMetadataReader.extractMetadataFromJpegSegmentReader(reader);
+    }
+
+    /**
+     * Gets a decoder that decodes the photo's image from the contents of its
+     * file rather than from the file itself.
+     *
+     * @return ImageDecoder: the decoder for the photo's image
+     */
+    public ImageDecoder getDecoder() {
+        return new ImageDecoder(mFile, mData);
+    }
+
+    // --------------------------------------------------------- Private Fields
+
+    private File mFile;
+    private byte[] mData;
+
+}
@@ -0,0 +1,377 @@
+// ThumbnailCache.java
+package io;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import javax.imageio.ImageIO;
+import runtime.Application;
+
+/**
+ * A class that provides a persistent, size limited cache of photo thumbnails
+ * on disk. Each entry is keyed by the absolute path of the photo and the
+ * dimensions of the thumbnail, and records the length and last modified time
+ * of the photo it was created from, so that an entry is never used after the
+ * photo has changed. Entries are read on the calling thread, which is
+ * normally one of the imaging threads creating the thumbnail anyway, so that
+ * it does not wait for other work of the cache. Indexing, writing, evicting
+ * and checking entries in the background happen on a background thread.
+ *
+ * When the cache grows beyond its maximum size, the least recently used
+ * entries are deleted. The last modified time of an entry's file is updated
+ * each time it is read, so the least recently used order survives restarts.
+ */
+public class ThumbnailCache {
+
+    /**
+     * Constructor that instantiates a new thumbnail cache stored in the
+     * directory specified. The directory is created if it does not exist and
+     * its existing entries are indexed in the background.
+     *
+     * @param directory: the directory in which the thumbnails are stored
+     * @param maximumSize: the maximum size of the cache in bytes
+     * @param validateInBackground: if true, entries are returned without first
+     *          checking the photo they were created from and are re-checked in
+     *          the background instead; if false, each entry is checked before
+     *          it is returned
+     */
+    public ThumbnailCache(File directory, long maximumSize, boolean validateInBackground) {
+        mDirectory = directory;
+        mMaximumSize = maximumSize;
+        mValidateInBackground = validateInBackground;
+        mEntries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+        mCurrentSize = 0;
+        mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Thumbnail Cache");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                index();
+            }
+        });
+    }
+
+    /**
+     * Reads the thumbnail of the photo specified from the cache. The entry is
+     * read on the calling thread, so this must not be called on the Event
+     * Dispatch Thread.
+     *
+     * @param source: the photo the thumbnail was created from
+     * @param width: the width of the thumbnail
+     * @param height: the height of the thumbnail
+     * @return BufferedImage: the thumbnail; or null if the cache has no valid
+     *          thumbnail of the photo with the dimensions specified
+     */
+    public BufferedImage read(File source, int width, int height) {
+        return readEntry(source, width, height);
+    }
+
+    /**
+     * Writes the thumbnail of the photo specified to the cache. The write is
+     * performed in the background and this method returns immediately.
+     *
+     * @param source: the photo the thumbnail was created from
+     * @param width: the width the thumbnail was created for
+     * @param height: the height the thumbnail was created for
+     * @param thumbnail: the thumbnail to be stored
+     */
+    public void write(final File source, final int width, final int height, final BufferedImage thumbnail) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeEntry(source, width, height, thumbnail);
+            }
+        });
+    }
+
+    /**
+     * Gets the directory in which the thumbnails are stored.
+     *
+     * @return File: the directory of the cache
+     */
+    public File getDirectory() {
+        return mDirectory;
+    }
+
+    /**
+     * Gets the current size of all the entries in the cache in bytes.
+     *
+     * @return long: the size of the cache in bytes
+     */
+    public synchronized long getSize() {
+        return mCurrentSize;
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Private helper method that indexes the entries already present in the
+     * cache directory, from least to most recently used.
+     */
+    private void index() {
+        if(!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Application.dump(new IOException("Unable to create thumbnail cache: " + mDirectory));
+            return;
+        }
+        File[] files = mDirectory.listFiles();
+        if(files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        synchronized(this) {
+            for(File file : files) {
+                // An entry left half written by a crash is deleted.
+                if(file.getName().endsWith(TEMPORARY_EXTENSION)) {
+                    file.delete();
+                    continue;
+                }
+                // An entry read and found to be stale meanwhile has already
+                // been deleted.
+                if(file.getName().endsWith(ENTRY_EXTENSION) && file.isFile()) {
+                    mEntries.put(file.getName(), file.length());
+                    mCurrentSize += file.length();
+                }
+            }
+        }
+        evict();
+    }
+
+    /**
+     * Private helper method that performs the actual reading of an entry.
+     *
+     * @param source: the photo the thumbnail was created from
+     * @param width: the width of the thumbnail
+     * @param height: the height of the thumbnail
+     * @return BufferedImage: the thumbnail; or null if there is no valid entry
+     */
+    private BufferedImage readEntry(final File source, int width, int height) {
+        final File entry = getEntryFile(source, width, height);
+        if(!entry.isFile()) {
+            return null;
+        }
+        BufferedImage thumbnail = null;
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(entry)));
+            try {
+                if(in.readInt() != ENTRY_VERSION) {
+                    thumbnail = null;
+                }
+                else {
+                    final long length = in.readLong();
+                    final long modified = in.readLong();
+                    if(mValidateInBackground) {
+                        mExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                if(!isCurrent(source, length, modified)) {
+                                    removeEntry(entry);
+                                }
+                            }
+                        });
+                        thumbnail = ImageIO.read(in);
+                    }
+                    else if(isCurrent(source, length, modified)) {
+                        thumbnail = ImageIO.read(in);
+                    }
+                }
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch(IOException e) {
+            Application.dump(e);
+        }
+
+        if(thumbnail == null) {
+            removeEntry(entry);
+            return null;
+        }
+        entry.setLastModified(System.currentTimeMillis());
+        synchronized(this) {
+            mEntries.get(entry.getName());
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Private helper method that performs the actual writing of an entry.
+     *
+     * @param source: the photo the thumbnail was created from
+     * @param width: the width the thumbnail was created for
+     * @param height: the height the thumbnail was created for
+     * @param thumbnail: the thumbnail to be stored
+     */
+    private void writeEntry(File source, int width, int height, BufferedImage thumbnail) {
+        if(!mDirectory.isDirectory()) {
+            return;
+        }
+        File entry = getEntryFile(source, width, height);
+        // The entry is written under a temporary name and then renamed, so
+        // that a thread reading it meanwhile never sees it half written.
+        File temporary = new File(mDirectory, entry.getName() + TEMPORARY_EXTENSION);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+            try {
+                out.writeInt(ENTRY_VERSION);
+                out.writeLong(source.length());
+                out.writeLong(source.lastModified());
+                ImageIO.write(thumbnail, ENTRY_FORMAT, out);
+            }
+            finally {
+                out.close();
+            }
+            try {
+                Files.move(temporary.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch(AtomicMoveNotSupportedException e) {
+                Files.move(temporary.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch(IOException e) {
+            Application.dump(e);
+            temporary.delete();
+            return;
+        }
+        synchronized(this) {
+            Long previous = mEntries.put(entry.getName(), entry.length());
+            if(previous != null) {
+                mCurrentSize -= previous;
+            }
+            mCurrentSize += entry.length();
+        }
+        evict();
+    }
+
+    /**
+     * Private helper method that deletes the least recently used entries until
+     * the cache is no larger than its maximum size.
+     */
+    private void evict() {
+        synchronized(this) {
+            Iterator<Map.Entry<String, Long>> it = mEntries.entrySet().iterator();
+            while(mCurrentSize > mMaximumSize && it.hasNext()) {
+                Map.Entry<String, Long> eldest = it.next();
+                new File(mDirectory, eldest.getKey()).delete();
+                mCurrentSize -= eldest.getValue();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Private helper method that deletes the entry specified from the cache.
+     *
+     * @param entry: the file of the entry to be deleted
+     */
+    private void removeEntry(File entry) {
+        entry.delete();
+        synchronized(this) {
+            Long size = mEntries.remove(entry.getName());
+            if(size != null) {
+                mCurrentSize -= size;
+            }
+        }
+    }
+
+    /**
+     * Private helper method that checks if the photo specified still has the
+     * length and last modified time it had when its thumbnail was created.
+     *
+     * @param source: the photo
+     * @param length: the length of the photo when its thumbnail was created
+     * @param modified: the last modified time of the photo when its thumbnail
+     *          was created
+     * @return true: if the photo has not changed; false otherwise
+     */
+    private boolean isCurrent(File source, long length, long modified) {
+        return source.isFile() && source.length() == length && source.lastModified() == modified;
+    }
+
+    /**
+     * Private helper method that determines the file of the entry for the
+     * photo and thumbnail dimensions specified.
+     *
+     * @param source: the photo
+     * @param width: the width of the thumbnail
+     * @param height: the height of the thumbnail
+     * @return File: the file of the entry
+     */
+    private File getEntryFile(File source, int width, int height) {
+        String key = source.getAbsolutePath() + "|" + width + "x" + height;
+        return new File(mDirectory, hash(key) + ENTRY_EXTENSION);
+    }
+
+    /**
+     * Private helper method that hashes the key passed in to a string that can
+     * safely be used as a file name.
+     *
+     * @param key: the key to hash
+     * @return String: the hash of the key as a hexadecimal string
+     */
+    private static String hash(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            StringBuilder hex = new StringBuilder();
+            for(byte b : digest.digest(key.getBytes("UTF-8"))) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        }
+        catch(NoSuchAlgorithmException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+        catch(UnsupportedEncodingException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+
+    // --------------------------------------------------------- Private Fields
+
+    private static final int ENTRY_VERSION = 1;
+    private static final String ENTRY_FORMAT = "png";
+    private static final String ENTRY_EXTENSION = ".thumb";
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    private File mDirectory;
+    private long mMaximumSize;
+    private long mCurrentSize;
+    private boolean mValidateInBackground;
+    private Map<String, Long> mEntries;
+    private ExecutorService mExecutor;
+
+}
@@ -0,0 +1,345 @@
+// TiledImageSource.java
+package io;
+
+import java.awt.Dimension;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import javax.imageio.ImageReader;
+import model.ImageCache;
+import runtime.Application;
+import common.ITiledImage;
+
+/**
+ * A class that provides access to an image too large to be decoded as a
+ * whole, as a grid of fixed size tiles. Each tile is decoded on demand, on the
+ * imaging threads, by reading only its region of the image, optionally
+ * subsampled when the image is displayed below full resolution. Decoded tiles
+ * are kept in a memory bounded cache that evicts the least recently used ones,
+ * so the memory used depends on the area being displayed and not on the size
+ * of the image.
+ *
+ * The tiles of a source are decoded one row at a time, through a single
+ * reader kept open on the image: reading a region of a jpeg decodes the image
+ * from its top down to the region, so the tiles requested in a row are read
+ * together. Tiles requested for an area that has since left the viewport are
+ * dropped before being decoded, so panning does not pile up work.
+ */
+public class TiledImageSource implements ITiledImage {
+
+    /**
+     * Constructor that instantiates a new tiled image source for the image in
+     * the file specified. Nothing is read from the file until a tile is 
+     * requested.
+     *
+     * @param file: the file containing the image
+     * @param size: the size of the full resolution image
+     * @param tileSize: the width and height of a tile, in pixels of the
+     *          subsampled image
+     * @param budget: the maximum number of bytes of decoded tiles to be held
+     * @param listener: run on the decoding thread each time tiles have been
+     *          decoded, or null
+     */
+    public TiledImageSource(File file, Dimension size, int tileSize, long budget, Runnable listener) {
+        mDecoder = new ImageDecoder(file);
+        mSize = size;
+        mTileSize = tileSize;
+        mTiles = new ImageCache(budget);
+        mPending = new LinkedHashSet<Tile>();
+        mListener = listener;
+    }
+
+    /*
+     * @see common.ITiledImage#getWidth()
+     */
+    @Override
+    public int getWidth() {
+        return mSize.width;
+    }
+
+    /*
+     * @see common.ITiledImage#getHeight()
+     */
+    @Override
+    public int getHeight() {
+        return mSize.height;
+    }
+
+    /*
+     * @see common.ITiledImage#getTileSize()
+     */
+    @Override
+    public int getTileSize() {
+        return mTileSize;
+    }
+
+    /*
+     * @see common.ITiledImage#getTileBounds(int, int, int)
+     */
+    @Override
+    public Rectangle getTileBounds(int subsampling, int column, int row) {
+        int span = mTileSize * subsampling;
+        Rectangle bounds = new Rectangle(column * span, row * span, span, span);
+        return bounds.intersection(new Rectangle(0, 0, mSize.width, mSize.height));
+    }
+
+    /*
+     * @see common.ITiledImage#setViewport(int, int, int, int, int)
+     */
+    @Override
+    public synchronized void setViewport(int subsampling, int firstColumn, int firstRow, int lastColumn, 
+            int lastRow) {
+        mViewportSubsampling = subsampling;
+        mViewport = new Rectangle(firstColumn, firstRow, lastColumn - firstColumn + 1, lastRow - firstRow + 1);
+        Iterator<Tile> it = mPending.iterator();
+        while(it.hasNext()) {
+            if(!isInViewport(it.next())) {
+                it.remove();
+            }
+        }
+    }
+
+    /*
+     * @see common.ITiledImage#getTile(int, int, int)
+     */
+    @Override
+    public Image getTile(int subsampling, int column, int row) {
+        Tile tile = new Tile(subsampling, column, row);
+        Image image = mTiles.get(tile);
+        if(image != null) {
+            return image;
+        }
+        synchronized(this) {
+            if(mDisposed || !mPending.add(tile) || mDecoding) {
+                return null;
+            }
+            mDecoding = true;
+        }
+        scheduleDecode();
+        return null;
+    }
+
+    /**
+     * Releases all the decoded tiles and discards the tiles still waiting to
+     * be decoded. The source can no longer be used afterwards.
+     */
+    public void dispose() {
+        synchronized(this) {
+            mDisposed = true;
+            mPending.clear();
+            if(!mDecoding) {
+                closeReader();
+            }
+        }
+        mTiles.clear();
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Private helper method that submits the decoding of the next row of
+     * pending tiles to the imaging threads.
+     */
+    private void scheduleDecode() {
+        Application.Imaging.submit(new Callable<Object>() {
+            @Override
+            public Object call() {
+                decodeRow();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Private helper method that decodes the pending tiles of the row of the
+     * oldest pending tile in a single read, notifies the listener, and then
+     * schedules the next row, if any. Only one row of a source is decoded at
+     * a time, so its reader is never used by two threads.
+     */
+    private void decodeRow() {
+        int subsampling;
+        int row;
+        int firstColumn = Integer.MAX_VALUE;
+        int lastColumn = Integer.MIN_VALUE;
+        synchronized(this) {
+            if(mDisposed || mPending.isEmpty()) {
+                finishDecode();
+                return;
+            }
+            Tile first = mPending.iterator().next();
+            subsampling = first.mSubsampling;
+            row = first.mRow;
+            Iterator<Tile> it = mPending.iterator();
+            while(it.hasNext()) {
+                Tile tile = it.next();
+                if(tile.mSubsampling == subsampling && tile.mRow == row) {
+                    firstColumn = Math.min(firstColumn, tile.mColumn);
+                    lastColumn = Math.max(lastColumn, tile.mColumn);
+                    it.remove();
+                }
+            }
+        }
+
+        BufferedImage strip = null;
+        Rectangle bounds = getTileBounds(subsampling, firstColumn, row)
+                .union(getTileBounds(subsampling, lastColumn, row));
+        if(!bounds.isEmpty()) {
+            try {
+                if(mReader == null) {
+                    mReader = mDecoder.openReader();
+                }
+                strip = mDecoder.decode(mReader, bounds, subsampling);
+            }
+            catch(IOException e) {
+                Application.dump(e);
+                closeReader();
+            }
+            catch(RuntimeException e) {
+                // Some image readers fail with runtime exceptions on damaged
+                // files, which must not stop the other rows being decoded.
+                Application.dump(e);
+                closeReader();
+            }
+        }
+
+        boolean decoded = false;
+        if(strip != null) {
+            for(int column = firstColumn; column <= lastColumn; column++) {
+                int x = (column - firstColumn) * mTileSize;
+                int width = Math.min(mTileSize, strip.getWidth() - x);
+                if(width <= 0) {
+                    break;
+                }
+                Image tile = copy(strip.getSubimage(x, 0, width, strip.getHeight()));
+                synchronized(this) {
+                    if(mDisposed) {
+                        break;
+                    }
+                    mTiles.put(new Tile(subsampling, column, row), tile);
+                    decoded = true;
+                }
+            }
+        }
+        if(decoded && mListener != null) {
+            mListener.run();
+        }
+
+        synchronized(this) {
+            if(mDisposed || mPending.isEmpty()) {
+                finishDecode();
+                return;
+            }
+        }
+        scheduleDecode();
+    }
+
+    /**
+     * Private helper method that marks the decoding of this source as done,
+     * closing the reader if the source has been disposed. It must be called
+     * while holding the lock of this source.
+     */
+    private void finishDecode() {
+        mDecoding = false;
+        if(mDisposed) {
+            closeReader();
+        }
+    }
+
+    /**
+     * Private helper method that closes the reader kept open on the image, if
+     * any. It must only be called while no row is being decoded.
+     */
+    private void closeReader() {
+        if(mReader != null) {
+            ImageDecoder.close(mReader);
+            mReader = null;
+        }
+    }
+
+    /**
+     * Private helper method that checks if the tile specified is in the
+     * latest viewport set. Every tile is until a viewport has been set.
+     *
+     * @param tile: the tile
+     * @return boolean: true if the tile is in the viewport; false otherwise
+     */
+    private boolean isInViewport(Tile tile) {
+        return mViewport == null || (tile.mSubsampling == mViewportSubsampling 
+                && mViewport.contains(tile.mColumn, tile.mRow));
+    }
+
+    /**
+     * Private helper method that copies a tile out of the row it was decoded
+     * in, so that each tile cached holds only its own pixels.
+     *
+     * @param region: the region of the row covered by the tile
+     * @return BufferedImage: the tile
+     */
+    private static BufferedImage copy(BufferedImage region) {
+        WritableRaster raster = region.getRaster().createCompatibleWritableRaster(region.getWidth(), 
+                region.getHeight());
+        region.copyData(raster);
+        return new BufferedImage(region.getColorModel(), raster, region.isAlphaPremultiplied(), null);
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Private inner class that identifies a tile of the image, used as its key
+     * in the tile cache.
+     */
+    private static class Tile {
+
+        public Tile(int subsampling, int column, int row) {
+            mSubsampling = subsampling;
+            mColumn = column;
+            mRow = row;
+        }
+
+        /*
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof Tile)) {
+                return false;
+            }
+            Tile other = (Tile)obj;
+            return mSubsampling == other.mSubsampling && mColumn == other.mColumn && mRow == other.mRow;
+        }
+
+        /*
+         * @see java.lang.Object#hashCode()
+         */
+        @Override
+        public int hashCode() {
+            return (mSubsampling * 31 + mColumn) * 31 + mRow;
+        }
+
+        private final int mSubsampling;
+        private final int mColumn;
+        private final int mRow;
+    }
+
+    // --------------------------------------------------------- Private Fields
+
+    private ImageDecoder mDecoder;
+    private Dimension mSize;
+    private int mTileSize;
+    private ImageCache mTiles;
+    private Set<Tile> mPending;
+    private Rectangle mViewport;
+    private int mViewportSubsampling;
+    private ImageReader mReader;
+    private boolean mDecoding;
+    private boolean mDisposed;
+    private Runnable mListener;
+
+}
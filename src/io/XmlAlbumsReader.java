@@ -1,12 +1,16 @@
 // XmlAlbumsReader.java
 package io;
 
-import java.awt.Image;
 import java.io.File;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import javax.swing.ImageIcon;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import model.AlbumModel;
@@ -17,13 +21,14 @@ import org.xml.sax.helpers.DefaultHandler;
 import runtime.Application;
 import runtime.Constants.Xml;
 import common.IAlbumModel;
+import common.IAlbumsReader;
 import common.IPhotoModel;
 
 /**
  * A class that provides an interface for reading in the gallery's contents
  * from an xml file.
  */
-public class XmlAlbumsReader {
+public class XmlAlbumsReader implements IAlbumsReader {
 
     /**
      * Constructor that takes in the file from which the gallery contents are
@@ -34,15 +39,38 @@ public class XmlAlbumsReader {
      * @param file: the file containing the gallery contents in xml format.
      */
     public XmlAlbumsReader(File file) {
+        this(file, true);
+    }
+    
+    /**
+     * Constructor that takes in the file from which the gallery contents are
+     * to be read and whether the photos are loaded in the background. If they
+     * are not, the photos are loaded on demand instead.
+     * 
+     * @param file: the file containing the gallery contents in xml format.
+     * @param preload: true to load the photos' thumbnails and metadata on the
+     *          imaging threads as soon as they are read; false otherwise
+     */
+    public XmlAlbumsReader(File file, boolean preload) {
         mAlbums = new LinkedList<IAlbumModel>();
+        mAlbumLoads = new HashMap<IAlbumModel, AlbumLoad>();
         mFile = file;
+        mPreload = preload;
     }
     
     /**
      * Performs the actual reading of the xml file. Once this method has been
      * called, you are free to call the getAlbums() method to retrieve the
-     * gallery's contents.
+     * gallery's contents. The albums and photos are created as soon as they
+     * are read, in the order they appear in the file. The albums' icons are
+     * then loaded on the imaging threads and, if preloading, the photos' 
+     * thumbnails and metadata in the background, so this method returns 
+     * without waiting for them. Each album and photo fires a STATE change 
+     * event on the Event Dispatch Thread once it has been loaded, and the 
+     * future returned by getAlbumFuture() completes once all the photos of
+     * its album have been.
      */
+    @Override
     public void read() {
 
        SAXParserFactory factory = SAXParserFactory.newInstance();
@@ -55,10 +83,28 @@ public class XmlAlbumsReader {
         }
         catch(Exception e) {
            Application.dump(e);
+           mFailed = true;
         }
         
     }
     
+    /**
+     * Gets the future that completes once all the photos of the album 
+     * specified have been loaded. If the photos are not preloaded, it 
+     * completes as soon as the album has been read.
+     * 
+     * @param album: the album that was read in
+     * @return Future: the future completed once the album is loaded; or null
+     *      if the album was not read in by this reader
+     */
+    public Future<IAlbumModel> getAlbumFuture(IAlbumModel album) {
+        AlbumLoad load = mAlbumLoads.get(album);
+        if(load == null) {
+            return null;
+        }
+        return load.mFuture;
+    }
+    
     /**
      * Gets the gallery's contents (a collection of albums) that were read in 
      * from the xml file.
@@ -66,9 +112,47 @@ public class XmlAlbumsReader {
      * @return Collection: the collection of albums representing the gallery's
      *      contents.
      */
+    @Override
     public Collection<IAlbumModel> getAlbums() {
         return mAlbums;
     }
+    
+    /**
+     * Checks if reading the xml file failed, in which case only the albums
+     * read before the error are returned by getAlbums().
+     * 
+     * @return boolean: true if the xml file could not be read; false 
+     *      otherwise
+     */
+    @Override
+    public boolean hasFailed() {
+        return mFailed;
+    }
+    
+    /**
+     * Gets the generation of the journal the xml file was written from. The
+     * xml file contains the changes recorded in that journal up to the 
+     * offset returned by getJournalOffset().
+     * 
+     * @return long: the generation of the journal; or 0 if the xml file was
+     *      not written from a journal
+     */
+    @Override
+    public long getJournalGeneration() {
+        return mJournalGeneration;
+    }
+    
+    /**
+     * Gets the offset, in the journal the xml file was written from, up to 
+     * which the changes recorded in the journal are contained in the xml file.
+     * 
+     * @return long: the offset in the journal; or 0 if the xml file was not
+     *      written from a journal
+     */
+    @Override
+    public long getJournalOffset() {
+        return mJournalOffset;
+    }
    
     
     // ---------------------------------------------------------- Inner Classes
@@ -87,23 +171,30 @@ public class XmlAlbumsReader {
             
             String tagName =  lname.equals("") ? qname : lname;
             
-            if(tagName.compareTo(Xml.Nodes.PHOTO_ALBUM)== 0) {
+            if(tagName.compareTo(Xml.Nodes.PHOTO_GALLERY) == 0) {
+                String generation = attrs.getValue(Xml.Attributes.JOURNAL_GENERATION);
+                String offset = attrs.getValue(Xml.Attributes.JOURNAL_OFFSET);
+                if(generation != null && offset != null) {
+                    mJournalGeneration = Long.parseLong(generation.trim());
+                    mJournalOffset = Long.parseLong(offset.trim());
+                }
+            }
+            else if(tagName.compareTo(Xml.Nodes.PHOTO_ALBUM)== 0) {
                 String name = attrs.getValue(Xml.Attributes.NAME);
                 String description = attrs.getValue(Xml.Attributes.DESCRIPTION);
                 String iconpath = attrs.getValue(Xml.Attributes.ICON);
                 
-                mCurrentAlbum = new AlbumModel(name);
-                mCurrentAlbum.setDescription(description);
+                AlbumModel album = new AlbumModel(name);
+                album.setDescription(description);
                 if(iconpath != null) {
                     if(Application.isResourcePath(iconpath)) {
                         iconpath = Application.getProjectPath(iconpath);
                     }
-                    IPhotoModel icon = new PhotoModel(iconpath);
-                    ((AlbumModel)mCurrentAlbum).setIconImagePath(icon.getPath());
-                    Image image = icon.getImage();
-                    Image iconImage = image.getScaledInstance(mCurrentAlbum.getIcon().getIconWidth(), mCurrentAlbum.getIcon().getIconHeight(), Image.SCALE_FAST);
-                    mCurrentAlbum.setIcon(new ImageIcon(iconImage));
+                    album.loadIcon(iconpath);
                 }
+                mCurrentAlbum = album;
+                mCurrentLoad = new AlbumLoad(album);
+                mAlbumLoads.put(album, mCurrentLoad);
                 
             } 
             else if(tagName.compareTo(Xml.Nodes.PHOTO) == 0) {
@@ -115,10 +206,30 @@ public class XmlAlbumsReader {
                 if(Application.isResourcePath(path)) {
                     path = Application.getProjectPath(path);
                 }
-                IPhotoModel photo = new PhotoModel(path);
+                final IPhotoModel photo = new PhotoModel(path);
                 photo.setName(name);
                 photo.setDescription(description);
                 mCurrentAlbum.addPhoto(photo);
+                if(mPreload) {
+                    // Nobody is waiting for the photos being preloaded, so
+                    // they are loaded in the background, after the images 
+                    // the user asks for.
+                    final AlbumLoad load = mCurrentLoad;
+                    load.begin();
+                    Application.Imaging.submitBackground(new Callable<Object>() {
+                        @Override
+                        public Object call() {
+                            try {
+                                photo.getIcon();
+                                photo.getMetadata();
+                                return null;
+                            }
+                            finally {
+                                load.complete();
+                            }
+                        }
+                    }, photo);
+                }
                 
             }
             
@@ -134,18 +245,64 @@ public class XmlAlbumsReader {
             
             if(tagName.compareTo(Xml.Nodes.PHOTO_ALBUM) == 0 && mCurrentAlbum != null) {
                 mAlbums.add(mCurrentAlbum);
+                mCurrentLoad.complete();
             }
             
         }
         
         private IAlbumModel mCurrentAlbum;
+        private AlbumLoad mCurrentLoad;
+        
+    }
+    
+    /**
+     * Private inner class that keeps track of the loading of an album's photos
+     * and completes the album's future once they have all been loaded. The
+     * reading of the album itself counts as one pending task, so the future
+     * cannot complete before the end of the album has been read.
+     */
+    private static class AlbumLoad {
+        
+        public AlbumLoad(final IAlbumModel album) {
+            mPending = new AtomicInteger(1);
+            mFuture = new FutureTask<IAlbumModel>(new Callable<IAlbumModel>() {
+                @Override
+                public IAlbumModel call() {
+                    return album;
+                }
+            });
+        }
+        
+        /**
+         * Adds a pending task to the album's loading.
+         */
+        public void begin() {
+            mPending.incrementAndGet();
+        }
+        
+        /**
+         * Marks a pending task of the album's loading as complete, completing
+         * the album's future if it was the last one.
+         */
+        public void complete() {
+            if(mPending.decrementAndGet() == 0) {
+                mFuture.run();
+            }
+        }
+        
+        private final AtomicInteger mPending;
+        private final FutureTask<IAlbumModel> mFuture;
         
     }
-   
     
     // --------------------------------------------------------- Private Fields
     
     private List<IAlbumModel> mAlbums;
+    private Map<IAlbumModel, AlbumLoad> mAlbumLoads;
+    private boolean mPreload;
+    private boolean mFailed;
+    private long mJournalGeneration;
+    private long mJournalOffset;
     private File mFile;
     
 }
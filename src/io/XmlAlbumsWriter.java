@@ -1,17 +1,22 @@
 // XmlAlbumsWriter.java
 package io;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.text.DateFormat;
-import java.util.Date;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import model.AlbumModel;
-import org.codecompanion.io.FileUtils;
 import runtime.Application;
-import runtime.Constants;
 import runtime.Constants.Xml;
 import common.IAlbumModel;
+import common.IAlbumsWriter;
 import common.IGalleryModel;
 import common.IPhotoModel;
 
@@ -19,7 +24,7 @@ import common.IPhotoModel;
  * A class that provides an interface for writing in the gallery's contents
  * to an xml file.
  */
-public class XmlAlbumsWriter {
+public class XmlAlbumsWriter implements IAlbumsWriter {
 
     /**
      * Constructor that takes in the gallery model from which the contents of
@@ -35,73 +40,156 @@ public class XmlAlbumsWriter {
     }
     
     /**
-     * Performs the actual writing of the xml to the file specified. 
+     * Sets the position, in the journal of the changes to the gallery, up to
+     * which the gallery model contains the changes recorded. The position is
+     * written along with the gallery, so that the changes already contained 
+     * in the xml file are not replayed from the journal when it is read.
+     * 
+     * @param generation: the generation of the journal
+     * @param offset: the offset in the journal up to which the changes are
+     *          contained in the gallery model
+     */
+    @Override
+    public void setJournalPosition(long generation, long offset) {
+        mJournalGeneration = generation;
+        mJournalOffset = offset;
+    }
+    
+    /**
+     * Performs the actual writing of the xml to the file specified. The xml
+     * is written to a temporary file first, which only replaces the file once
+     * it has been forced to the disk and parsed back with every photo, so the
+     * file is never left half written. 
      * 
      * @param file: the file to write the xml to
+     * @return boolean: true if the file was written; false otherwise
      */
-    public void write(File file) {
+    @Override
+    public boolean write(File file) {
 
+        AtomicFile atomicFile = new AtomicFile(file);
         if(Application.Runtime.backupFilesEnabled()) {
-            
-            DateFormat dateFmt = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
-            Date currentDateTime = new Date(System.currentTimeMillis());
-            String dateSuffix = dateFmt.format(currentDateTime).replace('/', '.');
-            String backupFileName = Constants.USER_SETTINGS_FILE.replace(".xml", "");
-            backupFileName += (" [" + dateSuffix  + "].xml");
-            File backupFile = new File(backupFileName);
-           
-            try { 
-                FileUtils.copyFile(file, backupFile);
-            }
-            catch (IOException e) {
-                Application.dump(e);
-            }
+            atomicFile.backup();
         }
         
-        FileWriter writer;
+        FileOutputStream output = null;
+        try {
+            output = atomicFile.startWrite();
+            int photos = write(output);
+            atomicFile.finishWrite(output, new XmlFileVerifier(Xml.Nodes.PHOTO_GALLERY, Xml.Nodes.PHOTO, photos));
+            return true;
+        }
+        catch (IOException e) {
+            Application.dump(e);
+        }
+        catch (XMLStreamException e) {
+            Application.dump(e);
+        }
+        finally {
+            if(output != null) {
+                atomicFile.failWrite(output);
+            }
+        }
+        return false;
         
+    }
+    
+    /**
+     * Writes the xml to the stream specified, encoded in UTF-8 through a 
+     * buffer. The gallery is streamed out album by album and photo by photo,
+     * and the names, descriptions and paths are escaped by the xml writer, 
+     * so the memory used does not depend on the size of the gallery. The 
+     * stream is flushed but not closed.
+     * 
+     * @param output: the stream to write the xml to
+     * @return int: the number of photos written
+     * @throws XMLStreamException: if the xml could not be written
+     */
+    public int write(OutputStream output) throws XMLStreamException {
+        Writer encoder;
         try {
-
-            // Open the writer & write the XML declaration and root node
-            writer = new FileWriter(file);
-            writer.write("<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n");
-            writer.write("\t<!-- Photo Gallery -->\n");
-            writer.write("\t<" + Xml.Nodes.PHOTO_GALLERY + ">\n");
+            encoder = new BufferedWriter(new OutputStreamWriter(output, ENCODING), BUFFER_SIZE);
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new XMLStreamException(e);
+        }
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(encoder);
+        
+        // Write the XML declaration and root node
+        writer.writeStartDocument(ENCODING, "1.0");
+        writer.writeCharacters("\n");
+        writer.writeComment(" Photo Gallery ");
+        writer.writeCharacters("\n");
+        writer.writeStartElement(Xml.Nodes.PHOTO_GALLERY);
+        if(mJournalGeneration > 0) {
+            writeAttribute(writer, Xml.Attributes.JOURNAL_GENERATION, String.valueOf(mJournalGeneration));
+            writeAttribute(writer, Xml.Attributes.JOURNAL_OFFSET, String.valueOf(mJournalOffset));
+        }
+        
+        // Write each album as a seperate node under the root node
+        int photos = 0;
+        for(IAlbumModel album : mModel) {
+            writer.writeCharacters("\n\t");
+            writer.writeStartElement(Xml.Nodes.PHOTO_ALBUM);
+            writeAttribute(writer, Xml.Attributes.NAME, album.getName());
+            writeAttribute(writer, Xml.Attributes.DESCRIPTION, album.getDescription());
+            if(album instanceof AlbumModel && ((AlbumModel)album).getIconImagePath() != null) { 
+                writeAttribute(writer, Xml.Attributes.ICON, ((AlbumModel)album).getIconImagePath()); 
+            }
             
-            // Write each album as a seperate node under the root node
-            for(IAlbumModel album : mModel) {
-                
-                writer.write("\t<" + Xml.Nodes.PHOTO_ALBUM + " ");
-                writer.write(Xml.Attributes.NAME + "=\"" + album.getName() + "\" ");
-                writer.write(Xml.Attributes.DESCRIPTION + "=\"" + album.getDescription() + "\" ");
-                AlbumModel albumModel = (AlbumModel)album;
-                if(albumModel.getIconImagePath() != null) { 
-                    writer.write(Xml.Attributes.ICON+ "=\"" + albumModel.getIconImagePath() + "\""); 
-                }
-                writer.write(">\n");
-                
-                // Write each photo as seperate node under the album it belongs to.
-                for(IPhotoModel photo : album) {
-                    writer.write("\t\t<" + Xml.Nodes.PHOTO + " ");
-                    writer.write(Xml.Attributes.NAME + "=\"" + photo.getName() + "\" ");
-                    writer.write(Xml.Attributes.DESCRIPTION + "=\"" + photo.getDescription() + "\" ");
-                    writer.write(Xml.Attributes.PATH + "=\"" + photo.getPath() + "\" />\n");
-                }
-                
-                writer.write("\t</" + Xml.Nodes.PHOTO_ALBUM + ">\n");
+            // Write each photo as seperate node under the album it belongs to.
+            for(IPhotoModel photo : album) {
+                writer.writeCharacters("\n\t\t");
+                writer.writeEmptyElement(Xml.Nodes.PHOTO);
+                writeAttribute(writer, Xml.Attributes.NAME, photo.getName());
+                writeAttribute(writer, Xml.Attributes.DESCRIPTION, photo.getDescription());
+                writeAttribute(writer, Xml.Attributes.PATH, photo.getPath());
+                photos++;
             }
             
-            writer.write("</" + Xml.Nodes.PHOTO_GALLERY + ">\n");
-            writer.close();
+            writer.writeCharacters("\n\t");
+            writer.writeEndElement();
+        }
+        
+        writer.writeCharacters("\n");
+        writer.writeEndElement();
+        writer.writeCharacters("\n");
+        writer.writeEndDocument();
+        writer.flush();
+        writer.close();
+        try {
+            encoder.flush();
         }
         catch (IOException e) {
-            Application.dump(e);
+            throw new XMLStreamException(e);
         }
-        
+        return photos;
+    }
+    
+    // -------------------------------------------------------- Private Methods
+    
+    /**
+     * Private helper method that writes an attribute of the current node. A
+     * missing value is written as an empty attribute, since the reader 
+     * expects every attribute of a photo to be present.
+     * 
+     * @param writer: the xml writer
+     * @param name: the name of the attribute
+     * @param value: the value of the attribute, or null
+     * @throws XMLStreamException: if the attribute could not be written
+     */
+    private static void writeAttribute(XMLStreamWriter writer, String name, String value) 
+            throws XMLStreamException {
+        writer.writeAttribute(name, value == null ? "" : value);
     }
     
     // --------------------------------------------------------- Private Fields
     
+    private static final String ENCODING = "UTF-8";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
     private IGalleryModel mModel;
+    private long mJournalGeneration;
+    private long mJournalOffset;
 
 }
@@ -0,0 +1,76 @@
+// XmlFileVerifier.java
+package io;
+
+import java.io.File;
+import java.io.IOException;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+import common.IFileVerifier;
+
+/**
+ * A class that verifies that a newly written xml file parses, that its root
+ * node is the one expected and, optionally, that it contains the expected 
+ * number of a given node, such as one photo node per photo of the gallery.
+ * The file is parsed as a stream, without building any model from it.
+ */
+public class XmlFileVerifier implements IFileVerifier {
+
+    /**
+     * Constructor that instantiates a new verifier for files with the root 
+     * node specified, counting the nodes specified.
+     * 
+     * @param root: the name of the root node
+     * @param node: the name of the node to be counted, or null
+     * @param count: the number of nodes expected, or -1 not to count them
+     */
+    public XmlFileVerifier(String root, String node, int count) {
+        mRoot = root;
+        mNode = node;
+        mCount = count;
+    }
+
+    /*
+     * @see common.IFileVerifier#verify(java.io.File)
+     */
+    @Override
+    public void verify(File file) throws IOException {
+        final String[] root = new String[1];
+        final int[] count = new int[1];
+        try {
+            SAXParserFactory.newInstance().newSAXParser().parse(file, new DefaultHandler() {
+                @Override
+                public void startElement(String namespace, String lname, String qname, Attributes attrs) {
+                    String tagName = lname.equals("") ? qname : lname;
+                    if(root[0] == null) {
+                        root[0] = tagName;
+                    }
+                    if(tagName.equals(mNode)) {
+                        count[0]++;
+                    }
+                }
+            });
+        }
+        catch(SAXException e) {
+            throw new IOException(file + " does not parse: " + e.getMessage(), e);
+        }
+        catch(ParserConfigurationException e) {
+            throw new IOException(e);
+        }
+        if(!mRoot.equals(root[0])) {
+            throw new IOException(file + " has root node " + root[0] + " instead of " + mRoot);
+        }
+        if(mCount >= 0 && count[0] != mCount) {
+            throw new IOException(file + " has " + count[0] + " " + mNode + " nodes instead of " + mCount);
+        }
+    }
+
+    // --------------------------------------------------------- Private Fields
+
+    private String mRoot;
+    private String mNode;
+    private int mCount;
+
+}
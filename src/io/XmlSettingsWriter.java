@@ -1,17 +1,20 @@
 // XmlSettingsWriter.java
 package io;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
-import java.text.DateFormat;
-import java.util.Date;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import runtime.Application;
-import runtime.Constants;
 import runtime.Constants.Xml;
 import common.ISettingsModel;
 
@@ -23,82 +26,111 @@ public class XmlSettingsWriter {
 
     /**
      * Constructor that takes in the instance of UserSettings from which the 
-     * the contents of the xml file are to be taken from. Note: Instantiating an 
-     * instance through this constructor will not result in a written xml file.
-     * After instantiating the instance you must call the write method to 
-     * perform the actual writing of the xml.
+     * the contents of the xml file are to be taken from. The settings are 
+     * copied right away, so the writer can be created on the thread the 
+     * settings are changed on and write them on another. Note: Instantiating
+     * an instance through this constructor will not result in a written xml 
+     * file. After instantiating the instance you must call the write method 
+     * to perform the actual writing of the xml.
      * 
      * @param model: the user settings to write to the xml file
      */
     public XmlSettingsWriter(ISettingsModel model) {
-        mModel = model;
+        mSettings = new LinkedHashMap<Object, Object>();
+        for(Object key : model) {
+            mSettings.put(key, model.getValue(key));
+        }
     }
     
     /**
-     * Performs the actual writing of the xml to the file specified. 
+     * Performs the actual writing of the xml to the file specified. The xml
+     * is written to a temporary file first, which only replaces the file once
+     * it has been forced to the disk and parsed back with every setting, so 
+     * the file is never left half written. 
      * 
      * @param file: the file to write the xml to
      */
     public void write(File file) {
 
-        if(Application.Runtime.backupFilesEnabled() && file.exists()) {
-            
-            InputStream in;
-            OutputStream out;
-            
-            String backupFileName = Constants.USER_SETTINGS_FILE.replace(".xml", "") + " [" 
-                + DateFormat.getDateTimeInstance(DateFormat.SHORT, 
-                        DateFormat.SHORT).format(new 
-                                Date(System.currentTimeMillis())
-                        ).replace('/', '.') + "].xml";
-            File backupFile = new File(backupFileName);
-
+        AtomicFile atomicFile = new AtomicFile(file);
+        if(Application.Runtime.backupFilesEnabled()) {
+            atomicFile.backup();
+        }
         
-            try {   
-                // Backup old configuration file.
-                in = new FileInputStream(file);
-                out = new FileOutputStream(backupFile);
-                byte[] buf = new byte[1024];
-                int len;
-                while ((len = in.read(buf)) > 0){
-                  out.write(buf, 0, len);
-                }
-                
-                in.close();
-                out.close();
-            } catch(IOException e) {
-                Application.dump(e);
+        FileOutputStream output = null;
+        try {
+            output = atomicFile.startWrite();
+            int settings = write(output);
+            atomicFile.finishWrite(output, new XmlFileVerifier(Xml.Nodes.SETTINGS, Xml.Nodes.ADD, settings));
+        }
+        catch (IOException e) {
+            Application.dump(e);
+        }
+        catch (XMLStreamException e) {
+            Application.dump(e);
+        }
+        finally {
+            if(output != null) {
+                atomicFile.failWrite(output);
             }
         }
+    }
+    
+    /**
+     * Writes the xml to the stream specified, encoded in UTF-8, escaping the
+     * keys and values. The stream is flushed but not closed.
+     * 
+     * @param output: the stream to write the xml to
+     * @return int: the number of settings written
+     * @throws XMLStreamException: if the xml could not be written
+     */
+    public int write(OutputStream output) throws XMLStreamException {
+        Writer encoder;
+        try {
+            encoder = new BufferedWriter(new OutputStreamWriter(output, ENCODING));
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new XMLStreamException(e);
+        }
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(encoder);
+        
+        // Write the XML declaration and root node
+        writer.writeStartDocument(ENCODING, "1.0");
+        writer.writeCharacters("\n");
+        writer.writeComment(" General Application Configuration ");
+        writer.writeCharacters("\n");
+        writer.writeStartElement(Xml.Nodes.SETTINGS);
         
-        FileWriter writer;
+        // Write each key/value pair in settings
+        int settings = 0;
+        for(Map.Entry<Object, Object> setting : mSettings.entrySet()) {
+            Object key = setting.getKey();
+            Object value = setting.getValue();
+            writer.writeCharacters("\n\t");
+            writer.writeEmptyElement(Xml.Nodes.ADD);
+            writer.writeAttribute(Xml.Attributes.KEY, String.valueOf(key));
+            writer.writeAttribute(Xml.Attributes.VALUE, String.valueOf(value));
+            settings++;
+        }
         
+        writer.writeCharacters("\n");
+        writer.writeEndElement();
+        writer.writeCharacters("\n");
+        writer.writeEndDocument();
+        writer.flush();
+        writer.close();
         try {
-            
-            // Open writer & write the XML declaration and root node
-            writer = new FileWriter(file);
-            writer.write("<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n");            
-            writer.write("<!-- General Application Configuration -->\n");
-            writer.write("<" + Xml.Nodes.SETTINGS + ">\n");
-            
-            // Write each key/value pair in settings
-            for(Object key : mModel) {
-                Object value = mModel.getValue(key);
-                writer.write("\t<" + Xml.Nodes.ADD + " ");
-                writer.write(Xml.Attributes.KEY + "=\"" + key + "\" ");
-                writer.write(Xml.Attributes.VALUE + "=\"" + value + "\" />\n");
-            }
-
-            writer.write("</" + Xml.Nodes.SETTINGS+ ">\n");
-            writer.close();
-
+            encoder.flush();
         }
         catch (IOException e) {
-            Application.dump(e);
+            throw new XMLStreamException(e);
         }
+        return settings;
     }
 
     // --------------------------------------------------------- Private Fields
     
-    private ISettingsModel mModel;
+    private static final String ENCODING = "UTF-8";
+    
+    private Map<Object, Object> mSettings;
 }
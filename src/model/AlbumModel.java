@@ -1,15 +1,25 @@
 // AlbumModel.java
 package model;
 
+import io.ImageDecoder;
+import java.awt.Image;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
 import javax.swing.Icon;
+import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
 import runtime.Application;
 import runtime.Constants.ConfigKeys;
 import common.ChangeType;
 import common.IAlbumModel;
+import common.ICompletionObserver;
+import common.IPhotoLoader;
 import common.IPhotoModel;
 import common.IconSize;
 import common.ItemChangeEvent;
@@ -29,7 +39,7 @@ public class AlbumModel extends DefaultItemModel implements IAlbumModel  {
      */
     public AlbumModel(String name) {
         super(name);
-        mPhotos = new LinkedList<IPhotoModel>();
+        mPhotos = new ArrayList<IPhotoModel>();
     }
 
     /**
@@ -41,11 +51,69 @@ public class AlbumModel extends DefaultItemModel implements IAlbumModel  {
      */
     public AlbumModel(String name, Collection<IPhotoModel> photos) {
         super(name);
-        mPhotos = new LinkedList<IPhotoModel>();
+        mPhotos = new ArrayList<IPhotoModel>(photos.size());
         for(IPhotoModel photo : photos) {
             mPhotos.add(photo);
         }
     }
+
+    /**
+     * Constructor that instantiates a new album with the specified name whose
+     * photos are created by the loader passed in the first time they are 
+     * accessed. Until then, the album only knows how many photos it contains.
+     * 
+     * @param name: the name of the album to be created
+     * @param loader: the loader of the photos of this album
+     */
+    public AlbumModel(String name, IPhotoLoader loader) {
+        super(name);
+        mPhotos = new ArrayList<IPhotoModel>();
+        mLoader = loader;
+    }
+
+    /**
+     * Creates a copy of this album that shares its photos. If the photos of 
+     * this album have not been loaded yet, they are not loaded: the copy 
+     * shares the loader instead, and creates its own photos from it when 
+     * they are accessed. The copy is not part of the gallery, so it creates
+     * its photos on whichever thread accesses them.
+     * 
+     * @return AlbumModel: the copy of this album
+     */
+    public synchronized AlbumModel copy() {
+        AlbumModel copy = mLoader != null 
+            ? new AlbumModel(getName(), mLoader) : new AlbumModel(getName(), mPhotos);
+        copy.setDescription(getDescription());
+        copy.setIconImagePath(mIconImagePath);
+        copy.mDetached = true;
+        return copy;
+    }
+
+    /**
+     * Gets the photo at the position specified to be streamed, such as by a 
+     * slideshow, without loading the photos of this album. If they have not
+     * been loaded yet, the photo is created on its own by the loader, so it
+     * is not the photo this album contains once loaded and is not to be 
+     * changed. This can be called from any thread.
+     * 
+     * @param index: the position of the photo in this album
+     * @return IPhotoModel: the photo; or null if this album no longer 
+     *          contains that many photos or the photo could not be loaded
+     */
+    public IPhotoModel streamPhoto(int index) {
+        IPhotoLoader loader = mLoader;
+        if(loader != null) {
+            try {
+                return loader.load(index);
+            }
+            catch(IOException e) {
+                Application.dump(e);
+                return null;
+            }
+        }
+        List<IPhotoModel> photos = mPhotos;
+        return index < photos.size() ? photos.get(index) : null;
+    }
     
     /**
      * Gets the path to the image that is to be used as this album's icon.
@@ -60,6 +128,32 @@ public class AlbumModel extends DefaultItemModel implements IAlbumModel  {
         mIconImagePath = path;
     }
     
+    /**
+     * Sets the path to the image that is to be used as this album's icon, and
+     * decodes the icon from it in the background. The icon is set once it 
+     * has been decoded.
+     * 
+     * @param path: the path to the image of this album's icon
+     */
+    public void loadIcon(final String path) {
+        setIconImagePath(path);
+        Icon defaultIcon = getIcon();
+        final int width = defaultIcon.getIconWidth();
+        final int height = defaultIcon.getIconHeight();
+        Application.Imaging.submit(new Callable<Icon>() {
+            @Override
+            public Icon call() throws Exception {
+                Image image = new ImageDecoder(new File(path)).decode(width, height);
+                return new ImageIcon(image.getScaledInstance(width, height, Image.SCALE_FAST));
+            }
+        }, new ICompletionObserver<Icon>() {
+            @Override
+            public void completed(Icon icon) {
+                setIcon(icon);
+            }
+        });
+    }
+    
     // ----------------------------------------------------------- IAlbumModel 
     
     /*
@@ -67,6 +161,7 @@ public class AlbumModel extends DefaultItemModel implements IAlbumModel  {
      */
     @Override
     public Iterator<IPhotoModel> iterator() {
+        load();
         return mPhotos.iterator();
     }
           
@@ -83,6 +178,7 @@ public class AlbumModel extends DefaultItemModel implements IAlbumModel  {
      */
     @Override
     public IPhotoModel getPhoto(int index) {
+        load();
         return mPhotos.get(index);
     }
     
@@ -111,6 +207,10 @@ public class AlbumModel extends DefaultItemModel implements IAlbumModel  {
      */
     @Override
     public int getCount() {
+        IPhotoLoader loader = mLoader;
+        if(loader != null) {
+            return loader.getCount();
+        }
         return mPhotos.size();
     }
     
@@ -119,6 +219,7 @@ public class AlbumModel extends DefaultItemModel implements IAlbumModel  {
      */
     @Override
     public IPhotoModel getPhoto(String name) {
+        load();
         for(IPhotoModel photo : mPhotos) {
             if(photo.getName().compareTo(name) == 0) {
                 return photo;
@@ -132,6 +233,7 @@ public class AlbumModel extends DefaultItemModel implements IAlbumModel  {
      */
     @Override
     public List<IPhotoModel> getPhotos() {
+        load();
         return mPhotos;
     }
 
@@ -140,9 +242,10 @@ public class AlbumModel extends DefaultItemModel implements IAlbumModel  {
      */
     @Override
     public void addPhoto(IPhotoModel photo) {
+        load();
         mPhotos.add(photo);
         photo.setAlbum(this);
-        notifyChangeObservers(new ItemChangeEvent(this, photo, ChangeType.ADDITION));
+        notifyChangeObservers(new ItemChangeEvent(this, photo, ChangeType.ADDITION, mPhotos.size() - 1));
     }
 
     /*
@@ -150,15 +253,81 @@ public class AlbumModel extends DefaultItemModel implements IAlbumModel  {
      */
     @Override
     public void removePhoto(IPhotoModel photo) {
-        if(mPhotos.remove(photo)) {
-            notifyChangeObservers(new ItemChangeEvent(this, photo, ChangeType.REMOVAL));
+        load();
+        int index = mPhotos.indexOf(photo);
+        if(index >= 0) {
+            mPhotos.remove(index);
+            notifyChangeObservers(new ItemChangeEvent(this, photo, ChangeType.REMOVAL, index));
         }
     }
+
+    /*
+     * @see common.IAlbumModel#isLoaded()
+     */
+    @Override
+    public boolean isLoaded() {
+        return mLoader == null;
+    }
     
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Private helper method that creates the photos of this album through its
+     * loader, if they have not been created yet, and then notifies the 
+     * observers. The gallery is changed and observed on the Event Dispatch 
+     * Thread, so an album of the gallery is loaded there, waiting for it if
+     * accessed from another thread; only a copy is loaded on the thread that
+     * accesses it. The observers are notified outside of the lock, as they 
+     * may take their own locks.
+     */
+    private void load() {
+        if(mLoader == null) {
+            return;
+        }
+        if(!mDetached && !SwingUtilities.isEventDispatchThread()) {
+            try {
+                SwingUtilities.invokeAndWait(new Runnable() {
+                    @Override
+                    public void run() {
+                        load();
+                    }
+                });
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            catch(InvocationTargetException e) {
+                Application.dump(e);
+            }
+            return;
+        }
+        synchronized(this) {
+            if(mLoader == null) {
+                return;
+            }
+            try {
+                List<IPhotoModel> photos = mLoader.load();
+                for(IPhotoModel photo : photos) {
+                    photo.setAlbum(this);
+                }
+                mPhotos.addAll(photos);
+            }
+            catch(IOException e) {
+                // The album is left empty rather than failing each time it is
+                // accessed; the catalog it was read from is left as it is
+                // until the gallery is written again.
+                Application.dump(e);
+            }
+            mLoader = null;
+        }
+        notifyChangeObservers(new ItemChangeEvent(this, this, ChangeType.LOADED));
+    }
     
     // --------------------------------------------------------- Private Fields
     
     private String mIconImagePath;
+    private volatile IPhotoLoader mLoader;
+    private boolean mDetached;
     private List<IPhotoModel> mPhotos;
     private Icon mIcon;
 
@@ -0,0 +1,281 @@
+// AlbumPhotoSource.java
+package model;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import javax.swing.SwingUtilities;
+import runtime.Application;
+import common.IAlbumModel;
+import common.IPhotoFilter;
+import common.IPhotoModel;
+import common.IPhotoSource;
+
+/**
+ * Class that provides a photo source streaming the photos of one or more
+ * albums, such as every album of the gallery, in order or shuffled, and 
+ * optionally filtered. Nothing is copied when the source is iterated: the 
+ * photos are looked up in their album by index as they are streamed, so 
+ * iterating the source holds on to no more than the list of albums, whatever
+ * the number of photos they contain. The photos of an album whose photos have
+ * not been loaded are created one at a time as they are streamed, so the 
+ * album is not loaded. The list of albums is taken on the Event Dispatch 
+ * Thread, where the gallery is changed, when the iteration starts.
+ *
+ * A shuffled source draws its order from a random permutation of the photo
+ * indices that is computed one index at a time rather than stored, and a new
+ * permutation is drawn for each iteration.
+ */
+public class AlbumPhotoSource implements IPhotoSource {
+
+    /**
+     * Constructor that instantiates a new source streaming the photos of the
+     * album specified in order.
+     * 
+     * @param album: the album whose photos are to be streamed
+     */
+    public AlbumPhotoSource(IAlbumModel album) {
+        this(Collections.singletonList(album), false, null);
+    }
+
+    /**
+     * Constructor that instantiates a new source streaming the photos of the
+     * albums specified.
+     * 
+     * @param albums: the albums whose photos are to be streamed, such as the
+     *          gallery model
+     * @param shuffle: whether or not to stream the photos in a random order
+     * @param filter: the filter selecting the photos to be streamed; or null
+     *          to stream every photo
+     */
+    public AlbumPhotoSource(Iterable<? extends IAlbumModel> albums, boolean shuffle, IPhotoFilter filter) {
+        mAlbums = albums;
+        mShuffle = shuffle;
+        mFilter = filter;
+    }
+
+    /*
+     * @see java.lang.Iterable#iterator()
+     */
+    @Override
+    public Iterator<IPhotoModel> iterator() {
+        return new PhotoIterator();
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Private inner class that iterates over the photos of the albums, as 
+     * they were when the iteration started. Photos removed from an album 
+     * meanwhile are skipped; photos added to it are only streamed by the next
+     * iteration.
+     */
+    private class PhotoIterator implements Iterator<IPhotoModel> {
+
+        /**
+         * Default constructor that instantiates a new iterator positioned 
+         * before the first photo.
+         */
+        public PhotoIterator() {
+            mAlbumList = new ArrayList<IAlbumModel>();
+            if(SwingUtilities.isEventDispatchThread()) {
+                listAlbums();
+            }
+            else {
+                // The albums are changed on the Event Dispatch Thread, so 
+                // they are listed there too...
+                try {
+                    SwingUtilities.invokeAndWait(new Runnable() {
+                        @Override
+                        public void run() {
+                            listAlbums();
+                        }
+                    });
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                catch(InvocationTargetException e) {
+                    Application.dump(e);
+                }
+            }
+            if(mShuffle) {
+                mOrder = new Permutation(mTotal, new Random());
+            }
+            advance();
+        }
+
+        /*
+         * @see java.util.Iterator#hasNext()
+         */
+        @Override
+        public boolean hasNext() {
+            return mNext != null;
+        }
+
+        /*
+         * @see java.util.Iterator#next()
+         */
+        @Override
+        public IPhotoModel next() {
+            if(mNext == null) {
+                throw new NoSuchElementException();
+            }
+            IPhotoModel photo = mNext;
+            advance();
+            return photo;
+        }
+
+        /*
+         * @see java.util.Iterator#remove()
+         */
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Private helper method that lists the albums and the offsets of 
+         * their photos among the photos of all the albums. It must be called
+         * on the Event Dispatch Thread.
+         */
+        private void listAlbums() {
+            for(IAlbumModel album : mAlbums) {
+                mAlbumList.add(album);
+            }
+            mOffsets = new int[mAlbumList.size()];
+            for(int i = 0; i < mOffsets.length; i++) {
+                mOffsets[i] = mTotal;
+                mTotal += mAlbumList.get(i).getCount();
+            }
+        }
+
+        /**
+         * Private helper method that looks up the next photo to be streamed,
+         * skipping the photos the filter rejects.
+         */
+        private void advance() {
+            mNext = null;
+            while(mNext == null && mPosition < mTotal) {
+                int index = mOrder == null ? mPosition : mOrder.get(mPosition);
+                mPosition++;
+                int album = findAlbum(index);
+                IAlbumModel model = mAlbumList.get(album);
+                int local = index - mOffsets[album];
+                if(local >= model.getCount()) {
+                    continue;
+                }
+                IPhotoModel photo = model instanceof AlbumModel 
+                    ? ((AlbumModel)model).streamPhoto(local) : model.getPhoto(local);
+                if(photo != null && (mFilter == null || mFilter.accept(photo))) {
+                    mNext = photo;
+                }
+            }
+        }
+
+        /**
+         * Private helper method that finds the album containing the photo at
+         * the index specified among the photos of all the albums.
+         * 
+         * @param index: the index of the photo among all the photos
+         * @return int: the index of the album containing the photo
+         */
+        private int findAlbum(int index) {
+            int low = 0;
+            int high = mOffsets.length - 1;
+            while(low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if(mOffsets[middle] <= index) {
+                    low = middle;
+                }
+                else {
+                    high = middle - 1;
+                }
+            }
+            return low;
+        }
+
+        private List<IAlbumModel> mAlbumList;
+        private int[] mOffsets;
+        private int mTotal;
+        private int mPosition;
+        private Permutation mOrder;
+        private IPhotoModel mNext;
+    }
+
+    /**
+     * Private inner class that provides a random permutation of the integers
+     * from 0 to a size, computed one integer at a time in constant memory. It
+     * is a small Feistel network over the smallest even number of bits that
+     * covers the size, so it is a bijection over those bits; integers mapped
+     * beyond the size are mapped again until they fall within it.
+     */
+    private static class Permutation {
+
+        public Permutation(int size, Random random) {
+            mSize = size;
+            int bits = 2;
+            while((1L << bits) < size) {
+                bits += 2;
+            }
+            mHalfBits = bits / 2;
+            mHalfMask = (1L << mHalfBits) - 1;
+            mKeys = new int[ROUNDS];
+            for(int i = 0; i < ROUNDS; i++) {
+                mKeys[i] = random.nextInt();
+            }
+        }
+
+        /**
+         * Gets the integer at the position specified in the permutation.
+         * 
+         * @param position: the position, from 0 to the size
+         * @return int: the integer at that position
+         */
+        public int get(int position) {
+            long value = position;
+            do {
+                value = encrypt(value);
+            } while(value >= mSize);
+            return (int)value;
+        }
+
+        private long encrypt(long value) {
+            long left = value >>> mHalfBits;
+            long right = value & mHalfMask;
+            for(int i = 0; i < ROUNDS; i++) {
+                long mixed = left ^ (mix((int)right ^ mKeys[i]) & mHalfMask);
+                left = right;
+                right = mixed;
+            }
+            return (left << mHalfBits) | right;
+        }
+
+        private static int mix(int value) {
+            value ^= value >>> 16;
+            value *= 0x85ebca6b;
+            value ^= value >>> 13;
+            value *= 0xc2b2ae35;
+            value ^= value >>> 16;
+            return value;
+        }
+
+        private static final int ROUNDS = 4;
+
+        private final int mSize;
+        private final int mHalfBits;
+        private final long mHalfMask;
+        private final int[] mKeys;
+    }
+
+    // --------------------------------------------------------- Private Fields
+
+    private Iterable<? extends IAlbumModel> mAlbums;
+    private boolean mShuffle;
+    private IPhotoFilter mFilter;
+
+}
@@ -1,7 +1,6 @@
 // GalleryModel.java
 package model;
 
-import io.XmlAlbumsReader;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -11,6 +10,7 @@ import java.util.List;
 import java.util.Map;
 import common.ChangeType;
 import common.IAlbumModel;
+import common.IAlbumsReader;
 import common.IGalleryModel;
 import common.IItemModel;
 import common.IPhotoModel;
@@ -37,12 +37,12 @@ public class GalleryModel extends DefaultItemModel implements IGalleryModel {
     
     /**
      * Constructor that instantiates a new gallery model using the specified 
-     * xml albums reader to read in it's contents from an xml file. 
+     * albums reader to read in it's contents from an albums file. 
      * 
-     * @param reader: the xml albums reader used to read in the contents of
-     *          the gallery.
+     * @param reader: the albums reader used to read in the contents of the
+     *          gallery.
      */
-    public GalleryModel(XmlAlbumsReader reader) {
+    public GalleryModel(IAlbumsReader reader) {
         super();
         reader.read();
         mAlbums = new LinkedList<IAlbumModel>(reader.getAlbums());
@@ -125,7 +125,7 @@ public class GalleryModel extends DefaultItemModel implements IGalleryModel {
     @Override
     public void addAlbum(IAlbumModel album) {
         mAlbums.add(album);
-        notifyChangeObservers(new ItemChangeEvent(this, album, ChangeType.ADDITION));
+        notifyChangeObservers(new ItemChangeEvent(this, album, ChangeType.ADDITION, mAlbums.size() - 1));
     }
 
     /*
@@ -133,8 +133,10 @@ public class GalleryModel extends DefaultItemModel implements IGalleryModel {
      */
     @Override
     public void removeAlbum(IAlbumModel album) {
-        if(mAlbums.remove(album)) {
-            notifyChangeObservers(new ItemChangeEvent(this, album, ChangeType.REMOVAL));
+        int index = mAlbums.indexOf(album);
+        if(index >= 0) {
+            mAlbums.remove(index);
+            notifyChangeObservers(new ItemChangeEvent(this, album, ChangeType.REMOVAL, index));
         }
     }
     
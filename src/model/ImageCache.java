@@ -0,0 +1,314 @@
+// ImageCache.java
+package model;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class that provides a memory bounded cache of decoded images shared by all
+ * the photo models. Images are held strongly, in least recently used order,
+ * until the total size of their rasters exceeds the cache's budget. The least
+ * recently used images are then evicted to a second tier where they are only
+ * softly reachable, so they can still be returned without decoding them again
+ * until the garbage collector needs the memory. Pinned images, such as the
+ * photo currently being displayed, are never evicted.
+ */
+public class ImageCache {
+
+    /**
+     * Constructor that instantiates a new image cache with the budget
+     * specified.
+     *
+     * @param budget: the maximum number of bytes of image rasters to be held
+     *          strongly by the cache
+     */
+    public ImageCache(long budget) {
+        mBudget = budget;
+        mSize = 0;
+        mEntries = new LinkedHashMap<Object, Image>(16, 0.75f, true);
+        mIndex = new HashMap<Object, Image>();
+        mSoftEntries = new HashMap<Object, SoftEntry>();
+        mQueue = new ReferenceQueue<Image>();
+        mPinned = new HashSet<Object>();
+    }
+
+    /**
+     * Gets the image cached under the key specified, marking it as the most
+     * recently used image. An image found in the soft tier is moved back into
+     * the strongly held tier.
+     *
+     * @param key: the key of the image
+     * @return Image: the cached image; or null if the image is not cached
+     */
+    public synchronized Image get(Object key) {
+        purge();
+        Image image = mEntries.get(key);
+        if(image != null) {
+            mHits++;
+            return image;
+        }
+        SoftEntry soft = mSoftEntries.remove(key);
+        if(soft != null) {
+            image = soft.get();
+            if(image != null) {
+                mHits++;
+                mSoftHits++;
+                put(key, image);
+                return image;
+            }
+        }
+        mMisses++;
+        return null;
+    }
+
+    /**
+     * Gets the image cached under the key specified without marking it as
+     * used and without affecting the cache's counters.
+     *
+     * @param key: the key of the image
+     * @return Image: the cached image; or null if the image is not cached
+     */
+    public synchronized Image peek(Object key) {
+        // Looking the image up in the access ordered map would mark it as the
+        // most recently used one, so it is looked up in the index instead.
+        Image image = mIndex.get(key);
+        if(image == null) {
+            SoftEntry soft = mSoftEntries.get(key);
+            if(soft != null) {
+                image = soft.get();
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Puts the image specified in the cache under the key specified, evicting
+     * the least recently used images if the cache exceeds its budget.
+     *
+     * @param key: the key of the image
+     * @param image: the image to be cached
+     */
+    public synchronized void put(Object key, Image image) {
+        remove(key);
+        mEntries.put(key, image);
+        mIndex.put(key, image);
+        mSize += getSize(image);
+        evict();
+    }
+
+    /**
+     * Removes the image cached under the key specified from the cache.
+     *
+     * @param key: the key of the image
+     */
+    public synchronized void remove(Object key) {
+        Image image = mEntries.remove(key);
+        mIndex.remove(key);
+        if(image != null) {
+            mSize -= getSize(image);
+        }
+        mSoftEntries.remove(key);
+    }
+
+    /**
+     * Removes all the images from the cache, including the pinned ones.
+     */
+    public synchronized void clear() {
+        mEntries.clear();
+        mIndex.clear();
+        mSoftEntries.clear();
+        mPinned.clear();
+        mSize = 0;
+    }
+
+    /**
+     * Pins the image cached under the key specified so that it is never
+     * evicted, even if the cache exceeds its budget.
+     *
+     * @param key: the key of the image
+     */
+    public synchronized void pin(Object key) {
+        mPinned.add(key);
+    }
+
+    /**
+     * Unpins the image cached under the key specified so that it can be
+     * evicted once again.
+     *
+     * @param key: the key of the image
+     */
+    public synchronized void unpin(Object key) {
+        if(mPinned.remove(key)) {
+            evict();
+        }
+    }
+
+    /**
+     * Gets the maximum number of bytes of image rasters held strongly by this
+     * cache.
+     *
+     * @return long: the budget of the cache in bytes
+     */
+    public synchronized long getBudget() {
+        return mBudget;
+    }
+
+    /**
+     * Sets the maximum number of bytes of image rasters held strongly by this
+     * cache, evicting images if the cache exceeds the new budget.
+     *
+     * @param budget: the new budget of the cache in bytes
+     */
+    public synchronized void setBudget(long budget) {
+        mBudget = budget;
+        evict();
+    }
+
+    /**
+     * Gets the number of bytes of image rasters currently held strongly by
+     * this cache.
+     *
+     * @return long: the size of the cache in bytes
+     */
+    public synchronized long getSize() {
+        return mSize;
+    }
+
+    /**
+     * Gets the number of requests for an image that was found in the cache,
+     * including the requests counted by {@link #getSoftHitCount()}.
+     *
+     * @return long: the number of cache hits
+     */
+    public synchronized long getHitCount() {
+        return mHits;
+    }
+
+    /**
+     * Gets the number of requests for an image that was found only in the
+     * softly reachable tier of the cache.
+     *
+     * @return long: the number of soft tier hits
+     */
+    public synchronized long getSoftHitCount() {
+        return mSoftHits;
+    }
+
+    /**
+     * Gets the number of requests for an image that was not in the cache.
+     *
+     * @return long: the number of cache misses
+     */
+    public synchronized long getMissCount() {
+        return mMisses;
+    }
+
+    /**
+     * Gets the number of images that were evicted to the softly reachable tier
+     * because the cache exceeded its budget.
+     *
+     * @return long: the number of evictions
+     */
+    public synchronized long getEvictionCount() {
+        return mEvictions;
+    }
+
+    /*
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public synchronized String toString() {
+        return "ImageCache[size=" + mSize + ", budget=" + mBudget + ", images=" + mEntries.size() +
+            ", soft=" + mSoftEntries.size() + ", pinned=" + mPinned.size() + ", hits=" + mHits +
+            ", softHits=" + mSoftHits + ", misses=" + mMisses + ", evictions=" + mEvictions + "]";
+    }
+
+    /**
+     * Determines the number of bytes used by the raster of the image specified.
+     *
+     * @param image: the image
+     * @return long: the size of the image's raster in bytes
+     */
+    public static long getSize(Image image) {
+        if(image instanceof BufferedImage) {
+            DataBuffer buffer = ((BufferedImage)image).getRaster().getDataBuffer();
+            long bytesPerElement = DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+            return (long)buffer.getSize() * buffer.getNumBanks() * bytesPerElement;
+        }
+        return (long)Math.max(0, image.getWidth(null)) * Math.max(0, image.getHeight(null)) * 4;
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Private helper method that evicts the least recently used images that
+     * are not pinned to the soft tier until the cache is within its budget.
+     */
+    private void evict() {
+        Iterator<Map.Entry<Object, Image>> it = mEntries.entrySet().iterator();
+        while(mSize > mBudget && it.hasNext()) {
+            Map.Entry<Object, Image> eldest = it.next();
+            if(mPinned.contains(eldest.getKey())) {
+                continue;
+            }
+            it.remove();
+            mIndex.remove(eldest.getKey());
+            mSize -= getSize(eldest.getValue());
+            mSoftEntries.put(eldest.getKey(), new SoftEntry(eldest.getKey(), eldest.getValue(), mQueue));
+            mEvictions++;
+        }
+    }
+
+    /**
+     * Private helper method that removes the soft tier entries whose images
+     * have been reclaimed by the garbage collector.
+     */
+    private void purge() {
+        SoftEntry cleared;
+        while((cleared = (SoftEntry)mQueue.poll()) != null) {
+            if(mSoftEntries.get(cleared.mKey) == cleared) {
+                mSoftEntries.remove(cleared.mKey);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Private inner class representing an image in the soft tier that also
+     * remembers the key it was cached under.
+     */
+    private static class SoftEntry extends SoftReference<Image> {
+
+        public SoftEntry(Object key, Image image, ReferenceQueue<Image> queue) {
+            super(image, queue);
+            mKey = key;
+        }
+
+        private final Object mKey;
+    }
+
+    // --------------------------------------------------------- Private Fields
+
+    private long mBudget;
+    private long mSize;
+    private long mHits;
+    private long mSoftHits;
+    private long mMisses;
+    private long mEvictions;
+    private Map<Object, Image> mEntries;
+    private Map<Object, Image> mIndex;
+    private Map<Object, SoftEntry> mSoftEntries;
+    private ReferenceQueue<Image> mQueue;
+    private Set<Object> mPinned;
+
+}
@@ -0,0 +1,123 @@
+// ImagePyramid.java
+package model;
+
+import io.ImageDecoder;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class that provides a lazily built power-of-two mip pyramid of an image.
+ * Level 0 is the full resolution image and each following level is half the
+ * width and height of the previous one. A level is only built the first time
+ * it is requested, from the level just above it, so the full resolution image
+ * is only resampled once no matter how many times the image is zoomed. The
+ * full resolution image itself is not held by the pyramid and must be passed
+ * in whenever a level is requested.
+ */
+public class ImagePyramid {
+
+    /**
+     * Default constructor that instantiates a new, empty image pyramid.
+     */
+    public ImagePyramid() {
+        mLevels = new ArrayList<BufferedImage>();
+    }
+
+    /**
+     * Gets the level specified of the pyramid of the image passed in, building
+     * it and any missing levels above it if needed.
+     *
+     * @param original: the full resolution image the pyramid is built from
+     * @param level: the level to get, where 0 is the full resolution image
+     * @return Image: the image at the level specified
+     */
+    public synchronized Image getLevel(Image original, int level) {
+        if(level <= 0) {
+            return original;
+        }
+        while(mLevels.size() < level) {
+            Image previous = mLevels.isEmpty() ? original : mLevels.get(mLevels.size() - 1);
+            int width = Math.max(1, previous.getWidth(null) / 2);
+            int height = Math.max(1, previous.getHeight(null) / 2);
+            mLevels.add(ImageDecoder.scale(previous, width, height));
+        }
+        return mLevels.get(level - 1);
+    }
+
+    /**
+     * Determines the level of the pyramid whose size is the closest to the
+     * size of the image once scaled to fit within the width and height
+     * specified. The level may be smaller than the scaled image, so it is
+     * only suitable for a quick preview.
+     *
+     * @param imageWidth: the width of the full resolution image
+     * @param imageHeight: the height of the full resolution image
+     * @param width: the width the image is to be fit within
+     * @param height: the height the image is to be fit within
+     * @return int: the nearest level
+     */
+    public static int getNearestLevel(int imageWidth, int imageHeight, int width, int height) {
+        double scale = getScale(imageWidth, imageHeight, width, height);
+        if(scale >= 1.0) {
+            return 0;
+        }
+        int level = (int)Math.round(-Math.log(scale) / Math.log(2));
+        return Math.min(level, getMaximumLevel(imageWidth, imageHeight));
+    }
+
+    /**
+     * Determines the smallest level of the pyramid that is still at least as
+     * large as the image once scaled to fit within the width and height
+     * specified, so that the scaled image is only ever a reduction of it by a
+     * factor of less than two.
+     *
+     * @param imageWidth: the width of the full resolution image
+     * @param imageHeight: the height of the full resolution image
+     * @param width: the width the image is to be fit within
+     * @param height: the height the image is to be fit within
+     * @return int: the smallest level that is not smaller than the scaled image
+     */
+    public static int getExactLevel(int imageWidth, int imageHeight, int width, int height) {
+        double scale = getScale(imageWidth, imageHeight, width, height);
+        if(scale >= 1.0) {
+            return 0;
+        }
+        int level = (int)Math.floor(-Math.log(scale) / Math.log(2));
+        return Math.min(level, getMaximumLevel(imageWidth, imageHeight));
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Private helper method that determines the factor by which an image is
+     * scaled to fit within the width and height specified.
+     */
+    private static double getScale(int imageWidth, int imageHeight, int width, int height) {
+        if(imageWidth <= 0 || imageHeight <= 0 || width <= 0 || height <= 0) {
+            return 1.0;
+        }
+        return Math.min((double)width / imageWidth, (double)height / imageHeight);
+    }
+
+    /**
+     * Private helper method that determines the last level of the pyramid of
+     * an image of the size specified, which is the last one that is at least
+     * one pixel in both directions.
+     */
+    private static int getMaximumLevel(int imageWidth, int imageHeight) {
+        int level = 0;
+        while(imageWidth > 1 && imageHeight > 1) {
+            imageWidth /= 2;
+            imageHeight /= 2;
+            level++;
+        }
+        return level;
+    }
+
+    // --------------------------------------------------------- Private Fields
+
+    private List<BufferedImage> mLevels;
+
+}
@@ -0,0 +1,244 @@
+// ImagingExecutor.java
+package model;
+
+import java.awt.Image;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import javax.swing.Icon;
+import javax.swing.SwingUtilities;
+import runtime.Application;
+import common.ChangeType;
+import common.ICompletionObserver;
+import common.IItemModel;
+import common.IPhotoModel;
+import common.ItemChangeEvent;
+
+/**
+ * Class that provides the pool of threads on which all the decoding and
+ * resampling of images takes place, so that none of it ever happens on the
+ * Event Dispatch Thread. Work is submitted as a task and its result is
+ * returned as a future. The result can also be delivered back on the Event
+ * Dispatch Thread, either to an observer or as a STATE change event fired by
+ * the item it belongs to.
+ *
+ * Work that nobody is waiting for, such as preloading the thumbnails of a
+ * whole gallery, is submitted to the background instead: it runs on its own
+ * smaller pool of threads of lower priority, so that it never queues ahead 
+ * of the images the user is waiting for.
+ *
+ * When assertions are enabled, every place that decodes or resamples an image
+ * calls {@link #checkThread(String)}, which reports any such work that still
+ * happens on the Event Dispatch Thread.
+ */
+public class ImagingExecutor {
+
+    /**
+     * Constructor that instantiates a new imaging executor with the number of
+     * threads specified.
+     *
+     * @param threads: the number of threads decoding images; or 0 for one
+     *          thread per processor
+     * @param assertions: whether or not to report image work performed on
+     *          the Event Dispatch Thread
+     */
+    public ImagingExecutor(int threads, boolean assertions) {
+        if(threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        mThreads = threads;
+        mExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Imaging");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        });
+        mBackgroundExecutor = Executors.newFixedThreadPool(Math.max(1, threads / 2), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Imaging Background");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        mAssertions = assertions;
+    }
+
+    /**
+     * Gets the number of threads decoding images.
+     *
+     * @return int: the number of imaging threads
+     */
+    public int getThreadCount() {
+        return mThreads;
+    }
+
+    /**
+     * Submits a task to be run on the imaging threads.
+     *
+     * @param task: the task to be run
+     * @return Future: the future result of the task
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        return mExecutor.submit(task);
+    }
+
+    /**
+     * Submits a task to be run on the imaging threads, and delivers its result
+     * to the observer specified on the Event Dispatch Thread. The observer is
+     * not called if the task fails or is cancelled.
+     *
+     * @param task: the task to be run
+     * @param observer: the observer of the task's result
+     * @return Future: the future result of the task
+     */
+    public <T> Future<T> submit(Callable<T> task, ICompletionObserver<T> observer) {
+        return submit(mExecutor, task, observer);
+    }
+
+    /**
+     * Submits a task to be run on the imaging threads, and fires a STATE
+     * change event from the item specified on the Event Dispatch Thread once
+     * it has completed.
+     *
+     * @param task: the task to be run
+     * @param item: the item whose state the task changes
+     * @return Future: the future result of the task
+     */
+    public <T> Future<T> submit(Callable<T> task, final IItemModel item) {
+        return submit(task, new ICompletionObserver<T>() {
+            @Override
+            public void completed(T result) {
+                item.notifyChangeObservers(new ItemChangeEvent(null, item, ChangeType.STATE));
+            }
+        });
+    }
+
+    /**
+     * Submits a task to be run in the background, on the threads reserved for
+     * work nobody is waiting for, and fires a STATE change event from the 
+     * item specified on the Event Dispatch Thread once it has completed. The
+     * task never delays the tasks submitted through the other methods.
+     *
+     * @param task: the task to be run
+     * @param item: the item whose state the task changes
+     * @return Future: the future result of the task
+     */
+    public <T> Future<T> submitBackground(Callable<T> task, final IItemModel item) {
+        return submit(mBackgroundExecutor, task, new ICompletionObserver<T>() {
+            @Override
+            public void completed(T result) {
+                item.notifyChangeObservers(new ItemChangeEvent(null, item, ChangeType.STATE));
+            }
+        });
+    }
+
+    /**
+     * Decodes the image of the photo specified on the imaging threads. The
+     * photo fires a STATE change event once its image is available.
+     *
+     * @param photo: the photo whose image is to be decoded
+     * @return Future: the future image of the photo
+     */
+    public Future<Image> loadImage(final IPhotoModel photo) {
+        return submit(new Callable<Image>() {
+            @Override
+            public Image call() {
+                return photo.getImage();
+            }
+        }, photo);
+    }
+
+    /**
+     * Creates the icon of the photo specified on the imaging threads. The
+     * photo fires a STATE change event once its icon is available.
+     *
+     * @param photo: the photo whose icon is to be created
+     * @return Future: the future icon of the photo
+     */
+    public Future<Icon> loadIcon(final IPhotoModel photo) {
+        return submit(new Callable<Icon>() {
+            @Override
+            public Icon call() {
+                return photo.getIcon();
+            }
+        }, photo);
+    }
+
+    /**
+     * Checks that the calling thread is allowed to decode or resample images.
+     * If assertions are enabled and the caller is on the Event Dispatch Thread,
+     * the violation is reported through {@link Application#dump(Exception)}.
+     *
+     * @param operation: a description of the image work being performed
+     */
+    public static void checkThread(String operation) {
+        ImagingExecutor imaging = Application.Imaging;
+        if(imaging != null && imaging.mAssertions && SwingUtilities.isEventDispatchThread()) {
+            Application.dump(new IllegalStateException(operation + " on the Event Dispatch Thread"));
+        }
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Private helper method that submits a task to the executor specified, and
+     * delivers its result to the observer specified on the Event Dispatch
+     * Thread. The observer is not called if the task fails or is cancelled.
+     *
+     * @param executor: the executor to run the task on
+     * @param task: the task to be run
+     * @param observer: the observer of the task's result
+     * @return Future: the future result of the task
+     */
+    private static <T> Future<T> submit(ExecutorService executor, Callable<T> task, 
+            final ICompletionObserver<T> observer) {
+        FutureTask<T> future = new FutureTask<T>(task) {
+            @Override
+            protected void done() {
+                if(isCancelled()) {
+                    return;
+                }
+                final T result;
+                try {
+                    result = get();
+                }
+                catch(InterruptedException e) {
+                    return;
+                }
+                catch(CancellationException e) {
+                    return;
+                }
+                catch(ExecutionException e) {
+                    Application.dump(e);
+                    return;
+                }
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        observer.completed(result);
+                    }
+                });
+            }
+        };
+        executor.execute(future);
+        return future;
+    }
+
+    // --------------------------------------------------------- Private Fields
+
+    private ExecutorService mExecutor;
+    private ExecutorService mBackgroundExecutor;
+    private int mThreads;
+    private boolean mAssertions;
+
+}
@@ -1,17 +1,25 @@
 // PhotoModel.java
 package model;
 
-import java.awt.Graphics2D;
+import io.ImageDecoder;
+import io.PhotoData;
+import io.TiledImageSource;
+import java.awt.Dimension;
 import java.awt.Image;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.lang.ref.SoftReference;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import javax.imageio.ImageIO;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
 import runtime.Application;
 import runtime.Constants.ConfigKeys;
 import com.drew.imaging.jpeg.JpegMetadataReader;
@@ -22,6 +30,7 @@ import common.IAlbumModel;
 import common.IChangeBroadcaster;
 import common.IChangeObserver;
 import common.IPhotoModel;
+import common.ITiledImage;
 import common.IconSize;
 import common.ItemChangeEvent;
 
@@ -40,8 +49,6 @@ public class PhotoModel extends DefaultItemModel implements IPhotoModel, IChange
     public PhotoModel() {
         super();
         setIcon(Application.Settings.getIcon(ConfigKeys.GalleryView.PHOTO_ICON, IconSize.LARGE));
-        mImage = null;
-        mOriginalImage = null;
         mMetadata = null;
         mAlbum = null;
         mObservers = new LinkedList<IChangeObserver>();
@@ -55,9 +62,9 @@ public class PhotoModel extends DefaultItemModel implements IPhotoModel, IChange
      */
     public PhotoModel(String path) {
         super();
-        setPath(path);
         mAlbum = null;
         mObservers = new LinkedList<IChangeObserver>();
+        setPath(path);
     }
 
     
@@ -85,15 +92,168 @@ public class PhotoModel extends DefaultItemModel implements IPhotoModel, IChange
      */
     @Override
     public Image getImage() {
-        return mImage;
+        Image original = loadImage();
+        if(original == null) {
+            return null;
+        }
+        synchronized(this) {
+            if(mDisplayWidth < 0 || isAboveOverview(original, mDisplayWidth, mDisplayHeight)) {
+                return original;
+            }
+            Image display = Application.Images.get(mDisplayKey);
+            if(display != null && mRenderedGeneration == mDisplayGeneration) {
+                return display;
+            }
+        }
+        Image display = renderScaledImage(original);
+        if(display == null) {
+            display = Application.Images.peek(mDisplayKey);
+        }
+        if(display == null && !SwingUtilities.isEventDispatchThread()) {
+            return original;
+        }
+        return display;
+    }
+   
+    /*
+     * @see common.IPhotoModel#getImage(int, int)
+     */
+    @Override
+    public Image getImage(int width, int height) {
+        Image original = Application.Images.get(mPath);
+        if(original != null) {
+            return original;
+        }
+        File file;
+        synchronized(this) {
+            file = mFile;
+        }
+        if(file == null) {
+            return null;
+        }
+        try {
+            PhotoData data = ingest();
+            ImageDecoder decoder = data != null ? data.getDecoder() : new ImageDecoder(file);
+            return decoder.decode(width, height);
+        }
+        catch(ClosedByInterruptException cbie) {
+            return null;
+        }
+        catch(IOException ioe) {
+            Application.dump(ioe);
+            return null;
+        }
     }
    
+    /*
+     * @see common.IPhotoModel#getImageSize()
+     */
+    @Override
+    public Dimension getImageSize() {
+        Image original = loadImage();
+        if(original == null) {
+            return null;
+        }
+        synchronized(this) {
+            Dimension size = mImageSize;
+            if(size == null) {
+                size = new Dimension(original.getWidth(null), original.getHeight(null));
+            }
+            if(mDisplayWidth < 0) {
+                return size;
+            }
+            return ImageDecoder.getScaledSize(size.width, size.height, mDisplayWidth, mDisplayHeight);
+        }
+    }
+    
+    /*
+     * @see common.IPhotoModel#getTiledImage()
+     */
+    @Override
+    public synchronized ITiledImage getTiledImage() {
+        if(mTiledSource != null || mTiled == null || !mTiled) {
+            return mTiledSource;
+        }
+        mTiledSource = new TiledImageSource(mFile, mImageSize,
+                Application.Settings.getInt(ConfigKeys.PhotoView.TILE_SIZE),
+                Application.Settings.getLong(ConfigKeys.Cache.TILE_BUDGET) * 1024 * 1024, 
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        fireStateChanged();
+                    }
+                });
+        return mTiledSource;
+    }
+    
     /*
      * @see common.IPhotoModel#getMetadata()
      */
     @Override
     public Metadata getMetadata() {
-        return mMetadata;
+        synchronized(this) {
+            if(mMetadata != null || !needsMetadata()) {
+                return mMetadata;
+            }
+            if(SwingUtilities.isEventDispatchThread()) {
+                if(mPendingMetadata == null) {
+                    mPendingMetadata = Application.Imaging.submit(new Callable<Metadata>() {
+                        @Override
+                        public Metadata call() {
+                            return getMetadata();
+                        }
+                    }, this);
+                }
+                return null;
+            }
+        }
+        loadMetadata();
+        synchronized(this) {
+            return mMetadata;
+        }
+    }
+    
+    /*
+     * @see common.IPhotoModel#isLoaded()
+     */
+    @Override
+    public synchronized boolean isLoaded() {
+        return mPath != null && Application.Images.peek(mPath) != null;
+    }
+    
+    /*
+     * @see common.IPhotoModel#unload()
+     */
+    @Override
+    public synchronized void unload() {
+        if(mPath != null) {
+            Application.Images.remove(mPath);
+        }
+        Application.Images.remove(mDisplayKey);
+        mPyramid = null;
+        if(mTiledSource != null) {
+            mTiledSource.dispose();
+            mTiledSource = null;
+        }
+    }
+    
+    /*
+     * @see common.IPhotoModel#setPinned(boolean)
+     */
+    @Override
+    public synchronized void setPinned(boolean pinned) {
+        mPinned = pinned;
+        if(mPath == null) {
+            return;
+        }
+        if(pinned) {
+            Application.Images.pin(mPath);
+            Application.Images.pin(mDisplayKey);
+        }
+        else {
+            Application.Images.unpin(mPath);
+            Application.Images.unpin(mDisplayKey);
+        }
     }
     
     /*
@@ -121,8 +281,21 @@ public class PhotoModel extends DefaultItemModel implements IPhotoModel, IChange
      */
     @Override
     public void scaleImage(int width, int height) {
-        mImage = getScaledImage(width, height);
-        notifyChangeObservers(new ItemChangeEvent(null, this, ChangeType.STATE));
+        synchronized(this) {
+            mDisplayWidth = width;
+            mDisplayHeight = height;
+            mDisplayGeneration++;
+        }
+        Image original = loadImage();
+        if(original != null) {
+            if(isAboveOverview(original, width, height)) {
+                Application.Images.remove(mDisplayKey);
+            }
+            else {
+                renderScaledImage(original);
+            }
+        }
+        fireStateChanged();
     }
 
     /*
@@ -130,8 +303,13 @@ public class PhotoModel extends DefaultItemModel implements IPhotoModel, IChange
      */
     @Override
     public void resetImage() {
-        scaleImage(mOriginalImage.getWidth(null),mOriginalImage.getHeight(null));
-        notifyChangeObservers(new ItemChangeEvent(null, this, ChangeType.STATE));
+        synchronized(this) {
+            mDisplayWidth = -1;
+            mDisplayHeight = -1;
+            mDisplayGeneration++;
+            Application.Images.remove(mDisplayKey);
+        }
+        fireStateChanged();
     }
     
     /*
@@ -139,17 +317,19 @@ public class PhotoModel extends DefaultItemModel implements IPhotoModel, IChange
      */
     @Override
     public Icon getIcon() {
-        if(mIcon == null) {
-            if(mImage != null) {
-                int thumbWidth = Application.Settings.getInt(ConfigKeys.GalleryView.THUMBNAIL_WIDTH);
-                int thumbHeight = Application.Settings.getInt(ConfigKeys.GalleryView.THUMBNAIL_HEIGHT);
-                mIcon = new ImageIcon(getScaledImage(thumbWidth, thumbHeight));
-            }
-            else {
-                setIcon(Application.Settings.getIcon(ConfigKeys.GalleryView.PHOTO_ICON, IconSize.LARGE));
+        Icon icon = mIcon;
+        if(icon != null) {
+            return icon;
+        }
+        if(SwingUtilities.isEventDispatchThread()) {
+            synchronized(this) {
+                if(mPendingIcon == null) {
+                    mPendingIcon = Application.Imaging.loadIcon(this);
+                }
             }
+            return PLACEHOLDER_ICON;
         }
-        return mIcon;
+        return loadIcon();
     }
 
     /*
@@ -172,19 +352,22 @@ public class PhotoModel extends DefaultItemModel implements IPhotoModel, IChange
      * @see common.IPhotoModel#setPath(String)
      */
     @Override
-    public void setPath(String path) {
+    public synchronized void setPath(String path) {
+        boolean pinned = mPinned;
+        setPinned(false);
+        unload();
         mPath = path;
         mFile = new File(mPath);
-        try {
-            mOriginalImage = ImageIO.read(mFile);
-            mImage = getScaledImage(mOriginalImage.getWidth(null), mOriginalImage.getHeight(null));
-            mMetadata = JpegMetadataReader.readMetadata(mFile);
-        } catch (JpegProcessingException jpege ) {
-            Application.dump(jpege);
-        }
-        catch(IOException ioe) {
-            Application.dump(ioe);
-        }
+        mDisplayWidth = -1;
+        mDisplayHeight = -1;
+        mDisplayGeneration++;
+        mTiled = null;
+        mImageSize = null;
+        mMetadata = null;
+        mPendingMetadata = null;
+        mImageFailed = false;
+        mMetadataFailed = false;
+        setPinned(pinned);
     }
 
     //------------------------------------------------------ IChangeBroadcaster
@@ -217,43 +400,511 @@ public class PhotoModel extends DefaultItemModel implements IPhotoModel, IChange
 
     // -------------------------------------------------------- Private Methods
 
+    /**
+     * Private helper method that notifies the observers that the state of
+     * this photo model has changed. Observers are always notified on the
+     * Event Dispatch Thread, even when the change happened on another thread.
+     */
+    private void fireStateChanged() {
+        final ItemChangeEvent e = new ItemChangeEvent(null, this, ChangeType.STATE);
+        if(SwingUtilities.isEventDispatchThread()) {
+            notifyChangeObservers(e);
+            return;
+        }
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                notifyChangeObservers(e);
+            }
+        });
+    }
+    
+    /**
+     * Private helper method that creates the icon of this photo model the 
+     * first time it is requested. The icon is read without holding any lock
+     * once created, so painting it never waits for the image being decoded on
+     * another thread.
+     * 
+     * @return Icon: the icon of this photo model
+     */
+    private Icon loadIcon() {
+        synchronized(mIconLock) {
+            if(mIcon == null) {
+                int thumbWidth = Application.Settings.getInt(ConfigKeys.GalleryView.THUMBNAIL_WIDTH);
+                int thumbHeight = Application.Settings.getInt(ConfigKeys.GalleryView.THUMBNAIL_HEIGHT);
+                Image thumbnail = createThumbnail(thumbWidth, thumbHeight);
+                if(thumbnail != null) {
+                    mIcon = new ImageIcon(thumbnail);
+                }
+                else {
+                    setIcon(PLACEHOLDER_ICON);
+                }
+            }
+            return mIcon;
+        }
+    }
+
+    /**
+     * Private helper method that decodes the image this photo model represents
+     * the first time it is needed. Nothing is read from disk when the photo is
+     * created, so the cost of loading a gallery depends only on the number of
+     * photos and not on their size. The decoded image is held by the shared
+     * image cache rather than by this photo model, so it may have to be 
+     * decoded again after the cache has evicted it. The image of a tiled 
+     * photo is only decoded as a reduced overview. A failed decode is 
+     * remembered so that it is not retried on every repaint. If the metadata
+     * has not been read yet either, both are taken from a single read of the
+     * file. 
+     * 
+     * On the Event Dispatch Thread, nothing is ever decoded: the image is only
+     * returned if it is already decoded, and is otherwise requested from the
+     * imaging threads, after which observers are notified. Elsewhere, the 
+     * image is decoded by the calling thread, without holding this photo 
+     * model's lock so that the Event Dispatch Thread never waits for it.
+     * 
+     * @return Image: the full resolution image; or null if it is unavailable
+     */
+    private Image loadImage() {
+        if(SwingUtilities.isEventDispatchThread()) {
+            return requestImage();
+        }
+        synchronized(mDecodeLock) {
+            String path;
+            File file;
+            synchronized(this) {
+                if(mPath == null || mImageFailed) {
+                    return null;
+                }
+                path = mPath;
+                file = mFile;
+            }
+            // The image may already have been decoded for another model of
+            // the same file, so whether it is tiled is determined here, off
+            // the Event Dispatch Thread, rather than only when decoding it.
+            isTiled();
+            Image original = Application.Images.get(path);
+            boolean decoded = false;
+            if(original == null) {
+                original = decodeImage(file);
+                decoded = true;
+            }
+            synchronized(this) {
+                if(!path.equals(mPath)) {
+                    return null;
+                }
+                if(original == null) {
+                    // A decode interrupted because it was no longer needed is
+                    // not a failure, and is retried when next requested.
+                    mImageFailed = !Thread.currentThread().isInterrupted();
+                    return null;
+                }
+                if(decoded) {
+                    Application.Images.put(path, original);
+                }
+                if(mImageSize == null) {
+                    mImageSize = new Dimension(original.getWidth(null), original.getHeight(null));
+                }
+            }
+            return original;
+        }
+    }
+    
+    /**
+     * Private helper method that returns the image of this photo model if it 
+     * is already decoded, and otherwise requests it from the imaging threads,
+     * without ever decoding anything itself.
+     * 
+     * @return Image: the full resolution image; or null if it is not decoded
+     */
+    private synchronized Image requestImage() {
+        if(mPath == null || mImageFailed) {
+            return null;
+        }
+        Image original = Application.Images.get(mPath);
+        if(original == null) {
+            if(mPendingImage == null || mPendingImage.isDone()) {
+                mPendingImage = Application.Imaging.loadImage(this);
+            }
+            return null;
+        }
+        if(mTiled == null && (mPendingImage == null || mPendingImage.isDone())) {
+            // Decoded for another model of the same file: whether the image
+            // is tiled is determined on the imaging threads, which then
+            // notify the observers.
+            mPendingImage = Application.Imaging.loadImage(this);
+        }
+        if(mImageSize == null) {
+            mImageSize = new Dimension(original.getWidth(null), original.getHeight(null));
+        }
+        return original;
+    }
+    
+    /**
+     * Private helper method that performs the actual decoding of the image in
+     * the file specified.
+     * 
+     * @param file: the file of this photo model
+     * @return Image: the decoded image; or null if it could not be decoded
+     */
+    private Image decodeImage(File file) {
+        try {
+            PhotoData data = ingest();
+            if(isTiled()) {
+                return new ImageDecoder(file).decode(OVERVIEW_SIZE, OVERVIEW_SIZE);
+            }
+            else if(data != null) {
+                return data.getDecoder().decode();
+            }
+            ImagingExecutor.checkThread("Decoding " + file);
+            return ImageIO.read(file);
+        }
+        catch(ClosedByInterruptException cbie) {
+            return null;
+        }
+        catch(IOException ioe) {
+            Application.dump(ioe);
+            return null;
+        }
+    }
+    
+    /**
+     * Private helper method that reads the metadata of the image this photo
+     * model represents the first time it is requested. If the file is being
+     * ingested meanwhile, the metadata extracted by ingest() is used instead
+     * of reading the file a second time.
+     */
+    private void loadMetadata() {
+        synchronized(mMetadataLock) {
+            File file;
+            synchronized(this) {
+                if(!needsMetadata()) {
+                    return;
+                }
+                file = mFile;
+            }
+            ImagingExecutor.checkThread("Reading the metadata of " + file);
+            try {
+                Metadata metadata = JpegMetadataReader.readMetadata(file);
+                synchronized(this) {
+                    mMetadata = metadata;
+                }
+            } 
+            catch (JpegProcessingException jpege) {
+                synchronized(this) {
+                    mMetadataFailed = true;
+                }
+                Application.dump(jpege);
+            }
+        }
+    }
+    
+    /**
+     * Private helper method that reads the whole file this photo model 
+     * represents in a single pass when its metadata has not been read yet, 
+     * and extracts the metadata from the contents read. The caller then 
+     * decodes the image from the same contents instead of reading the file a
+     * second time.
+     * 
+     * @return PhotoData: the contents of the file; or null if the metadata 
+     *      has already been read and the caller should read the file directly
+     * @throws IOException: if the file could not be read
+     */
+    private PhotoData ingest() throws IOException {
+        if(!needsMetadata() || isTiled()) {
+            return null;
+        }
+        synchronized(mMetadataLock) {
+            File file;
+            synchronized(this) {
+                if(!needsMetadata()) {
+                    return null;
+                }
+                file = mFile;
+            }
+            PhotoData data = PhotoData.read(file);
+            try {
+                Metadata metadata = data.getMetadata();
+                synchronized(this) {
+                    mMetadata = metadata;
+                }
+            }
+            catch(JpegProcessingException jpege) {
+                synchronized(this) {
+                    mMetadataFailed = true;
+                }
+                Application.dump(jpege);
+            }
+            return data;
+        }
+    }
+    
+    /**
+     * Private helper method that determines if the image of this photo model
+     * is too large to be decoded at full resolution, and must be displayed in
+     * tiles instead. Only files large enough to possibly hold an image above 
+     * the threshold are checked, by reading the size of the image from their
+     * header, so that the files of ordinary photos are not opened for it.
+     * 
+     * @return true: if the image is displayed in tiles; false otherwise
+     */
+    private boolean isTiled() {
+        File file;
+        synchronized(this) {
+            if(mTiled != null) {
+                return mTiled;
+            }
+            file = mFile;
+        }
+        Dimension size = null;
+        long threshold = Application.Settings.getInt(ConfigKeys.PhotoView.TILED_THRESHOLD) * 1000000L;
+        if(file != null && file.length() * MAXIMUM_PIXELS_PER_BYTE > threshold) {
+            try {
+                size = new ImageDecoder(file).getSize();
+            }
+            catch(IOException ioe) {
+                Application.dump(ioe);
+            }
+        }
+        synchronized(this) {
+            mTiled = size != null && (long)size.width * size.height > threshold;
+            if(mTiled) {
+                mImageSize = size;
+            }
+            return mTiled;
+        }
+    }
+    
+    /**
+     * Private helper method that determines if the image of this photo model
+     * is tiled and, once scaled to fit within the width and height specified,
+     * is larger than its overview, so that it has to be drawn from its tiles.
+     * Only the result of isTiled() cached when the image was loaded is used,
+     * so the file is never read here; an image not known to be tiled yet is
+     * treated as not tiled.
+     * 
+     * @param overview: the overview of the image
+     * @param width: the width the image is to be fit within
+     * @param height: the height the image is to be fit within
+     * @return true: if the image must be drawn from its tiles
+     */
+    private synchronized boolean isAboveOverview(Image overview, int width, int height) {
+        if(mTiled == null || !mTiled) {
+            return false;
+        }
+        Dimension size = ImageDecoder.getScaledSize(mImageSize.width, mImageSize.height, width, height);
+        return size.width > overview.getWidth(null) || size.height > overview.getHeight(null);
+    }
+    
+    /**
+     * Private helper method that determines if the metadata of this photo 
+     * still needs to be read.
+     * 
+     * @return true: if the metadata has not been read nor failed to be read
+     */
+    private synchronized boolean needsMetadata() {
+        return mMetadata == null && mFile != null && !mMetadataFailed;
+    }
+
     /**
      * Private helper method that takes care of the scaling of the image 
      * internally when {@link common.IPhotoModel#scaleImage(int, int)} is 
-     * called.
+     * called. The image is scaled from the level of the mip pyramid closest 
+     * to the requested size rather than from the full resolution image, so 
+     * that each zoom step only resamples about as many pixels as it displays.
      * 
+     * @param original: the full resolution image
      * @param width: the width of the scaled image
      * @param height: the height of the scaled image
      * @return Image: the resulting scaled image
      */
-    private Image getScaledImage(int width, int height) {
-        double thumbRatio = (double)width / (double)height;
-        double imageRatio = (double)mOriginalImage.getWidth(null)/ 
-            (double)mOriginalImage.getHeight(null);
-        
-        if (thumbRatio < imageRatio) {
-            height = (int)(width / imageRatio);
-        } else {
-            width = (int)(height * imageRatio);
-        }
-        
-        BufferedImage thumb = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g2 = thumb.createGraphics();
-        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g2.drawImage(mOriginalImage, 0, 0, width, height, null);
-        
-        return thumb;
+    private Image getScaledImage(Image original, int width, int height) {
+        int imageWidth = original.getWidth(null);
+        int imageHeight = original.getHeight(null);
+        int level = ImagePyramid.getNearestLevel(imageWidth, imageHeight, width, height);
+        Dimension size = ImageDecoder.getScaledSize(imageWidth, imageHeight, width, height);
+        return ImageDecoder.resize(getPyramid().getLevel(original, level), size.width, size.height, 
+                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
     }
-
     
+    /**
+     * Private helper method that renders the image at the size it was last
+     * scaled to. On the Event Dispatch Thread, the rendering is requested from
+     * the imaging threads instead, and observers are notified once it is 
+     * done. A rendering that finishes after the image was scaled again is 
+     * discarded.
+     * 
+     * @param original: the full resolution image
+     * @return Image: the scaled image; or null if it is rendered in the 
+     *      background or was superseded
+     */
+    private Image renderScaledImage(final Image original) {
+        final int width;
+        final int height;
+        final int generation;
+        synchronized(this) {
+            width = mDisplayWidth;
+            height = mDisplayHeight;
+            generation = mDisplayGeneration;
+            if(width < 0) {
+                return null;
+            }
+            if(SwingUtilities.isEventDispatchThread()) {
+                if(mRenderRequested != generation) {
+                    mRenderRequested = generation;
+                    Application.Imaging.submit(new Callable<Image>() {
+                        @Override
+                        public Image call() {
+                            return renderScaledImage(original);
+                        }
+                    }, this);
+                }
+                return null;
+            }
+        }
+        Image display = getScaledImage(original, width, height);
+        synchronized(this) {
+            if(generation != mDisplayGeneration) {
+                return null;
+            }
+            Application.Images.put(mDisplayKey, display);
+            mRenderedGeneration = generation;
+        }
+        refineScaledImage(original, width, height, generation);
+        return display;
+    }
+    
+    /**
+     * Private helper method that replaces the scaled image returned by
+     * {@link #getScaledImage(Image, int, int)} with a higher quality one in
+     * the background, when the quick version was scaled up from a pyramid
+     * level smaller than the requested size. The refined image is scaled down
+     * from the smallest level that is at least as large as the requested size.
+     * It is discarded if the image has been scaled again in the meantime, and
+     * observers are notified of the change on the event dispatch thread.
+     * 
+     * @param original: the full resolution image
+     * @param width: the width of the scaled image
+     * @param height: the height of the scaled image
+     * @param generation: the generation of the scaled image being refined
+     */
+    private void refineScaledImage(final Image original, final int width, final int height, final int generation) {
+        int imageWidth = original.getWidth(null);
+        int imageHeight = original.getHeight(null);
+        final int level = ImagePyramid.getExactLevel(imageWidth, imageHeight, width, height);
+        if(level == ImagePyramid.getNearestLevel(imageWidth, imageHeight, width, height)) {
+            return;
+        }
+        final Dimension size = ImageDecoder.getScaledSize(imageWidth, imageHeight, width, height);
+        final ImagePyramid pyramid = getPyramid();
+        Application.Imaging.submit(new Callable<Image>() {
+            @Override
+            public Image call() {
+                synchronized(PhotoModel.this) {
+                    if(generation != mDisplayGeneration) {
+                        return null;
+                    }
+                }
+                Image refined = ImageDecoder.resize(pyramid.getLevel(original, level), size.width, size.height, 
+                        RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+                synchronized(PhotoModel.this) {
+                    if(generation != mDisplayGeneration) {
+                        return null;
+                    }
+                    Application.Images.put(mDisplayKey, refined);
+                }
+                fireStateChanged();
+                return refined;
+            }
+        });
+    }
+    
+    /**
+     * Private helper method that gets the mip pyramid of the image this photo
+     * model represents. The pyramid is only held softly, so it is created 
+     * again if the garbage collector needed the memory.
+     * 
+     * @return ImagePyramid: the pyramid of the image
+     */
+    private synchronized ImagePyramid getPyramid() {
+        ImagePyramid pyramid = mPyramid != null ? mPyramid.get() : null;
+        if(pyramid == null) {
+            pyramid = new ImagePyramid();
+            mPyramid = new SoftReference<ImagePyramid>(pyramid);
+        }
+        return pyramid;
+    }
+    
+    /**
+     * Private helper method that creates a thumbnail of this photo that fits
+     * within the width and height specified. The thumbnail is taken from the
+     * thumbnail cache when possible. Otherwise, if the image is not already 
+     * decoded, only a subsampled version of it close to the thumbnail's size 
+     * is decoded, rather than decoding the full image just to shrink it, and
+     * the resulting thumbnail is added to the cache. The metadata is read
+     * from the same pass over the file if it has not been read yet.
+     * 
+     * @param width: the width of the thumbnail
+     * @param height: the height of the thumbnail
+     * @return Image: the thumbnail; or null if the image could not be read
+     */
+    private Image createThumbnail(int width, int height) {
+        Image source;
+        synchronized(this) {
+            if(mPath == null || mImageFailed) {
+                return null;
+            }
+            source = Application.Images.peek(mPath);
+        }
+        if(source == null) {
+            BufferedImage cached = Application.Thumbnails.read(mFile, width, height);
+            if(cached != null) {
+                return cached;
+            }
+            try {
+                PhotoData data = ingest();
+                ImageDecoder decoder = data != null ? data.getDecoder() : new ImageDecoder(mFile);
+                source = decoder.decode(width, height);
+            }
+            catch(IOException ioe) {
+                Application.dump(ioe);
+                return null;
+            }
+        }
+        BufferedImage thumbnail = ImageDecoder.scale(source, width, height);
+        Application.Thumbnails.write(mFile, width, height, thumbnail);
+        return thumbnail;
+    }
+
     // --------------------------------------------------------- Private Fields
     
+    private static final int OVERVIEW_SIZE = 2048;
+    private static final int MAXIMUM_PIXELS_PER_BYTE = 16;
+    private static final Icon PLACEHOLDER_ICON = 
+        Application.Settings.getIcon(ConfigKeys.GalleryView.PHOTO_ICON, IconSize.LARGE);
+    
     private String mPath;
     private File mFile;
-    private Icon mIcon;
-    private Image mImage;
-    private Image mOriginalImage;
+    private volatile Icon mIcon;
+    private int mDisplayWidth = -1;
+    private int mDisplayHeight = -1;
+    private boolean mPinned;
+    private int mDisplayGeneration;
+    private int mRenderedGeneration = -1;
+    private int mRenderRequested = -1;
+    private final Object mDecodeLock = new Object();
+    private final Object mIconLock = new Object();
+    private final Object mMetadataLock = new Object();
+    private Future<Image> mPendingImage;
+    private Future<Icon> mPendingIcon;
+    private Future<Metadata> mPendingMetadata;
+    private final Object mDisplayKey = new Object();
+    private SoftReference<ImagePyramid> mPyramid;
+    private Boolean mTiled;
+    private Dimension mImageSize;
+    private TiledImageSource mTiledSource;
     private Metadata mMetadata;
+    private boolean mImageFailed;
+    private boolean mMetadataFailed;
     private IAlbumModel mAlbum;
     private List<IChangeObserver> mObservers;
  
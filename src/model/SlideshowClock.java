@@ -0,0 +1,326 @@
+// SlideshowClock.java
+package model;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import runtime.Application;
+
+/**
+ * Class that provides the clock advancing a slideshow from one slide to the
+ * next. Slide changes are scheduled against absolute deadlines, one interval
+ * apart, on a single thread shared by all the slideshows, so the time spent
+ * decoding and painting a slide never adds to the interval and the slideshow
+ * does not drift.
+ *
+ * The clock also records, for each slide, the latency between the deadline
+ * at which the slide was due and the moment it was actually displayed, which
+ * can be queried to tune the slideshow's prefetching. The same thread also
+ * drives the animation of the transitions between slides.
+ */
+public class SlideshowClock {
+
+    /**
+     * Constructor that instantiates a new, stopped, slideshow clock.
+     *
+     * @param tick: run on the clock's thread at each slide's deadline; since
+     *          that thread is shared by all the slideshows, it should only 
+     *          hand the slide change over to another thread
+     * @param interval: the interval between two slides, in milliseconds
+     */
+    public SlideshowClock(Runnable tick, long interval) {
+        mTick = tick;
+        mInterval = TimeUnit.MILLISECONDS.toNanos(interval);
+        mLatencies = new long[HISTORY_SIZE];
+    }
+
+    /**
+     * Starts the clock, the first slide change being due one interval from
+     * now. Does nothing if the clock is already running.
+     */
+    public synchronized void start() {
+        if(mRunning) {
+            return;
+        }
+        mRunning = true;
+        mPaused = false;
+        mDeadline = System.nanoTime() + mInterval;
+        schedule();
+    }
+
+    /**
+     * Pauses the clock, remembering the time left until the next slide change.
+     */
+    public synchronized void pause() {
+        if(!mRunning || mPaused) {
+            return;
+        }
+        mPaused = true;
+        mRemaining = Math.max(0, mDeadline - System.nanoTime());
+        cancel();
+    }
+
+    /**
+     * Resumes the clock after it was paused, the next slide change being due
+     * after the time that was left when it was paused.
+     */
+    public synchronized void resume() {
+        if(!mRunning || !mPaused) {
+            return;
+        }
+        mPaused = false;
+        mDeadline = System.nanoTime() + mRemaining;
+        schedule();
+    }
+
+    /**
+     * Stops the clock. Any pending slide change is cancelled.
+     */
+    public synchronized void stop() {
+        mRunning = false;
+        mPaused = false;
+        cancel();
+        cancelAnimation();
+    }
+
+    /**
+     * Sets the interval between two slides. The new interval applies from the
+     * next slide change that is scheduled.
+     *
+     * @param interval: the interval between two slides, in milliseconds
+     */
+    public synchronized void setInterval(long interval) {
+        mInterval = TimeUnit.MILLISECONDS.toNanos(interval);
+    }
+
+    /**
+     * Starts the current interval over, the next slide change being due one
+     * interval from now, such as when a slide was displayed late. Does 
+     * nothing if the clock is stopped or paused.
+     */
+    public synchronized void restart() {
+        if(!mRunning || mPaused) {
+            return;
+        }
+        cancel();
+        mDeadline = System.nanoTime() + mInterval;
+        schedule();
+    }
+
+    /**
+     * Runs the animation step specified on the clock's thread at the frame
+     * rate specified, for the duration specified. Any animation still running
+     * is cancelled first.
+     *
+     * @param step: the step of the animation, such as a repaint
+     * @param duration: the duration of the animation, in milliseconds
+     * @param frameRate: the number of steps per second
+     */
+    public synchronized void animate(Runnable step, long duration, int frameRate) {
+        cancelAnimation();
+        final ScheduledFuture<?> animation = CLOCK.scheduleAtFixedRate(step, 0, 1000000000L / frameRate, 
+                TimeUnit.NANOSECONDS);
+        CLOCK.schedule(new Runnable() {
+            @Override
+            public void run() {
+                animation.cancel(false);
+            }
+        }, duration, TimeUnit.MILLISECONDS);
+        mAnimation = animation;
+    }
+
+    /**
+     * Checks if the clock is running, whether it is paused or not.
+     *
+     * @return true: if the clock is running; false otherwise
+     */
+    public synchronized boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Checks if the clock is paused.
+     *
+     * @return true: if the clock is paused; false otherwise
+     */
+    public synchronized boolean isPaused() {
+        return mPaused;
+    }
+
+    /**
+     * Records that the slide due at the last deadline has been displayed.
+     * Only the first call after each deadline is recorded, so this can be
+     * called each time a frame is painted.
+     */
+    public synchronized void displayed() {
+        if(!mDisplayPending) {
+            return;
+        }
+        long latency = System.nanoTime() - mDue;
+        mDisplayPending = false;
+        mLatencies[(int)(mSlides % HISTORY_SIZE)] = latency;
+        mSlides++;
+        mTotalLatency += latency;
+        mMaximumLatency = Math.max(mMaximumLatency, latency);
+    }
+
+    /**
+     * Gets the number of slides whose latency has been recorded.
+     *
+     * @return long: the number of slides displayed on schedule or late
+     */
+    public synchronized long getSlideCount() {
+        return mSlides;
+    }
+
+    /**
+     * Gets the average latency between the deadline of a slide and its
+     * display.
+     *
+     * @return double: the average latency in milliseconds; or 0 if no slide
+     *          has been recorded
+     */
+    public synchronized double getAverageLatency() {
+        return mSlides == 0 ? 0 : mTotalLatency / 1000000.0 / mSlides;
+    }
+
+    /**
+     * Gets the largest latency between the deadline of a slide and its
+     * display.
+     *
+     * @return double: the largest latency in milliseconds
+     */
+    public synchronized double getMaximumLatency() {
+        return mMaximumLatency / 1000000.0;
+    }
+
+    /**
+     * Gets the latencies of the most recently displayed slides, oldest first.
+     *
+     * @return double[]: the latencies in milliseconds
+     */
+    public synchronized double[] getLatencies() {
+        int count = (int)Math.min(mSlides, HISTORY_SIZE);
+        double[] latencies = new double[count];
+        for(int i = 0; i < count; i++) {
+            latencies[i] = mLatencies[(int)((mSlides - count + i) % HISTORY_SIZE)] / 1000000.0;
+        }
+        return latencies;
+    }
+
+    /*
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public synchronized String toString() {
+        return "SlideshowClock[interval=" + TimeUnit.NANOSECONDS.toMillis(mInterval) + ", running=" + mRunning +
+            ", paused=" + mPaused + ", slides=" + mSlides + ", averageLatency=" + getAverageLatency() +
+            ", maximumLatency=" + getMaximumLatency() + "]";
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Private helper method that schedules the next slide change at the
+     * current deadline.
+     */
+    private void schedule() {
+        final int generation = mGeneration;
+        mPending = CLOCK.schedule(new Runnable() {
+            @Override
+            public void run() {
+                tick(generation);
+            }
+        }, mDeadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Private helper method that cancels the pending slide change, if any. A
+     * slide change already under way when the clock is cancelled does not
+     * schedule another one.
+     */
+    private void cancel() {
+        mGeneration++;
+        if(mPending != null) {
+            mPending.cancel(false);
+            mPending = null;
+        }
+    }
+
+    /**
+     * Private helper method that cancels the running animation, if any.
+     */
+    private void cancelAnimation() {
+        if(mAnimation != null) {
+            mAnimation.cancel(false);
+            mAnimation = null;
+        }
+    }
+
+    /**
+     * Private helper method that changes the slide and schedules the next
+     * change one interval after the current deadline. If the clock has fallen
+     * more than an interval behind, the deadlines start again from now rather
+     * than changing slides in a burst to catch up.
+     * 
+     * @param generation: the generation of the clock the change was 
+     *          scheduled in
+     */
+    private void tick(int generation) {
+        synchronized(this) {
+            if(generation != mGeneration) {
+                return;
+            }
+            mDue = mDeadline;
+            mDisplayPending = true;
+            mDeadline += mInterval;
+        }
+        try {
+            mTick.run();
+        }
+        catch(Exception e) {
+            Application.dump(e);
+        }
+        synchronized(this) {
+            if(generation != mGeneration) {
+                return;
+            }
+            long now = System.nanoTime();
+            if(mDeadline < now) {
+                mDeadline = now + mInterval;
+            }
+            schedule();
+        }
+    }
+
+    // --------------------------------------------------------- Private Fields
+
+    private static final int HISTORY_SIZE = 64;
+    private static final ScheduledExecutorService CLOCK = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Slideshow Clock");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private Runnable mTick;
+    private long mInterval;
+    private long mDeadline;
+    private long mRemaining;
+    private long mDue;
+    private boolean mDisplayPending;
+    private int mGeneration;
+    private boolean mRunning;
+    private boolean mPaused;
+    private ScheduledFuture<?> mPending;
+    private ScheduledFuture<?> mAnimation;
+    private long[] mLatencies;
+    private long mSlides;
+    private long mTotalLatency;
+    private long mMaximumLatency;
+
+}
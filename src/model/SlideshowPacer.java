@@ -0,0 +1,153 @@
+// SlideshowPacer.java
+package model;
+
+import java.util.concurrent.TimeUnit;
+import runtime.Application;
+
+/**
+ * Class that paces a slideshow after the measured cost of preparing its
+ * slides. The time taken to decode each photo and to render it into a frame
+ * is recorded over the most recent slides, and from their average the pacer
+ * decides how many slides must be prepared ahead of the current one for each
+ * to be ready when it is due. If the imaging threads cannot prepare a slide 
+ * per interval at all, and the pacer is allowed to, it also stretches the 
+ * interval until they can. Each change of decision is logged.
+ */
+public class SlideshowPacer {
+
+    /** The number of most recent slides the average cost is taken over. */
+    public static final int SAMPLE_COUNT = 16;
+
+    /**
+     * Constructor that instantiates a new pacer starting from the configured
+     * prefetch depth and interval.
+     *
+     * @param interval: the configured interval between two slides, in 
+     *          milliseconds
+     * @param prefetchDepth: the configured number of slides prepared ahead,
+     *          which the pacer never goes below
+     * @param maximumPrefetchDepth: the number of slides prepared ahead which
+     *          the pacer never goes above
+     * @param stretchInterval: whether or not the pacer may lengthen the 
+     *          interval when slides cannot be prepared in time
+     * @param threads: the number of threads preparing slides
+     */
+    public SlideshowPacer(long interval, int prefetchDepth, int maximumPrefetchDepth, 
+            boolean stretchInterval, int threads) {
+        mConfiguredInterval = TimeUnit.MILLISECONDS.toNanos(interval);
+        mMinimumDepth = Math.max(1, prefetchDepth);
+        mMaximumDepth = Math.max(mMinimumDepth, maximumPrefetchDepth);
+        mStretchInterval = stretchInterval;
+        mThreads = Math.max(1, threads);
+        mInterval = mConfiguredInterval;
+        mPrefetchDepth = mMinimumDepth;
+        mDecodeSamples = new long[SAMPLE_COUNT];
+        mPrepareSamples = new long[SAMPLE_COUNT];
+    }
+
+    /**
+     * Records the cost of preparing a slide and revises the pacing decisions.
+     *
+     * @param decode: the time taken to decode the photo, in nanoseconds
+     * @param prepare: the time taken to decode the photo and render its 
+     *          frame, in nanoseconds
+     * @return true: if the prefetch depth or the interval changed; false
+     *          otherwise
+     */
+    public synchronized boolean prepared(long decode, long prepare) {
+        int slot = (int)(mSamples % SAMPLE_COUNT);
+        mDecodeTotal += decode - mDecodeSamples[slot];
+        mPrepareTotal += prepare - mPrepareSamples[slot];
+        mDecodeSamples[slot] = decode;
+        mPrepareSamples[slot] = prepare;
+        mSamples++;
+
+        long cost = (long)(mPrepareTotal / (double)Math.min(mSamples, SAMPLE_COUNT) * MARGIN);
+        long interval = mConfiguredInterval;
+        if(mStretchInterval) {
+            // Stretched in steps, so that the interval does not change with
+            // every slide...
+            long stretched = (cost / mThreads + INTERVAL_STEP - 1) / INTERVAL_STEP * INTERVAL_STEP;
+            interval = Math.max(mConfiguredInterval, stretched);
+        }
+        int depth = (int)Math.min(mMaximumDepth, Math.max(mMinimumDepth, (cost + interval - 1) / interval));
+        if(depth == mPrefetchDepth && interval == mInterval) {
+            return false;
+        }
+        Application.log("Slideshow pacing: prefetch depth " + mPrefetchDepth + " to " + depth + 
+                ", interval " + TimeUnit.NANOSECONDS.toMillis(mInterval) + " ms to " + 
+                TimeUnit.NANOSECONDS.toMillis(interval) + " ms (" + this + ")");
+        mPrefetchDepth = depth;
+        mInterval = interval;
+        return true;
+    }
+
+    /**
+     * Gets the number of slides to be prepared ahead of the current one.
+     *
+     * @return int: the prefetch depth
+     */
+    public synchronized int getPrefetchDepth() {
+        return mPrefetchDepth;
+    }
+
+    /**
+     * Gets the interval between two slides, stretched if needed.
+     *
+     * @return long: the interval in milliseconds
+     */
+    public synchronized long getInterval() {
+        return TimeUnit.NANOSECONDS.toMillis(mInterval);
+    }
+
+    /**
+     * Gets the average time taken to decode a photo over the most recent 
+     * slides.
+     *
+     * @return double: the average decode time in milliseconds; or 0 if no 
+     *          slide has been prepared
+     */
+    public synchronized double getAverageDecodeLatency() {
+        return mSamples == 0 ? 0 : mDecodeTotal / 1000000.0 / Math.min(mSamples, SAMPLE_COUNT);
+    }
+
+    /**
+     * Gets the average time taken to decode a photo and render its frame over
+     * the most recent slides.
+     *
+     * @return double: the average preparation time in milliseconds; or 0 if
+     *          no slide has been prepared
+     */
+    public synchronized double getAveragePrepareLatency() {
+        return mSamples == 0 ? 0 : mPrepareTotal / 1000000.0 / Math.min(mSamples, SAMPLE_COUNT);
+    }
+
+    /*
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public synchronized String toString() {
+        return "SlideshowPacer[prefetchDepth=" + mPrefetchDepth + ", interval=" + getInterval() + 
+            ", slides=" + mSamples + ", averageDecodeLatency=" + getAverageDecodeLatency() + 
+            ", averagePrepareLatency=" + getAveragePrepareLatency() + "]";
+    }
+
+    // --------------------------------------------------------- Private Fields
+
+    private static final double MARGIN = 1.25;
+    private static final long INTERVAL_STEP = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private long mConfiguredInterval;
+    private int mMinimumDepth;
+    private int mMaximumDepth;
+    private boolean mStretchInterval;
+    private int mThreads;
+    private long mInterval;
+    private int mPrefetchDepth;
+    private long[] mDecodeSamples;
+    private long[] mPrepareSamples;
+    private long mDecodeTotal;
+    private long mPrepareTotal;
+    private long mSamples;
+
+}
@@ -0,0 +1,127 @@
+// SlideshowPlaylist.java
+package model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import common.IPhotoModel;
+import common.IPhotoSource;
+
+/**
+ * Class that provides the position of a slideshow within the photos streamed
+ * from its photo source. Photos are pulled from the source only as far ahead
+ * of the current photo as they are asked for, and only a bounded history of 
+ * the photos already shown is kept to move back through, so the playlist 
+ * holds a handful of photos however many the source streams. When the source
+ * runs out, it is iterated again from the start.
+ */
+public class SlideshowPlaylist {
+
+    /**
+     * Constructor that instantiates a new playlist over the source specified,
+     * positioned before its first photo.
+     * 
+     * @param source: the source streaming the photos
+     * @param history: the number of photos already shown that can be moved
+     *          back to
+     */
+    public SlideshowPlaylist(IPhotoSource source, int history) {
+        mSource = source;
+        mHistory = history;
+        mPhotos = new ArrayList<IPhotoModel>();
+        mPosition = -1;
+    }
+
+    /**
+     * Gets the photo at the offset specified from the current photo, pulling
+     * photos from the source as needed.
+     * 
+     * @param offset: the offset from the current photo; 0 for the current 
+     *          photo, negative for photos already shown
+     * @return IPhotoModel: the photo at that offset; or null if it is before
+     *          the history kept, or the source streams no photos
+     */
+    public synchronized IPhotoModel get(int offset) {
+        int index = mPosition + offset;
+        if(index < 0) {
+            return null;
+        }
+        while(index >= mPhotos.size()) {
+            if(!pull()) {
+                return null;
+            }
+        }
+        return mPhotos.get(index);
+    }
+
+    /**
+     * Moves to the next photo.
+     * 
+     * @return true: if the playlist moved; false if the source streams no
+     *          photos
+     */
+    public synchronized boolean next() {
+        if(get(1) == null) {
+            return false;
+        }
+        mPosition++;
+        if(mPosition > mHistory) {
+            mPhotos.subList(0, mPosition - mHistory).clear();
+            mPosition = mHistory;
+        }
+        return true;
+    }
+
+    /**
+     * Moves back to the previous photo.
+     * 
+     * @return true: if the playlist moved; false if there is no previous 
+     *          photo in the history kept
+     */
+    public synchronized boolean previous() {
+        if(!hasPrevious()) {
+            return false;
+        }
+        mPosition--;
+        return true;
+    }
+
+    /**
+     * Checks if there is a previous photo in the history kept.
+     * 
+     * @return true: if there is a previous photo; false otherwise
+     */
+    public synchronized boolean hasPrevious() {
+        return mPosition > 0;
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Private helper method that pulls the next photo from the source, 
+     * iterating the source again from the start when it has run out.
+     * 
+     * @return true: if a photo was pulled; false if the source streams no 
+     *          photos
+     */
+    private boolean pull() {
+        if(mIterator == null || !mIterator.hasNext()) {
+            mIterator = mSource.iterator();
+            if(!mIterator.hasNext()) {
+                mIterator = null;
+                return false;
+            }
+        }
+        mPhotos.add(mIterator.next());
+        return true;
+    }
+
+    // --------------------------------------------------------- Private Fields
+
+    private IPhotoSource mSource;
+    private Iterator<IPhotoModel> mIterator;
+    private List<IPhotoModel> mPhotos;
+    private int mPosition;
+    private int mHistory;
+
+}
@@ -1,10 +1,14 @@
 // Application.java
 package runtime;
 
+import io.ThumbnailCache;
 import io.XmlSettingsReader;
 import java.awt.GraphicsEnvironment;
 import java.io.FileWriter;
 import java.io.IOException;
+import model.ImageCache;
+import model.ImagingExecutor;
+import runtime.Constants.ConfigKeys;
 import common.ISettingsModel;
 
 /**
@@ -22,10 +26,27 @@ public class Application {
     /** The Graphics Environment for the current application instance */
     public static GraphicsEnvironment Graphics;
     
+    /** The Image Cache for the current application instance */
+    public static ImageCache Images;
+    
+    /** The Thumbnail Cache for the current application instance */
+    public static ThumbnailCache Thumbnails;
+    
+    /** The Imaging Executor for the current application instance */
+    public static ImagingExecutor Imaging;
+    
     static {
         Runtime = new RuntimeSettings();
         Settings = new UserSettings(new XmlSettingsReader(Runtime.settingsFile()));
         Graphics = GraphicsEnvironment.getLocalGraphicsEnvironment();
+        Images = new ImageCache(Settings.getLong(ConfigKeys.Cache.IMAGE_BUDGET) * 1024 * 1024);
+        Thumbnails = new ThumbnailCache(Runtime.thumbnailCacheDirectory(), 
+                Settings.getLong(ConfigKeys.Cache.THUMBNAIL_MAXIMUM_SIZE) * 1024 * 1024,
+                Settings.getBoolean(ConfigKeys.Cache.THUMBNAIL_VALIDATE_IN_BACKGROUND));
+        boolean imagingAssertions = Settings.getBoolean(ConfigKeys.Imaging.ASSERT_OFF_EDT);
+        // Running with assertions enabled (-ea) turns on the imaging assertions too.
+        assert imagingAssertions = true;
+        Imaging = new ImagingExecutor(Settings.getInt(ConfigKeys.Imaging.THREADS), imagingAssertions);
     }
  
     /**
@@ -59,6 +80,26 @@ public class Application {
         
     }
     
+    /**
+     * Method that records a diagnostic message, such as a decision taken by
+     * one of the application's adaptive components, in the error log next to
+     * the exceptions. Depending on the runtime settings, this method will 
+     * also print the message to the console.
+     * 
+     * @param message: the message to log
+     */
+    public static void log(String message) {
+        if(Runtime.debuggingEnabled()) {
+            System.out.println(message);
+        }
+        try {
+            FileWriter writer = new FileWriter(Application.Runtime.errorLog(),true);
+            writer.write("<Log Time=\"" + System.currentTimeMillis() + "\">" + message + "</Log>\n");
+            writer.close();
+        }
+        catch (IOException e) {}
+    }
+    
     /**
      * Parses the array of command-line arguments and modifies the runtime
      * settings accordingly. If the array passed in is empty, this method 
@@ -16,6 +16,15 @@ public class Constants {
     /** Constant representing the path to the user albums file. */
     public static final String USER_ALBUMS_FILE = "Albums.xml";
     
+    /** Constant representing the name of the binary catalog of the user albums. */
+    public static final String USER_ALBUMS_CATALOG_FILE = "Albums.catalog";
+    
+    /** Constant representing the name of the journal of the changes to the albums file. */
+    public static final String USER_ALBUMS_JOURNAL_FILE = "Albums.journal";
+    
+    /** Constant representing the name of the thumbnail cache directory. */
+    public static final String THUMBNAIL_CACHE_DIRECTORY = "Thumbnails";
+    
     /** Constant representing the path to the default settings file. */
     public static final String DEFAULT_SETTINGS_FILE = "resources/data/DefaultSettings.xml";
     
@@ -112,6 +121,39 @@ public class Constants {
             public final static String CONFIGUREAPP_ICON = "Action.ConfigureApplication.Icon";
         }
         
+        /**
+         * A static class containing constants for the setting's keys for the
+         * saving of the changes made to the albums and the settings in the
+         * background.
+         */
+        public static class Autosave {
+
+            /** Key whose value contains the time, in milliseconds, without changes after which the changes are saved. */
+            public static final String QUIET_PERIOD = "Autosave.QuietPeriod";
+
+            /** Key whose value contains the longest time, in milliseconds, a change waits for the changes to quiet down. */
+            public static final String MAXIMUM_DELAY = "Autosave.MaximumDelay";
+        }
+
+        /**
+         * A static class containing constants for the setting's keys for the
+         * caches used by the application.
+         */
+        public static class Cache {
+            
+            /** Key whose value contains the budget of the decoded image cache in megabytes. */
+            public static final String IMAGE_BUDGET = "Cache.Images.Budget";
+            
+            /** Key whose value contains the maximum size of the thumbnail cache in megabytes. */
+            public static final String THUMBNAIL_MAXIMUM_SIZE = "Cache.Thumbnails.Size.Maximum";
+            
+            /** Key whose value determines if cached thumbnails are validated in the background. */
+            public static final String THUMBNAIL_VALIDATE_IN_BACKGROUND = "Cache.Thumbnails.ValidateInBackground";
+            
+            /** Key whose value contains the budget of the decoded tile cache of a large photo in megabytes. */
+            public static final String TILE_BUDGET = "Cache.Tiles.Budget";
+        }
+        
         /**
          * A static class containing constants for the setting's keys for the
          * details view.
@@ -163,6 +205,29 @@ public class Constants {
             
             /** The visible string. */
             public static final String VISIBLE = "GalleryView.Visible";
+            
+            /** Key whose value indicates whether the photos of an album are loaded when its node is first expanded. */
+            public static final String LOAD_ON_DEMAND = "GalleryView.Album.LoadOnDemand";
+        }
+
+        /**
+         * A static class containing constants for the setting's keys for the
+         * import of folder trees into the gallery.
+         */
+        public static class Import {
+
+            /** Key whose value contains the number of threads probing the images imported, or 0 for two per processor. */
+            public static final String THREADS = "Import.Threads";
+        }
+
+        /**
+         * A static class containing constants for the setting's keys for the
+         * journal of the changes made to the albums.
+         */
+        public static class Journal {
+
+            /** Key whose value contains the size, in kilobytes, past which the journal is compacted. */
+            public static final String COMPACTION_THRESHOLD = "Journal.CompactionThreshold";
         }
 
         /**
@@ -185,6 +250,20 @@ public class Constants {
             
         }
 
+        /**
+         * A static class containing constants for the setting's keys for the
+         * decoding and resampling of images.
+         */
+        public static class Imaging {
+            
+            /** Key whose value contains the number of threads decoding images, or 0 for one per processor. */
+            public final static String THREADS = "Imaging.Threads";
+            
+            /** Key whose value determines if image work performed on the Event Dispatch Thread is reported. */
+            public final static String ASSERT_OFF_EDT = "Imaging.AssertOffEventDispatchThread";
+        
+        }
+
         /**
          * A static class containing constants for the setting's keys for the
          * photo view.
@@ -193,6 +272,12 @@ public class Constants {
             
             /** Key whose value contains the background color of the photo view. */
             public final static String BACKGROUND_COLOR = "PhotoView.Background.Color";
+            
+            /** Key whose value contains the size in megapixels above which a photo is displayed in tiles. */
+            public final static String TILED_THRESHOLD = "PhotoView.Tiled.Threshold";
+            
+            /** Key whose value contains the width and height of a tile of a large photo. */
+            public final static String TILE_SIZE = "PhotoView.Tiled.TileSize";
         
         }
 
@@ -219,6 +304,27 @@ public class Constants {
             
             /** Key whose value contains the y location of the slideshow.. */
             public static final String Y_LOCATION = "Slideshow.Location.Y";
+            
+            /** Key whose value contains the number of photos kept decoded around the current one. */
+            public static final String WINDOW_SIZE = "Slideshow.Window.Size";
+            
+            /** Key whose value contains the number of photos decoded ahead of the current one. */
+            public static final String PREFETCH_DEPTH = "Slideshow.Window.PrefetchDepth";
+            
+            /** Key whose value contains the transition between slides: None, Crossfade, Slide or Zoom. */
+            public static final String TRANSITION_STYLE = "Slideshow.Transition.Style";
+            
+            /** Key whose value contains the duration of the transition between slides. */
+            public static final String TRANSITION_DURATION = "Slideshow.Transition.Duration";
+            
+            /** Key whose value determines if the slideshow shows the photos in a random order. */
+            public static final String SHUFFLE = "Slideshow.Shuffle";
+            
+            /** Key whose value contains the most photos the slideshow may decode ahead of the current one. */
+            public static final String MAXIMUM_PREFETCH_DEPTH = "Slideshow.Pacing.MaximumPrefetchDepth";
+            
+            /** Key whose value determines if the slideshow may lengthen its interval when photos decode too slowly. */
+            public static final String STRETCH_INTERVAL = "Slideshow.Pacing.StretchInterval";
         }
 
     }
@@ -252,6 +358,12 @@ public class Constants {
             
             /** Constant representing the "Icon" attribute. */
             public static final String ICON = "Icon";    
+            
+            /** Constant representing the "JournalGeneration" attribute. */
+            public static final String JOURNAL_GENERATION = "JournalGeneration";
+            
+            /** Constant representing the "JournalOffset" attribute. */
+            public static final String JOURNAL_OFFSET = "JournalOffset";
         }
         
         /**
@@ -91,6 +91,42 @@ public class RuntimeSettings {
         return mAlbumsFile;
     }
     
+    /**
+     * Determines the file containing the photo gallery's contents in the
+     * binary catalog format, which is read at startup in place of the xml
+     * albums file unless the latter is newer. The catalog is located next to
+     * the albums file, and each of its generations is written next to it.
+     * 
+     * @return File: the binary catalog of the gallery's contents
+     */
+    public File albumsCatalogFile() {
+        File albumsDirectory = mAlbumsFile.getAbsoluteFile().getParentFile();
+        return new File(albumsDirectory, Constants.USER_ALBUMS_CATALOG_FILE);
+    }
+    
+    /**
+     * Determines the file journaling the changes made to the gallery's 
+     * contents since the albums file was last written. The journal is 
+     * located next to the albums file.
+     * 
+     * @return File: the journal of the changes to the albums file
+     */
+    public File albumsJournalFile() {
+        File albumsDirectory = mAlbumsFile.getAbsoluteFile().getParentFile();
+        return new File(albumsDirectory, Constants.USER_ALBUMS_JOURNAL_FILE);
+    }
+    
+    /**
+     * Determines the directory in which the thumbnails of the gallery's photos
+     * are cached. The directory is located next to the albums file.
+     * 
+     * @return File: the directory of the thumbnail cache
+     */
+    public File thumbnailCacheDirectory() {
+        File albumsDirectory = mAlbumsFile.getAbsoluteFile().getParentFile();
+        return new File(albumsDirectory, Constants.THUMBNAIL_CACHE_DIRECTORY);
+    }
+    
     /**
      * Determines the file containing the user settings in xml format.
      * 
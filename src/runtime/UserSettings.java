@@ -257,6 +257,12 @@ public class UserSettings implements ISettingsModel, Iterable<Object> {
         mDefaults = new HashMap<Object, Object>();
         mDefaults.put(ConfigKeys.PLAF_CLASS, UIManager.getLookAndFeel().getClass().getName());
         mDefaults.put(ConfigKeys.NAME, "Photo Gallery");
+        mDefaults.put(ConfigKeys.Autosave.QUIET_PERIOD, 2000L);
+        mDefaults.put(ConfigKeys.Autosave.MAXIMUM_DELAY, 30000L);
+        mDefaults.put(ConfigKeys.Cache.IMAGE_BUDGET, 256L);
+        mDefaults.put(ConfigKeys.Cache.THUMBNAIL_MAXIMUM_SIZE, 64L);
+        mDefaults.put(ConfigKeys.Cache.THUMBNAIL_VALIDATE_IN_BACKGROUND, false);
+        mDefaults.put(ConfigKeys.Cache.TILE_BUDGET, 32L);
         mDefaults.put(ConfigKeys.DetailsView.VISIBLE, true);
         mDefaults.put(ConfigKeys.DetailsView.DIVIDER_LOC, 600);
         mDefaults.put(ConfigKeys.GalleryView.VISIBLE, true);
@@ -266,17 +272,31 @@ public class UserSettings implements ISettingsModel, Iterable<Object> {
         mDefaults.put(ConfigKeys.GalleryView.SHOW_PHOTONAME, true);
         mDefaults.put(ConfigKeys.GalleryView.MAXIMUM_WIDTH, 333);
         mDefaults.put(ConfigKeys.GalleryView.DIVIDER_LOC, 200);
+        mDefaults.put(ConfigKeys.GalleryView.LOAD_ON_DEMAND, true);
+        mDefaults.put(ConfigKeys.Import.THREADS, 0);
+        mDefaults.put(ConfigKeys.Journal.COMPACTION_THRESHOLD, 1024L);
         mDefaults.put(ConfigKeys.MainView.SIZE, new Dimension(1000,1000));
         mDefaults.put(ConfigKeys.MainView.TITLE, "Photo Gallery");
         mDefaults.put(ConfigKeys.MainView.X_LOCATION, 25);
         mDefaults.put(ConfigKeys.MainView.Y_LOCATION, 25);
+        mDefaults.put(ConfigKeys.Imaging.THREADS, 0);
+        mDefaults.put(ConfigKeys.Imaging.ASSERT_OFF_EDT, false);
         mDefaults.put(ConfigKeys.PhotoView.BACKGROUND_COLOR, new Color(128,128,128));
+        mDefaults.put(ConfigKeys.PhotoView.TILED_THRESHOLD, 24);
+        mDefaults.put(ConfigKeys.PhotoView.TILE_SIZE, 512);
         mDefaults.put(ConfigKeys.Slideshow.INTERVAL, 3000L);
         mDefaults.put(ConfigKeys.Slideshow.SIZE, new Dimension(800,800));
         mDefaults.put(ConfigKeys.Slideshow.X_LOCATION, 25);
         mDefaults.put(ConfigKeys.Slideshow.Y_LOCATION, 25);
         mDefaults.put(ConfigKeys.Slideshow.BACKGROUND_COLOR, Color.BLACK);
         mDefaults.put(ConfigKeys.Slideshow.IS_FULLSCREEN_DEFAULT, false);
+        mDefaults.put(ConfigKeys.Slideshow.WINDOW_SIZE, 5);
+        mDefaults.put(ConfigKeys.Slideshow.PREFETCH_DEPTH, 3);
+        mDefaults.put(ConfigKeys.Slideshow.TRANSITION_STYLE, "Crossfade");
+        mDefaults.put(ConfigKeys.Slideshow.TRANSITION_DURATION, 600L);
+        mDefaults.put(ConfigKeys.Slideshow.SHUFFLE, false);
+        mDefaults.put(ConfigKeys.Slideshow.MAXIMUM_PREFETCH_DEPTH, 8);
+        mDefaults.put(ConfigKeys.Slideshow.STRETCH_INTERVAL, false);
     }
 
     //--------------------------------------------------------- Private Fields
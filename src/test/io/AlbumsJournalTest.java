@@ -0,0 +1,187 @@
+package test.io;
+
+import io.AlbumsCatalog;
+import io.AlbumsJournal;
+import io.BinaryAlbumsReader;
+import io.BinaryAlbumsWriter;
+import io.XmlAlbumsReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.LinkedList;
+import java.util.List;
+import model.AlbumModel;
+import model.GalleryModel;
+import model.PhotoModel;
+import common.IAlbumModel;
+import common.IAlbumsReader;
+import common.IGalleryModel;
+import common.IPhotoModel;
+
+/**
+ * Test of the round trip of the gallery through the binary catalog and of
+ * the replay of the albums journal over it. Each check prints its outcome,
+ * and the test exits with a non-zero status if any of them failed. The files
+ * are written to a temporary directory, which is deleted on exit.
+ *
+ * Usage: AlbumsJournalTest
+ */
+public class AlbumsJournalTest {
+
+    public static void main(String[] args) throws Exception {
+        File directory = Files.createTempDirectory("journal").toFile();
+        File catalog = new File(directory, "Albums.catalog");
+        File xml = new File(directory, "Albums.xml");
+        File journal = new File(directory, "Albums.journal");
+
+        // Catalog round trip, with the photos read up front and on demand.
+        IGalleryModel gallery = createGallery();
+        BinaryAlbumsWriter writer = new BinaryAlbumsWriter(gallery);
+        writer.setJournalPosition(3, 42);
+        check("catalog written", writer.write(catalog));
+        BinaryAlbumsReader reader = new BinaryAlbumsReader(catalog);
+        IGalleryModel read = new GalleryModel(reader);
+        check("catalog read", !reader.hasFailed());
+        check("catalog round trip", describe(gallery).equals(describe(read)));
+        check("journal position round trip", reader.getJournalGeneration() == 3 && reader.getJournalOffset() == 42);
+        read = new GalleryModel(new BinaryAlbumsReader(catalog, true));
+        check("albums loaded on demand", !read.getAlbum(1).isLoaded());
+        check("catalog round trip on demand", describe(gallery).equals(describe(read)));
+        check("catalog converted to xml", AlbumsCatalog.toXml(catalog, xml));
+        check("xml round trip", describe(gallery).equals(describe(new GalleryModel(new XmlAlbumsReader(xml, false)))));
+
+        // Changes replayed from the journal over the catalog they were made on.
+        writer = new BinaryAlbumsWriter(gallery);
+        check("catalog rewritten", writer.write(catalog));
+        AlbumsJournal albumsJournal = open(catalog, xml, journal, Long.MAX_VALUE);
+        IGalleryModel changed = sGallery;
+        changed.getAlbum(0).setName("Renamed album");
+        changed.getAlbum(1).getPhoto(2).setName("Renamed photo");
+        changed.getAlbum(1).removePhoto(changed.getAlbum(1).getPhoto(0));
+        changed.removeAlbum(changed.getAlbum(2));
+        AlbumModel added = new AlbumModel("Added album");
+        added.addPhoto(createPhoto("/photos/added.jpg", "Added photo"));
+        changed.addAlbum(added);
+        String expected = describe(changed);
+        albumsJournal.close();
+        open(catalog, xml, journal, Long.MAX_VALUE).close();
+        check("journal replayed", expected.equals(describe(sGallery)));
+
+        // A record cut short by a crash is dropped.
+        long length = journal.length();
+        FileOutputStream output = new FileOutputStream(journal, true);
+        output.write(new byte[] { 0, 0, 0, 40, 5, 0, 0 });
+        output.close();
+        open(catalog, xml, journal, Long.MAX_VALUE).close();
+        check("torn record dropped", expected.equals(describe(sGallery)) && journal.length() == length);
+
+        // Compaction writes the catalog and the xml albums file at the same
+        // position, so the journal replays over either of them.
+        albumsJournal = open(catalog, xml, journal, 0);
+        sGallery.getAlbum(0).getPhoto(0).setName("Renamed after compaction");
+        expected = describe(sGallery);
+        albumsJournal.close();
+        open(catalog, xml, journal, Long.MAX_VALUE).close();
+        check("journal replayed over the compacted catalog", expected.equals(describe(sGallery)));
+        File latest = AlbumsCatalog.findLatest(catalog);
+        reader = new BinaryAlbumsReader(latest);
+        reader.read();
+        check("catalog written under its generation", !catalog.exists()
+                && latest.equals(AlbumsCatalog.getGenerationFile(catalog, reader.getJournalGeneration())));
+        XmlAlbumsReader xmlReader = new XmlAlbumsReader(xml, false);
+        IGalleryModel fromXml = new GalleryModel(xmlReader);
+        albumsJournal = new AlbumsJournal(journal, new File(directory, "Other.catalog"), 
+                new File(directory, "Other.xml"), Long.MAX_VALUE);
+        albumsJournal.open(fromXml, xmlReader.getJournalGeneration(), xmlReader.getJournalOffset());
+        albumsJournal.close();
+        check("journal replayed over the exported xml", expected.equals(describe(fromXml)));
+
+        // A journal that does not follow the catalog is set aside rather than
+        // replayed.
+        AlbumsCatalog.deleteOlder(catalog, Long.MAX_VALUE);
+        writer = new BinaryAlbumsWriter(createGallery());
+        check("catalog written behind the journal", writer.write(catalog));
+        int files = directory.list().length;
+        open(catalog, xml, journal, Long.MAX_VALUE).close();
+        check("journal ahead not replayed", describe(createGallery()).equals(describe(sGallery)));
+        check("journal ahead set aside", directory.list().length == files + 1);
+
+        // A catalog that cannot be read reports it.
+        output = new FileOutputStream(catalog);
+        output.write(new byte[100]);
+        output.close();
+        reader = new BinaryAlbumsReader(catalog);
+        new GalleryModel(reader);
+        check("damaged catalog reported", reader.hasFailed() && reader.getAlbums().isEmpty());
+
+        for(File file : directory.listFiles()) {
+            file.deleteOnExit();
+        }
+        directory.deleteOnExit();
+        System.out.println(sFailures == 0 ? "All checks passed." : sFailures + " checks failed.");
+        System.exit(sFailures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Reads the gallery from the latest generation of the catalog and opens
+     * the journal over it. The gallery is kept in sGallery.
+     *
+     * @return AlbumsJournal: the journal opened
+     */
+    private static AlbumsJournal open(File catalog, File xml, File journal, long threshold) {
+        IAlbumsReader reader = new BinaryAlbumsReader(AlbumsCatalog.findLatest(catalog), true);
+        sGallery = new GalleryModel(reader);
+        AlbumsJournal albumsJournal = new AlbumsJournal(journal, catalog, xml, threshold);
+        albumsJournal.open(sGallery, reader.getJournalGeneration(), reader.getJournalOffset());
+        return albumsJournal;
+    }
+
+    private static IGalleryModel createGallery() {
+        List<IAlbumModel> albums = new LinkedList<IAlbumModel>();
+        for(int i = 0; i < 3; i++) {
+            AlbumModel album = new AlbumModel("Album " + i);
+            album.setDescription(i == 0 ? "" : "Album \u00e9 & \"" + i + "\"");
+            album.setIconImagePath(i == 1 ? "/photos/" + i + "/0.jpg" : null);
+            for(int j = 0; j < 4; j++) {
+                album.addPhoto(createPhoto("/photos/" + i + "/" + j + ".jpg", "Photo " + j));
+            }
+            albums.add(album);
+        }
+        return new GalleryModel(albums);
+    }
+
+    private static IPhotoModel createPhoto(String path, String name) {
+        IPhotoModel photo = new PhotoModel(path);
+        photo.setName(name);
+        photo.setDescription("Description of " + name);
+        return photo;
+    }
+
+    /**
+     * Describes the contents of the gallery as a string, so that two
+     * galleries can be compared.
+     */
+    private static String describe(IGalleryModel gallery) {
+        StringBuilder description = new StringBuilder();
+        for(IAlbumModel album : gallery) {
+            description.append('[').append(album.getName()).append('|').append(album.getDescription())
+                .append('|').append(((AlbumModel)album).getIconImagePath()).append(']');
+            for(IPhotoModel photo : album) {
+                description.append(photo.getName()).append('|').append(photo.getDescription())
+                    .append('|').append(photo.getPath()).append(';');
+            }
+        }
+        return description.toString();
+    }
+
+    private static void check(String name, boolean passed) {
+        System.out.println((passed ? "passed: " : "FAILED: ") + name);
+        if(!passed) {
+            sFailures++;
+        }
+    }
+
+    private static IGalleryModel sGallery;
+    private static int sFailures;
+
+}
@@ -0,0 +1,178 @@
+package test.io;
+
+import io.XmlAlbumsWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import model.AlbumModel;
+import model.GalleryModel;
+import model.PhotoModel;
+import common.IAlbumModel;
+import common.IPhotoModel;
+
+/**
+ * Benchmark comparing the cost of writing a large catalog to the albums file:
+ * the former writer, which concatenated every node into strings written 
+ * through an unbuffered FileWriter, versus XmlAlbumsWriter streaming through
+ * a buffered UTF-8 XMLStreamWriter. For each it reports the time taken, the
+ * size of the file written and the bytes allocated by the writing thread.
+ *
+ * The catalog is synthetic: each album streams its photos from a small pool
+ * of photo models, so that the gallery itself costs almost nothing and the
+ * allocations measured are those of the writer.
+ *
+ * Usage: AlbumsWriterBenchmark [-photos N] [-albums N] [-runs N]
+ */
+public class AlbumsWriterBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int photos = 1000000;
+        int albums = 100;
+        int runs = 3;
+
+        for(int i = 0; i < args.length; i++) {
+            if(args[i].equals("-photos")) {
+                photos = Integer.parseInt(args[++i]);
+            }
+            else if(args[i].equals("-albums")) {
+                albums = Integer.parseInt(args[++i]);
+            }
+            else if(args[i].equals("-runs")) {
+                runs = Integer.parseInt(args[++i]);
+            }
+        }
+
+        List<IAlbumModel> albumList = new LinkedList<IAlbumModel>();
+        for(int i = 0; i < albums; i++) {
+            albumList.add(new SyntheticAlbum("Album " + i, photos / albums));
+        }
+        GalleryModel gallery = new GalleryModel(albumList);
+        File file = File.createTempFile("albums", ".xml");
+        file.deleteOnExit();
+
+        System.out.println(photos + " photos in " + albums + " albums, " + runs + " runs");
+        System.out.println(String.format("%-10s %12s %12s %14s %14s", "Writer", "ms", "file MB", 
+                "allocated MB", "bytes/photo"));
+
+        // Warm up both writers so the first run is not penalized.
+        writeBefore(gallery, file);
+        new XmlAlbumsWriter(gallery).write(file);
+
+        for(int run = 0; run < runs; run++) {
+            long allocated = getAllocatedBytes();
+            long start = System.nanoTime();
+            writeBefore(gallery, file);
+            report("before", start, allocated, file, photos);
+
+            allocated = getAllocatedBytes();
+            start = System.nanoTime();
+            new XmlAlbumsWriter(gallery).write(file);
+            report("after", start, allocated, file, photos);
+        }
+    }
+
+    private static void report(String name, long start, long allocated, File file, int photos) {
+        double ms = (System.nanoTime() - start) / 1e6;
+        long bytes = getAllocatedBytes() - allocated;
+        System.out.println(String.format("%-10s %12.1f %12.1f %14.1f %14.1f", name, ms, 
+                file.length() / 1048576.0, bytes / 1048576.0, bytes / (double)photos));
+    }
+
+    /**
+     * Gets the number of bytes allocated so far by the current thread.
+     *
+     * @return long: the bytes allocated; or 0 if the virtual machine does not
+     *          report it
+     */
+    private static long getAllocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /**
+     * Writes the gallery the way the albums writer formerly did.
+     */
+    private static void writeBefore(GalleryModel gallery, File file) throws IOException {
+        FileWriter writer = new FileWriter(file);
+        writer.write("<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n");
+        writer.write("\t<!-- Photo Gallery -->\n");
+        writer.write("\t<PhotoGallery>\n");
+        for(IAlbumModel album : gallery) {
+            writer.write("\t<PhotoAlbum ");
+            writer.write("Name=\"" + album.getName() + "\" ");
+            writer.write("Description=\"" + album.getDescription() + "\" ");
+            writer.write(">\n");
+            for(IPhotoModel photo : album) {
+                writer.write("\t\t<Photo ");
+                writer.write("Name=\"" + photo.getName() + "\" ");
+                writer.write("Description=\"" + photo.getDescription() + "\" ");
+                writer.write("Path=\"" + photo.getPath() + "\" />\n");
+            }
+            writer.write("\t</PhotoAlbum>\n");
+        }
+        writer.write("</PhotoGallery>\n");
+        writer.close();
+    }
+
+    /**
+     * Album that streams the given number of photos from a small pool of photo
+     * models instead of holding them.
+     */
+    private static class SyntheticAlbum extends AlbumModel {
+
+        public SyntheticAlbum(String name, int count) {
+            super(name);
+            setDescription("Synthetic album with " + count + " photos");
+            mCount = count;
+        }
+
+        @Override
+        public int getCount() {
+            return mCount;
+        }
+
+        @Override
+        public Iterator<IPhotoModel> iterator() {
+            return new Iterator<IPhotoModel>() {
+
+                @Override
+                public boolean hasNext() {
+                    return mNext < mCount;
+                }
+
+                @Override
+                public IPhotoModel next() {
+                    return POOL[mNext++ % POOL.length];
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+
+                private int mNext;
+            };
+        }
+
+        private int mCount;
+    }
+
+    private static final IPhotoModel[] POOL = new IPhotoModel[1000];
+
+    static {
+        for(int i = 0; i < POOL.length; i++) {
+            POOL[i] = new PhotoModel("/home/user/Pictures/2011/Holiday/IMG_" + (1000 + i) + ".jpg");
+            POOL[i].setName("IMG_" + (1000 + i));
+            POOL[i].setDescription("Photo " + i + " of the \"holiday\" series & friends");
+        }
+    }
+
+}
@@ -0,0 +1,158 @@
+package test.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Base of the benchmarks comparing two ways of loading the same images. It
+ * parses the arguments, collects the images, warms up both paths and times
+ * each of them on every image, so that a benchmark only provides the two
+ * paths it compares. For each image it reports the average time of each path
+ * and the amount each of them returned, such as the bytes read or decoded.
+ *
+ * Usage: Benchmark [-runs N] [options] [file|directory ...]
+ * When no files are given, the images bundled with the application are used.
+ */
+public abstract class ImageBenchmark {
+
+    /**
+     * Constructor that instantiates a new benchmark of the two paths named.
+     *
+     * @param first: the name of the first path, such as before
+     * @param second: the name of the second path, such as after
+     * @param unit: the name of the unit the amounts are reported in
+     * @param unitSize: the number of bytes in the unit
+     */
+    protected ImageBenchmark(String first, String second, String unit, double unitSize) {
+        mFirst = first;
+        mSecond = second;
+        mUnit = unit;
+        mUnitSize = unitSize;
+    }
+
+    /**
+     * Runs the benchmark with the arguments specified.
+     *
+     * @param args: the arguments of the benchmark
+     * @throws IOException: if an image could not be loaded
+     */
+    public void run(String[] args) throws IOException {
+        int runs = 5;
+        List<File> files = new LinkedList<File>();
+
+        for(int i = 0; i < args.length; i++) {
+            if(args[i].equals("-runs")) {
+                runs = Integer.parseInt(args[++i]);
+            }
+            else if(args[i].startsWith("-") && i + 1 < args.length && parseOption(args[i], args[i + 1])) {
+                i++;
+            }
+            else {
+                collect(new File(args[i]), files);
+            }
+        }
+        if(files.isEmpty()) {
+            collect(new File("src/runtime/resources/images"), files);
+        }
+
+        System.out.println(describe() + files.size() + " images, " + runs + " runs");
+        System.out.println(String.format("%-40s %12s %12s %12s %12s", "Image", mFirst + " ms",
+                mFirst + " " + mUnit, mSecond + " ms", mSecond + " " + mUnit));
+
+        // Warm up both code paths so the first image is not penalized.
+        for(File file : files) {
+            runFirst(file);
+            runSecond(file);
+        }
+
+        double totalFirstMs = 0;
+        double totalSecondMs = 0;
+        long totalFirst = 0;
+        long totalSecond = 0;
+        for(File file : files) {
+            long first = 0;
+            long second = 0;
+            long start = System.nanoTime();
+            for(int run = 0; run < runs; run++) {
+                first = runFirst(file);
+            }
+            double firstMs = (System.nanoTime() - start) / 1e6 / runs;
+            start = System.nanoTime();
+            for(int run = 0; run < runs; run++) {
+                second = runSecond(file);
+            }
+            double secondMs = (System.nanoTime() - start) / 1e6 / runs;
+
+            totalFirstMs += firstMs;
+            totalSecondMs += secondMs;
+            totalFirst += first;
+            totalSecond += second;
+            System.out.println(String.format("%-40s %12.2f %12.2f %12.2f %12.2f", file.getName(),
+                    firstMs, first / mUnitSize, secondMs, second / mUnitSize));
+        }
+        System.out.println(String.format("%-40s %12.2f %12.2f %12.2f %12.2f", "TOTAL",
+                totalFirstMs, totalFirst / mUnitSize, totalSecondMs, totalSecond / mUnitSize));
+        if(!files.isEmpty()) {
+            System.out.println(String.format("Per image: %s %.2f %s, %s %.2f %s", mFirst,
+                    totalFirst / mUnitSize / files.size(), mUnit, mSecond,
+                    totalSecond / mUnitSize / files.size(), mUnit));
+        }
+    }
+
+    /**
+     * Parses an option of the benchmark other than -runs.
+     *
+     * @param name: the name of the option, such as -size
+     * @param value: the value of the option
+     * @return boolean: true if the option was parsed; false otherwise
+     */
+    protected boolean parseOption(String name, String value) {
+        return false;
+    }
+
+    /**
+     * Describes the options the benchmark is run with.
+     *
+     * @return String: the description, followed by a separator; or an empty
+     *          string
+     */
+    protected String describe() {
+        return "";
+    }
+
+    /**
+     * Loads the image specified through the first path.
+     *
+     * @return long: the number of bytes read or decoded
+     */
+    protected abstract long runFirst(File file) throws IOException;
+
+    /**
+     * Loads the image specified through the second path.
+     *
+     * @return long: the number of bytes read or decoded
+     */
+    protected abstract long runSecond(File file) throws IOException;
+
+    private static void collect(File file, List<File> files) {
+        if(file.isDirectory()) {
+            File[] children = file.listFiles();
+            if(children != null) {
+                for(File child : children) {
+                    collect(child, files);
+                }
+            }
+        }
+        else if(file.isFile()) {
+            files.add(file);
+        }
+    }
+
+    private String mFirst;
+    private String mSecond;
+    private String mUnit;
+    private double mUnitSize;
+
+}
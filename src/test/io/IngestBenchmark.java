@@ -0,0 +1,120 @@
+package test.io;
+
+import io.PhotoData;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.imageio.ImageIO;
+import com.drew.imaging.jpeg.JpegMetadataReader;
+import com.drew.imaging.jpeg.JpegProcessingException;
+
+/**
+ * Benchmark comparing the bytes read from disk to load both the pixels and
+ * the metadata of a photo: opening the file once for ImageIO and once more for
+ * the metadata reader, versus reading the file once into memory and feeding
+ * both from that buffer. For each photo it reports the bytes read and the
+ * average time of each path.
+ *
+ * Usage: IngestBenchmark [-runs N] [file|directory ...]
+ * When no files are given, the images bundled with the application are used.
+ */
+public class IngestBenchmark extends ImageBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        new IngestBenchmark().run(args);
+    }
+
+    public IngestBenchmark() {
+        super("before", "after", "KB", 1024.0);
+    }
+
+    /**
+     * Loads the pixels and the metadata by opening the file for each of them.
+     *
+     * @return long: the number of bytes read from the file
+     */
+    @Override
+    protected long runFirst(File file) throws IOException {
+        CountingInputStream pixels = new CountingInputStream(new FileInputStream(file));
+        try {
+            ImageIO.read(pixels);
+        }
+        finally {
+            pixels.close();
+        }
+        CountingInputStream metadata = new CountingInputStream(new FileInputStream(file));
+        try {
+            JpegMetadataReader.readMetadata(new BufferedInputStream(metadata));
+        }
+        catch(JpegProcessingException e) {
+            // Not a JPEG; the bytes read so far still count.
+        }
+        finally {
+            metadata.close();
+        }
+        return pixels.getCount() + metadata.getCount();
+    }
+
+    /**
+     * Loads the pixels and the metadata from a single read of the file.
+     *
+     * @return long: the number of bytes read from the file
+     */
+    @Override
+    protected long runSecond(File file) throws IOException {
+        PhotoData data = PhotoData.read(file);
+        try {
+            data.getMetadata();
+        }
+        catch(JpegProcessingException e) {
+            // Not a JPEG; the pixels are still decoded from the same buffer.
+        }
+        data.getDecoder().decode();
+        return data.getLength();
+    }
+
+    /**
+     * Input stream that counts the bytes read through it.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        public CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if(b >= 0) {
+                mCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if(n > 0) {
+                mCount += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            mCount += skipped;
+            return skipped;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        private long mCount;
+    }
+
+}
@@ -0,0 +1,77 @@
+package test.io;
+
+import io.ImageDecoder;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Benchmark comparing the two ways of creating a photo's thumbnail: decoding
+ * the full image and then scaling it down, versus decoding a subsampled image
+ * close to the thumbnail's size and scaling that. For each path it reports the
+ * average time per thumbnail and the size of the intermediate decoded raster.
+ *
+ * Usage: ThumbnailDecodeBenchmark [-size WxH] [-runs N] [file|directory ...]
+ * When no files are given, the images bundled with the application are used.
+ */
+public class ThumbnailDecodeBenchmark extends ImageBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        new ThumbnailDecodeBenchmark().run(args);
+    }
+
+    public ThumbnailDecodeBenchmark() {
+        super("full", "subsamp", "MB", 1048576.0);
+        mWidth = 128;
+        mHeight = 128;
+    }
+
+    @Override
+    protected boolean parseOption(String name, String value) {
+        if(!name.equals("-size")) {
+            return false;
+        }
+        String[] dims = value.split("x");
+        mWidth = Integer.parseInt(dims[0]);
+        mHeight = Integer.parseInt(dims[1]);
+        return true;
+    }
+
+    @Override
+    protected String describe() {
+        return "Thumbnail " + mWidth + "x" + mHeight + ", ";
+    }
+
+    /**
+     * Creates a thumbnail by decoding the full image and scaling it.
+     *
+     * @return long: the size in bytes of the intermediate decoded raster
+     */
+    @Override
+    protected long runFirst(File file) throws IOException {
+        BufferedImage image = new ImageDecoder(file).decode();
+        ImageDecoder.scale(image, mWidth, mHeight);
+        return rasterBytes(image);
+    }
+
+    /**
+     * Creates a thumbnail by decoding a subsampled image and scaling it.
+     *
+     * @return long: the size in bytes of the intermediate decoded raster
+     */
+    @Override
+    protected long runSecond(File file) throws IOException {
+        BufferedImage image = new ImageDecoder(file).decode(mWidth, mHeight);
+        ImageDecoder.scale(image, mWidth, mHeight);
+        return rasterBytes(image);
+    }
+
+    private static long rasterBytes(BufferedImage image) {
+        int bits = image.getColorModel().getPixelSize();
+        return (long)image.getWidth() * image.getHeight() * ((bits + 7) / 8);
+    }
+
+    private int mWidth;
+    private int mHeight;
+
+}
@@ -14,10 +14,14 @@ import javax.swing.table.TableCellEditor;
 import javax.swing.table.TableCellRenderer;
 import javax.swing.table.TableColumn;
 import com.drew.metadata.Directory;
+import com.drew.metadata.Metadata;
 import com.drew.metadata.Tag;
+import common.ChangeType;
+import common.IChangeObserver;
 import common.IItemModel;
 import common.IPhotoModel;
 import common.ISelectionObserver;
+import common.ItemChangeEvent;
 
 
 /**
@@ -26,7 +30,7 @@ import common.ISelectionObserver;
  * first column contains and key and the second column contains the associated
  * value for that row's key.
  */
-public class DetailsView extends JTable implements ISelectionObserver {
+public class DetailsView extends JTable implements ISelectionObserver, IChangeObserver {
     
     /** Constant containing the value of the first column's  header. */
     public static final String KEY_HEADER = "Property";
@@ -79,6 +83,9 @@ public class DetailsView extends JTable implements ISelectionObserver {
     public DetailsView(IItemModel model) {
         super();
         mModel = model;
+        if(mModel != null) {
+            mModel.registerChangeObserver(this);
+        }
         mMaxKeyColumnWidth = 15;
         mCellRenderer = new TableCellRenderer() {
             @Override
@@ -116,7 +123,8 @@ public class DetailsView extends JTable implements ISelectionObserver {
      * Wipes out the current table model and re-initializes it with an empty
      * table model. If this view's model is not null, this method will parse
      * the current model and fill back in the rows of the table using the
-     * current mode's details. 
+     * current mode's details. The metadata of a photo is only shown once it
+     * has been read, in which case the properties are reset again. 
      */
     @SuppressWarnings("rawtypes")
     public void resetProperties() {
@@ -147,9 +155,14 @@ public class DetailsView extends JTable implements ISelectionObserver {
         
         // Parse the metadata from the photo model and add the properties
         
+        mMetadataPending = false;
         if(mModel instanceof IPhotoModel) {
-            IPhotoModel photoModel = (IPhotoModel)mModel;
-            Iterator directoryIterator = photoModel.getMetadata().getDirectoryIterator();
+            Metadata metadata = ((IPhotoModel)mModel).getMetadata();
+            if(metadata == null) {
+                mMetadataPending = true;
+                return;
+            }
+            Iterator directoryIterator = metadata.getDirectoryIterator();
             while(directoryIterator.hasNext()) {
                 Directory directory = (Directory)directoryIterator.next();
                 Iterator tagIterator = directory.getTagIterator();
@@ -179,7 +192,7 @@ public class DetailsView extends JTable implements ISelectionObserver {
      * @param model: the new item model to be associated with this view
      */
     public void setItemModel(IItemModel model) {
-        mModel = model;
+        setModel(model);
         resetProperties();
     }
 
@@ -190,10 +203,22 @@ public class DetailsView extends JTable implements ISelectionObserver {
      */
     @Override
     public void update(IItemModel itemSelected) {
-        mModel = itemSelected;
+        setModel(itemSelected);
         resetProperties();
     }
     
+    //--------------------------------------------------------- IChangeObserver
+    
+    /*
+     * @see common.IChangeObserver#updateChange(common.ItemChangeEvent)
+     */
+    @Override
+    public void updateChange(ItemChangeEvent e) {
+        if(e.getType() == ChangeType.STATE && mMetadataPending && e.getItem() == mModel) {
+            resetProperties();
+        }
+    }
+    
     // ---------------------------------------------------------- Inner Classes
     
     /**
@@ -277,6 +302,23 @@ public class DetailsView extends JTable implements ISelectionObserver {
     
     // -------------------------------------------------------- Private Methods
 
+    /**
+     * Private method that sets the item model associated with this view, and
+     * observes it instead of the previous one so that the view is notified
+     * once the metadata of a photo has been read.
+     * 
+     * @param model: the new item model to be associated with this view
+     */
+    private void setModel(IItemModel model) {
+        if(mModel != null && mModel != model) {
+            mModel.removeChangeObserver(this);
+        }
+        if(model != null && model != mModel) {
+            model.registerChangeObserver(this);
+        }
+        mModel = model;
+    }
+
     /**
      * Private method that adjusts the first column of the table to the width
      * of the largest displayed key, plus a little breathing room.
@@ -297,4 +339,5 @@ public class DetailsView extends JTable implements ISelectionObserver {
     private int mMaxKeyColumnWidth;
     private TableCellRenderer mCellRenderer;
     private DefaultTableModel mTableModel;
+    private boolean mMetadataPending;
 }
@@ -6,15 +6,20 @@ import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.HashMap;
+import java.util.Map;
 import javax.swing.AbstractAction;
 import javax.swing.ActionMap;
 import javax.swing.JLabel;
 import javax.swing.JPopupMenu;
 import javax.swing.JTree;
+import javax.swing.SwingUtilities;
 import javax.swing.event.PopupMenuEvent;
 import javax.swing.event.PopupMenuListener;
 import javax.swing.event.TreeSelectionEvent;
+import javax.swing.event.TreeExpansionEvent;
 import javax.swing.event.TreeSelectionListener;
+import javax.swing.event.TreeWillExpandListener;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreeCellRenderer;
@@ -34,12 +39,15 @@ import common.ItemChangeEvent;
  * Class that provides a view of the photo gallery as a whole in the form of a
  * tree. The root node of the tree is invisible and each child of the root is
  * an album model in this gallery. Each album model node has a child for each of
- * the photo models in it's collection of photos.
+ * the photo models in it's collection of photos. The photos of an album that
+ * are loaded on demand are added to the tree once they are loaded, which the
+ * expansion of the album's node triggers.
  */
 public class GalleryView extends JTree implements  IChangeObserver {
 
     public static final String ADDALBUM_ACTION = "AddAlbumAction";
     public static final String ADDPHOTO_ACTION = "AddPhotoToAlbumAction";
+    public static final String IMPORTFOLDER_ACTION = "ImportFolderAction";
     public static final String RENAME_ACTION = "RenameItemAction";
     public static final String SETALBUMICON_ACTION = "SetPhotoAsAlbumIconAction";
     public static final String REMOVE_ACTION = "RemoveItemAction";
@@ -62,6 +70,7 @@ public class GalleryView extends JTree implements  IChangeObserver {
         ActionMap actions = new ActionMap();
         actions.put(ADDALBUM_ACTION, new AddAlbumAction());
         actions.put(ADDPHOTO_ACTION, new AddPhotoToAlbumAction());
+        actions.put(IMPORTFOLDER_ACTION, new ImportFolderAction());
         actions.put(RENAME_ACTION, new RenameItemAction());
         actions.put(SETALBUMICON_ACTION, new SetPhotoAsAlbumIconAction());
         actions.put(REMOVE_ACTION, new RemoveItemAction());
@@ -70,6 +79,7 @@ public class GalleryView extends JTree implements  IChangeObserver {
         setCellRenderer(new ItemNodeRenderer());
         addMouseListener(new MousePopupListener());
         addTreeSelectionListener(new ItemNodeSelectionListener());
+        addTreeWillExpandListener(new AlbumNodeExpansionListener());
     }
     
     //--------------------------------------------------------------- IItemView
@@ -100,44 +110,76 @@ public class GalleryView extends JTree implements  IChangeObserver {
     @Override
     public void updateChange(ItemChangeEvent e) {
         
-        DefaultMutableTreeNode lastSelectedNode = (DefaultMutableTreeNode) getLastSelectedPathComponent();
-        Object lastSelectedObject = null;
-        if(lastSelectedNode != null) {
-             lastSelectedObject = lastSelectedNode.getUserObject();    
-        }
-        
         switch(e.getType()) {
         case ADDITION:
-            
-            DefaultMutableTreeNode newNode = new DefaultMutableTreeNode(e.getChange());
-            if(e.getChange() instanceof IAlbumModel && e.getItem() == mModel) {
+            IItemModel added = e.getChange();
+            if(added instanceof IAlbumModel && e.getItem() == mModel) {
+                // An album may be added along with its photos, such as when a
+                // folder is imported, so its photos are shown and observed.
+                IAlbumModel album = (IAlbumModel)added;
                 DefaultMutableTreeNode rootNode = (DefaultMutableTreeNode)mTreeModel.getRoot();
-                mTreeModel.insertNodeInto(newNode, rootNode, rootNode.getChildCount());
-            }
-            else if(e.getItem() == lastSelectedObject) {
-                lastSelectedNode.insert(newNode, lastSelectedNode.getChildCount());
-                mTreeModel.reload(lastSelectedNode);
+                mTreeModel.insertNodeInto(createAlbumNode(album), rootNode, rootNode.getChildCount());
+                album.registerChangeObserver(this);
+                if(album.isLoaded()) {
+                    for(IPhotoModel photo : album) {
+                        photo.registerChangeObserver(this);
+                    }
+                }
             }
-            else {
-                DefaultMutableTreeNode lastSelectedParent = 
-                    (DefaultMutableTreeNode) lastSelectedNode.getParent();
-                if(e.getItem() == ((IItemModel)lastSelectedParent.getUserObject())) {
-                    lastSelectedParent.insert(newNode, lastSelectedParent.getChildCount());
-                    mTreeModel.reload(lastSelectedParent);
+            else if(added instanceof IPhotoModel && !mNodes.containsKey(added)) {
+                DefaultMutableTreeNode albumNode = mNodes.get(e.getItem());
+                if(albumNode != null) {
+                    removePlaceholder(albumNode);
+                    DefaultMutableTreeNode newNode = new DefaultMutableTreeNode(added);
+                    mNodes.put(added, newNode);
+                    mTreeModel.insertNodeInto(newNode, albumNode, albumNode.getChildCount());
+                    added.registerChangeObserver(this);
                 }
             }
             break;
         case RENAMED:
-            if(e.getChange() == lastSelectedObject) {
-                mTreeModel.reload(lastSelectedNode);
+            DefaultMutableTreeNode renamedNode = mNodes.get(e.getChange());
+            if(renamedNode != null) {
+                mTreeModel.nodeChanged(renamedNode);
             }
             break;
         case REMOVAL:
-            if(e.getChange() == lastSelectedObject) {
-                mTreeModel.removeNodeFromParent(lastSelectedNode);
+            IItemModel removed = e.getChange();
+            DefaultMutableTreeNode removedNode = mNodes.remove(removed);
+            if(removedNode != null && removedNode.getParent() != null) {
+                mTreeModel.removeNodeFromParent(removedNode);
+            }
+            // The view stops observing what was removed, so that it can be
+            // freed along with its node.
+            removed.removeChangeObserver(this);
+            if(removed instanceof IAlbumModel && ((IAlbumModel)removed).isLoaded()) {
+                for(IPhotoModel photo : (IAlbumModel)removed) {
+                    mNodes.remove(photo);
+                    photo.removeChangeObserver(this);
+                }
             }
             break;
         case STATE:
+            // The icon may have become available, so the row is measured and
+            // painted again.
+            DefaultMutableTreeNode changedNode = mNodes.get(e.getChange());
+            if(changedNode != null) {
+                mTreeModel.nodeChanged(changedNode);
+            }
+            break;
+        case LOADED:
+            final IAlbumModel album = (IAlbumModel)e.getChange();
+            if(SwingUtilities.isEventDispatchThread()) {
+                showPhotos(album);
+            }
+            else {
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        showPhotos(album);
+                    }
+                });
+            }
             break;
         }
     }
@@ -283,6 +325,33 @@ public class GalleryView extends JTree implements  IChangeObserver {
 
     }
 
+    /**
+     * A class that defines the import folder action. The implementation is 
+     * simply a call to the controller to let it know the action was requested.
+     */
+    private class ImportFolderAction extends AbstractAction {
+
+        /**
+         * Default constructor that instantiates a new import folder action.
+         */
+        ImportFolderAction() {
+            putValue(NAME, "Import Folder...");
+            putValue(MNEMONIC_KEY, KeyEvent.VK_I);
+            putValue(SMALL_ICON, Application.Settings.getIcon(ConfigKeys.Actions.ADDALBUM_ICON, IconSize.SMALL));
+            putValue(LARGE_ICON_KEY, Application.Settings.getIcon(ConfigKeys.Actions.ADDALBUM_ICON, IconSize.LARGE));
+            putValue(SHORT_DESCRIPTION, "Import a folder tree, adding an album for each folder of images.");
+        }
+
+        /*
+         * @see java.awt.event.ActionListener#actionPerformed(java.awt.event.ActionEvent)
+         */
+        @Override
+        public void actionPerformed(ActionEvent ae) {
+            mController.importFolder();
+        }
+
+    }
+
     //--------------------------------------------------- Private Inner Classes
 
     /**
@@ -370,6 +439,32 @@ public class GalleryView extends JTree implements  IChangeObserver {
 
     }
 
+    /**
+     * Class that loads the photos of an album, if they have not been loaded
+     * yet, when the album's node is about to be expanded. The album notifies
+     * the view once they are loaded, and its node is then given a child for 
+     * each of them.
+     */
+    private class AlbumNodeExpansionListener implements TreeWillExpandListener {
+
+        @Override
+        public void treeWillExpand(TreeExpansionEvent e) {
+            DefaultMutableTreeNode node = (DefaultMutableTreeNode)e.getPath().getLastPathComponent();
+            if(node.getUserObject() instanceof IAlbumModel) {
+                IAlbumModel album = (IAlbumModel)node.getUserObject();
+                if(!album.isLoaded()) {
+                    // Accessing the photos of the album loads them.
+                    album.iterator();
+                }
+            }
+        }
+
+        @Override
+        public void treeWillCollapse(TreeExpansionEvent e) {
+        }
+
+    }
+
     /**
      * The listener interface for receiving itemNodePopup events. The class that
      * is interested in processing a itemNodePopup event implements this
@@ -465,32 +560,103 @@ public class GalleryView extends JTree implements  IChangeObserver {
     private void initialize() {
         
         DefaultMutableTreeNode rootNode = new DefaultMutableTreeNode();
+        mNodes = new HashMap<IItemModel, DefaultMutableTreeNode>();
 
         for (IAlbumModel album : mModel) {            
-            DefaultMutableTreeNode albumNode = new DefaultMutableTreeNode(album);
-            if (album.getCount() > 0) {
-                for (IItemModel photo : album) {
-                    DefaultMutableTreeNode imageNode = new DefaultMutableTreeNode(photo);
-                    albumNode.add(imageNode);
-                }
-            }
-            else {
-                DefaultMutableTreeNode noImageNode = new DefaultMutableTreeNode(
-                        new JLabel("[no images]"));
-                albumNode.add(noImageNode);
-            }
-            rootNode.add(albumNode);
+            rootNode.add(createAlbumNode(album));
         }
 
         mTreeModel = new DefaultTreeModel(rootNode);
         setModel(mTreeModel);
     }
+
+    /**
+     * Private helper method that creates the node of an album, along with the
+     * nodes of its photos if they have been loaded.
+     * 
+     * @param album: the album
+     * @return DefaultMutableTreeNode: the node of the album
+     */
+    private DefaultMutableTreeNode createAlbumNode(IAlbumModel album) {
+        DefaultMutableTreeNode albumNode = new DefaultMutableTreeNode(album);
+        mNodes.put(album, albumNode);
+        if (album.isLoaded() || album.getCount() == 0) {
+            addPhotoNodes(albumNode, album);
+        }
+        else {
+            // The photos are not loaded until the node is expanded, so 
+            // it is given a child that makes it expandable meanwhile.
+            DefaultMutableTreeNode loadingNode = new DefaultMutableTreeNode(
+                    new JLabel("[loading]"));
+            albumNode.add(loadingNode);
+        }
+        return albumNode;
+    }
+
+    /**
+     * Private helper method that removes the child stating that an album has
+     * no images from the node of the album, once a photo is added to it.
+     * 
+     * @param albumNode: the node of the album
+     */
+    private void removePlaceholder(DefaultMutableTreeNode albumNode) {
+        if(albumNode.getChildCount() == 1) {
+            DefaultMutableTreeNode child = (DefaultMutableTreeNode)albumNode.getFirstChild();
+            if(child.getUserObject() instanceof JLabel) {
+                mTreeModel.removeNodeFromParent(child);
+            }
+        }
+    }
+
+    /**
+     * Private helper method that adds a child to the album node specified 
+     * for each of the photos of its album, or a single child stating that it
+     * has none.
+     * 
+     * @param albumNode: the node of the album
+     * @param album: the album
+     */
+    private void addPhotoNodes(DefaultMutableTreeNode albumNode, IAlbumModel album) {
+        if (album.getCount() > 0) {
+            for (IItemModel photo : album) {
+                DefaultMutableTreeNode imageNode = new DefaultMutableTreeNode(photo);
+                mNodes.put(photo, imageNode);
+                albumNode.add(imageNode);
+            }
+        }
+        else {
+            DefaultMutableTreeNode noImageNode = new DefaultMutableTreeNode(
+                    new JLabel("[no images]"));
+            albumNode.add(noImageNode);
+        }
+    }
+
+    /**
+     * Private helper method that replaces the children of the node of an 
+     * album, whose photos have just been loaded, with its photos, and 
+     * observes the changes of the photos.
+     * 
+     * @param album: the album whose photos have been loaded
+     */
+    private void showPhotos(IAlbumModel album) {
+        DefaultMutableTreeNode albumNode = mNodes.get(album);
+        if(albumNode == null) {
+            return;
+        }
+        albumNode.removeAllChildren();
+        addPhotoNodes(albumNode, album);
+        for(IPhotoModel photo : album) {
+            photo.registerChangeObserver(this);
+        }
+        mTreeModel.nodeStructureChanged(albumNode);
+    }
    
     //--------------------------------------------------------- Private Fields
     
     private IGalleryController mController;
     private IGalleryModel mModel;
     private DefaultTreeModel mTreeModel;
+    private Map<IItemModel, DefaultMutableTreeNode> mNodes;
     private JPopupMenu mPopupMenu;
     private final boolean mDisplayPhotoName = Application.Settings.getBoolean(ConfigKeys.GalleryView.SHOW_PHOTONAME);
     private final boolean mDisplayAlbumCount = Application.Settings.getBoolean(ConfigKeys.GalleryView.SHOW_ALBUMCOUNT);
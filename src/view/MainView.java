@@ -1,8 +1,11 @@
 // MainView.java
 package view;
 
+import io.AlbumsCatalog;
+import io.AlbumsJournal;
+import io.AutosaveService;
+import io.BinaryAlbumsReader;
 import io.XmlAlbumsReader;
-import io.XmlAlbumsWriter;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
@@ -11,6 +14,8 @@ import java.awt.event.ComponentListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
+import java.io.File;
+import java.util.Collections;
 import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.ActionMap;
@@ -26,6 +31,7 @@ import javax.swing.JToolBar;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.UIManager.LookAndFeelInfo;
+import model.AlbumPhotoSource;
 import model.GalleryModel;
 import model.PhotoModel;
 import org.codecompanion.ui.dialogs.LookAndFeelChooser;
@@ -41,6 +47,7 @@ import com.javadocking.dockable.DefaultDockable;
 import com.javadocking.dockable.DockingMode;
 import com.javadocking.model.FloatDockModel;
 import common.IAlbumModel;
+import common.IAlbumsReader;
 import common.IChangeObserver;
 import common.IGalleryController;
 import common.IGalleryModel;
@@ -75,7 +82,35 @@ public class MainView extends JFrame implements ISelectionObserver {
         mMainController = controller;
         mSettingsModel = model;
         
-        mGalleryModel = new GalleryModel(new XmlAlbumsReader(Application.Runtime.albumsFile()));
+        IAlbumsReader reader = createAlbumsReader();
+        mGalleryModel = new GalleryModel(reader);
+        if(reader.hasFailed() && reader instanceof BinaryAlbumsReader) {
+            // The xml albums file is exported along with the catalog, so the
+            // journal replays over it just as well.
+            Application.log("The catalog could not be read; the albums are read from the xml albums file.");
+            reader = new XmlAlbumsReader(Application.Runtime.albumsFile());
+            mGalleryModel = new GalleryModel(reader);
+        }
+        mAlbumsJournal = new AlbumsJournal(Application.Runtime.albumsJournalFile(), 
+                Application.Runtime.albumsCatalogFile(), Application.Runtime.albumsFile(),
+                Application.Settings.getLong(ConfigKeys.Journal.COMPACTION_THRESHOLD) * 1024);
+        if(reader.hasFailed()) {
+            // The journal is neither replayed over nor compacted into albums
+            // that were not read in full, so the files are left untouched.
+            Application.log("The albums could not be read; the changes to the gallery will not be saved.");
+        }
+        else {
+            mAlbumsJournal.open(mGalleryModel, reader.getJournalGeneration(), reader.getJournalOffset());
+            if(reader instanceof XmlAlbumsReader) {
+                // The albums were imported from the xml albums file, so they
+                // are converted to the catalog read at the next startup.
+                mAlbumsJournal.compact();
+            }
+        }
+        mAutosave = new AutosaveService(mGalleryModel, mAlbumsJournal, Application.Settings, 
+                Application.Runtime.settingsFile(), 
+                Application.Settings.getLong(ConfigKeys.Autosave.QUIET_PERIOD),
+                Application.Settings.getLong(ConfigKeys.Autosave.MAXIMUM_DELAY));
         mGalleryController = new GalleryController(mGalleryModel);
         mGalleryView = new GalleryView(mGalleryController, mGalleryModel);
 
@@ -147,9 +182,12 @@ public class MainView extends JFrame implements ISelectionObserver {
                 if(!mDetailsViewDock.isVisible()) {
                     mRightSplitPane.setDividerLocation(getWidth()-10);
                 }
+                serializeState();
             }
             @Override
-            public void componentMoved(ComponentEvent e) {}
+            public void componentMoved(ComponentEvent e) {
+                serializeState();
+            }
             @Override
             public void componentHidden(ComponentEvent e) {}
         });
@@ -204,6 +242,7 @@ public class MainView extends JFrame implements ISelectionObserver {
         mTogglePropertiesViewAction = new ToggleDetailsViewAction();
         mToggleAlbumsViewAction = new ToggleGalleryViewAction();
         mOpenSlideshowAction = new OpenSlideshowAction();
+        mOpenGallerySlideshowAction = new OpenGallerySlideshowAction();
         mToggleToolBarAction = new ToggleToolBarAction();
 
         // Gallery view's actions...
@@ -213,6 +252,7 @@ public class MainView extends JFrame implements ISelectionObserver {
         mRenameItemAction = galleryActions.get(GalleryView.RENAME_ACTION);
         mSetAlbumIconAction = galleryActions.get(GalleryView.SETALBUMICON_ACTION);
         mAddPhotoToAlbumAction = galleryActions.get(GalleryView.ADDPHOTO_ACTION);
+        mImportFolderAction = galleryActions.get(GalleryView.IMPORTFOLDER_ACTION);
 
         // Photo view's actions...
         ActionMap photoActions = mPhotoView.getActionMap();
@@ -237,6 +277,7 @@ public class MainView extends JFrame implements ISelectionObserver {
 
         mFileMenu.add(mAddAlbumAction);
         mFileMenu.add(mAddPhotoToAlbumAction);
+        mFileMenu.add(mImportFolderAction);
         mFileMenu.add(mRemoveItemAction);
         mFileMenu.add(new JSeparator());
         mFileMenu.add(mExitApplicationAction);
@@ -251,6 +292,7 @@ public class MainView extends JFrame implements ISelectionObserver {
         this.mViewMenu = new JMenu("View");
         mViewMenu.setMnemonic('V');
         mViewMenu.add(mOpenSlideshowAction);
+        mViewMenu.add(mOpenGallerySlideshowAction);
 
         JCheckBoxMenuItem showAlbumsView = new JCheckBoxMenuItem();
         showAlbumsView.setAction(mToggleAlbumsViewAction);
@@ -387,6 +429,24 @@ public class MainView extends JFrame implements ISelectionObserver {
 
     }
 
+    /**
+     * Private helper method that creates the reader of the gallery's contents.
+     * The latest binary catalog is read, unless it is missing or invalid or the xml
+     * albums file has been replaced since it was written, in which case the
+     * albums are imported from the xml albums file.
+     * 
+     * @return IAlbumsReader: the reader of the gallery's contents
+     */
+    private IAlbumsReader createAlbumsReader() {
+        File catalog = AlbumsCatalog.findLatest(Application.Runtime.albumsCatalogFile());
+        File albums = Application.Runtime.albumsFile();
+        if(AlbumsCatalog.isValid(catalog) && catalog.lastModified() >= albums.lastModified()) {
+            return new BinaryAlbumsReader(catalog, 
+                    Application.Settings.getBoolean(ConfigKeys.GalleryView.LOAD_ON_DEMAND));
+        }
+        return new XmlAlbumsReader(albums);
+    }
+
     /**
      * Private helper method that registers the various observers to their 
      * associated broadcaster.
@@ -399,10 +459,15 @@ public class MainView extends JFrame implements ISelectionObserver {
         
         for(IItemModel model : mGalleryModel) {
             model.registerChangeObserver(mGalleryView);
-            for(IItemModel photo : ((IAlbumModel)model)) {
-                photo.registerChangeObserver(mGalleryView);
+            // The gallery view observes the photos of the albums loaded on
+            // demand once they are loaded.
+            if(((IAlbumModel)model).isLoaded()) {
+                for(IItemModel photo : ((IAlbumModel)model)) {
+                    photo.registerChangeObserver(mGalleryView);
+                }
             }
         }
+        mAutosave.start();
     }
    
     /**
@@ -544,8 +609,8 @@ public class MainView extends JFrame implements ISelectionObserver {
 //                Application.dump(e);
 //            }
             serializeState();
-            XmlAlbumsWriter writer = new XmlAlbumsWriter(mGalleryModel);
-            writer.write(Application.Runtime.albumsFile());
+            mAutosave.close();
+            mAlbumsJournal.close();
             mMainController.exitApplication();
         }
 
@@ -709,7 +774,35 @@ public class MainView extends JFrame implements ISelectionObserver {
         @Override
         public void actionPerformed(ActionEvent arg0) {
             IAlbumModel album = mGalleryModel.getLastSelectedAlbum();
-            SlideshowView slideshowView = new SlideshowView(MainView.this, album);
+            boolean shuffle = Application.Settings.getBoolean(ConfigKeys.Slideshow.SHUFFLE);
+            SlideshowView slideshowView = new SlideshowView(MainView.this, 
+                    new AlbumPhotoSource(Collections.singletonList(album), shuffle, null));
+            slideshowView.setVisible(true);
+        }
+
+    }
+
+    /**
+     * A class that defines the open gallery slideshow action. This action 
+     * creates and displays a slideshow of every photo of every album in the
+     * gallery, streamed from the albums as the slideshow advances.
+     */
+    private class OpenGallerySlideshowAction extends AbstractAction {
+
+        private OpenGallerySlideshowAction() {
+            putValue(NAME, "Start Gallery Slideshow");
+            putValue(
+                    SMALL_ICON,
+                    Application.Settings
+                            .getIcon(ConfigKeys.Actions.TOGGLESLIDESHOW_ICON, IconSize.SMALL));
+            putValue(SHORT_DESCRIPTION, "Starts a slideshow of the whole gallery");
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent arg0) {
+            boolean shuffle = Application.Settings.getBoolean(ConfigKeys.Slideshow.SHUFFLE);
+            SlideshowView slideshowView = new SlideshowView(MainView.this, 
+                    new AlbumPhotoSource(mGalleryModel, shuffle, null));
             slideshowView.setVisible(true);
         }
 
@@ -719,6 +812,8 @@ public class MainView extends JFrame implements ISelectionObserver {
 
     private ISettingsModel mSettingsModel;
     private IGalleryModel mGalleryModel;
+    private AlbumsJournal mAlbumsJournal;
+    private AutosaveService mAutosave;
     private IGalleryController mGalleryController;
     private IPhotoModel mPhotoModel;
     private IMainController mMainController;
@@ -741,6 +836,7 @@ public class MainView extends JFrame implements ISelectionObserver {
     private JToggleButton mDetailsViewToggleButton;
     private Action mSetAlbumIconAction;
     private Action mOpenSlideshowAction;
+    private Action mOpenGallerySlideshowAction;
     private Action mToggleAlbumsViewAction;
     private Action mTogglePropertiesViewAction;
     private Action mToggleToolBarAction;
@@ -752,6 +848,7 @@ public class MainView extends JFrame implements ISelectionObserver {
     private Action mRemoveItemAction;
     private Action mRenameItemAction;
     private Action mAddPhotoToAlbumAction;
+    private Action mImportFolderAction;
     private Action mExitApplicationAction;
  
 }
\ No newline at end of file
@@ -2,10 +2,14 @@
 package view;
 
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Image;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import javax.swing.AbstractAction;
 import javax.swing.ActionMap;
 import javax.swing.JPanel;
@@ -13,9 +17,11 @@ import runtime.Application;
 import runtime.Constants.ConfigKeys;
 import common.ChangeType;
 import common.IChangeObserver;
+import common.ICompletionObserver;
 import common.IItemModel;
 import common.IPhotoController;
 import common.IPhotoModel;
+import common.ITiledImage;
 import common.ISelectionObserver;
 import common.IconSize;
 import common.ItemChangeEvent;
@@ -76,7 +82,12 @@ public class PhotoView extends JPanel implements ISelectionObserver, IChangeObse
      * @param model: the new photo model for this view
      */
     public void setPhoto(IPhotoModel model) {
+        if(mModel != null && mModel != model) {
+            mModel.removeChangeObserver((IChangeObserver)this);
+            mModel.setPinned(false);
+        }
         mModel = model;
+        mModel.setPinned(true);
         mModel.registerChangeObserver((IChangeObserver)this);
         if(mController == null) {
             mController = new PhotoController(mModel);
@@ -100,8 +111,7 @@ public class PhotoView extends JPanel implements ISelectionObserver, IChangeObse
     @Override
     public void update(IItemModel selected) {
         if(selected instanceof IPhotoModel) {
-            setPhoto((IPhotoModel) selected);
-            mController.zoomToFit(this.getSize());
+            load((IPhotoModel) selected);
         }
     }
 
@@ -114,6 +124,7 @@ public class PhotoView extends JPanel implements ISelectionObserver, IChangeObse
     @Override
     public void updateChange(ItemChangeEvent e) {
         if(e.getType() == ChangeType.STATE) {
+            revalidate();
             repaint();
         }
     }
@@ -121,6 +132,20 @@ public class PhotoView extends JPanel implements ISelectionObserver, IChangeObse
     
     // -------------------------------------------------------------- Overrides
     
+    /*
+     * @see javax.swing.JComponent#getPreferredSize()
+     */
+    @Override
+    public Dimension getPreferredSize() {
+        if(mModel != null) {
+            Dimension size = mModel.getImageSize();
+            if(size != null) {
+                return size;
+            }
+        }
+        return super.getPreferredSize();
+    }
+    
     /*
      * @see javax.swing.JComponent#paint(java.awt.Graphics)
      */
@@ -136,20 +161,129 @@ public class PhotoView extends JPanel implements ISelectionObserver, IChangeObse
         }
         
         Image image = mModel.getImage();
-        if(image == null)
+        Dimension size = mModel.getImageSize();
+        if(image == null || size == null)
             return;
-        int imageWidth = image.getWidth(null);
-        int imageHeight = image.getHeight(null);
+        int imageWidth = size.width;
+        int imageHeight = size.height;
         int offsetX = (this.getWidth() - imageWidth) / 2;
         int offsetY = (this.getHeight() - imageHeight) / 2;
         g.setColor(mBackgroundColor);
         g.fillRect(this.getX(), this.getY(), this.getWidth(), this.getHeight());
-        g.drawImage(image, offsetX, offsetY, null);
+        
+        ITiledImage tiles = mModel.getTiledImage();
+        if(tiles != null && imageWidth > image.getWidth(null)) {
+            g.drawImage(image, offsetX, offsetY, imageWidth, imageHeight, null);
+            paintTiles(g, tiles, offsetX, offsetY, imageWidth, imageHeight);
+        }
+        else if(image.getWidth(null) != imageWidth || image.getHeight(null) != imageHeight) {
+            g.drawImage(image, offsetX, offsetY, imageWidth, imageHeight, null);
+        }
+        else {
+            g.drawImage(image, offsetX, offsetY, null);
+        }
     }
 
     
     // -------------------------------------------------------- Private Methods
     
+    /**
+     * Private helper method that decodes the image of the photo specified on 
+     * the imaging threads, then displays the photo zoomed to fit this view. Each
+     * call supersedes the previous ones: a load that has not started yet is 
+     * dropped, one that is running is interrupted, and a load that completes 
+     * after a newer one was requested is never displayed. Holding down an
+     * arrow key in the gallery therefore only renders the photo that ends up
+     * selected, while the previous photo stays displayed in the meantime.
+     * 
+     * @param photo: the photo to be displayed
+     */
+    private void load(final IPhotoModel photo) {
+        final int generation = ++mLoadGeneration;
+        if(mPendingLoad != null) {
+            mPendingLoad.cancel(true);
+        }
+        mPendingLoad = Application.Imaging.submit(new Callable<Image>() {
+            @Override
+            public Image call() {
+                if(generation != mLoadGeneration) {
+                    return null;
+                }
+                return photo.getImage();
+            }
+        }, new ICompletionObserver<Image>() {
+            @Override
+            public void completed(Image result) {
+                if(generation != mLoadGeneration) {
+                    return;
+                }
+                mPendingLoad = null;
+                setPhoto(photo);
+                mController.zoomToFit(getVisibleRect().getSize());
+            }
+        });
+    }
+    
+    /**
+     * Private helper method that paints the tiles of a large photo that 
+     * intersect the area being repainted, on top of its overview. Tiles that 
+     * are not decoded yet are requested from the tiled source, which notifies 
+     * the photo model, and in turn this view, once they are available. The
+     * tiled source is told which tiles are visible, so that it drops the ones
+     * requested for an area that has been scrolled away from.
+     * 
+     * @param g: the graphics to paint with
+     * @param tiles: the tiled source of the photo
+     * @param offsetX: the x location of the photo in this view
+     * @param offsetY: the y location of the photo in this view
+     * @param width: the width the photo is displayed at
+     * @param height: the height the photo is displayed at
+     */
+    private void paintTiles(Graphics g, ITiledImage tiles, int offsetX, int offsetY, int width, int height) {
+        Rectangle photo = new Rectangle(offsetX, offsetY, width, height);
+        Rectangle visible = photo.intersection(getVisibleRect());
+        Rectangle clip = photo;
+        Rectangle bounds = g.getClipBounds();
+        if(bounds != null) {
+            clip = clip.intersection(bounds);
+        }
+        
+        double scale = (double)width / tiles.getWidth();
+        int subsampling = 1;
+        while(subsampling * 2 * scale <= 1.0) {
+            subsampling *= 2;
+        }
+        double span = (double)tiles.getTileSize() * subsampling * scale;
+        if(!visible.isEmpty()) {
+            tiles.setViewport(subsampling, 
+                    (int)((visible.x - offsetX) / span), (int)((visible.y - offsetY) / span),
+                    (int)((visible.x + visible.width - 1 - offsetX) / span), 
+                    (int)((visible.y + visible.height - 1 - offsetY) / span));
+        }
+        if(clip.isEmpty()) {
+            return;
+        }
+        int firstColumn = (int)((clip.x - offsetX) / span);
+        int lastColumn = (int)((clip.x + clip.width - 1 - offsetX) / span);
+        int firstRow = (int)((clip.y - offsetY) / span);
+        int lastRow = (int)((clip.y + clip.height - 1 - offsetY) / span);
+        
+        for(int row = firstRow; row <= lastRow; row++) {
+            for(int column = firstColumn; column <= lastColumn; column++) {
+                Image tile = tiles.getTile(subsampling, column, row);
+                if(tile == null) {
+                    continue;
+                }
+                Rectangle region = tiles.getTileBounds(subsampling, column, row);
+                int x1 = offsetX + (int)(region.x * scale);
+                int y1 = offsetY + (int)(region.y * scale);
+                int x2 = offsetX + (int)((region.x + region.width) * scale);
+                int y2 = offsetY + (int)((region.y + region.height) * scale);
+                g.drawImage(tile, x1, y1, x2 - x1, y2 - y1, null);
+            }
+        }
+    }
+    
     /**
      * Private helper method that centralizes the initialization of certain
      * parts of the photo view.
@@ -243,7 +377,7 @@ public class PhotoView extends JPanel implements ISelectionObserver, IChangeObse
          */
         @Override
         public void actionPerformed(ActionEvent e) {
-            mController.zoomToFit(PhotoView.this.getSize());
+            mController.zoomToFit(PhotoView.this.getVisibleRect().getSize());
         }
         
     }
@@ -278,5 +412,7 @@ public class PhotoView extends JPanel implements ISelectionObserver, IChangeObse
     
     private IPhotoController mController;
     private IPhotoModel mModel;
+    private Future<?> mPendingLoad;
+    private volatile int mLoadGeneration;
     private Color mBackgroundColor;
 }
\ No newline at end of file
@@ -0,0 +1,220 @@
+// SlideTransition.java
+package view;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class that provides the animation from one slide of a slideshow to the next.
+ * Both slides are frames already rendered at the size of the slideshow, so
+ * each step of the animation only blends the two frames together, in memory,
+ * into a buffer of the same size which is then drawn as is. At most
+ * {@link #FRAME_RATE} steps are blended per second, whatever the rate at
+ * which the slideshow is painted. If blending steps keeps taking longer than
+ * a frame, the transition gives up and the next slide is shown as a hard 
+ * cut.
+ */
+public class SlideTransition {
+
+    /** The maximum number of steps blended per second. */
+    public static final int FRAME_RATE = 30;
+
+    /** The number of steps in a row that may take longer than a frame to blend. */
+    public static final int MAXIMUM_LATE_STEPS = 2;
+
+    /**
+     * An enumeration of the available transitions between slides.
+     */
+    public enum Style {
+
+        /** The next slide replaces the current one at once. */
+        NONE,
+
+        /** The current slide fades into the next one. */
+        CROSSFADE,
+
+        /** The next slide pushes the current one out to the left. */
+        SLIDE,
+
+        /** The next slide fades in while growing to its full size. */
+        ZOOM
+    }
+
+    /**
+     * Constructor that instantiates a new transition, starting now, between
+     * the two frames specified, which must be of the same size as the buffer.
+     *
+     * @param from: the frame of the current slide
+     * @param to: the frame of the next slide
+     * @param style: the style of the transition
+     * @param duration: the duration of the transition, in milliseconds
+     * @param buffer: the buffer the steps are blended into
+     */
+    public SlideTransition(Image from, Image to, Style style, long duration, BufferedImage buffer) {
+        mFrom = from;
+        mTo = to;
+        mStyle = style;
+        mStart = System.nanoTime();
+        mDuration = Math.max(1, TimeUnit.MILLISECONDS.toNanos(duration));
+        mBuffer = buffer;
+    }
+
+    /**
+     * Gets the frame of the next slide.
+     *
+     * @return Image: the frame the transition ends on
+     */
+    public Image getTarget() {
+        return mTo;
+    }
+
+    /**
+     * Gets the step of the transition to be displayed now. A new step is only
+     * blended once a frame has elapsed since the previous one; the previous
+     * step is returned otherwise.
+     *
+     * @return Image: the step to be displayed; or null if the transition is
+     *          over, or was abandoned because {@link #MAXIMUM_LATE_STEPS} 
+     *          steps in a row took longer than a frame to blend
+     */
+    public synchronized Image getFrame() {
+        long now = System.nanoTime();
+        if(mAbandoned || now - mStart >= mDuration) {
+            return null;
+        }
+        if(mBlended != 0 && now - mBlended < FRAME_PERIOD) {
+            return mBuffer;
+        }
+        float progress = ease((float)(now - mStart) / mDuration);
+        blend(progress);
+        mBlended = System.nanoTime();
+        mLateSteps = mBlended - now > FRAME_PERIOD ? mLateSteps + 1 : 0;
+        if(mLateSteps >= MAXIMUM_LATE_STEPS) {
+            mAbandoned = true;
+            return null;
+        }
+        return mBuffer;
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Private helper method that blends the two frames into the buffer at the
+     * progress specified.
+     *
+     * @param progress: the progress of the transition, from 0 to 1
+     */
+    private void blend(float progress) {
+        int width = mBuffer.getWidth();
+        int height = mBuffer.getHeight();
+        Graphics2D g2 = mBuffer.createGraphics();
+        switch(mStyle) {
+        case SLIDE:
+            int offset = Math.round(width * progress);
+            g2.drawImage(mFrom, -offset, 0, null);
+            g2.drawImage(mTo, width - offset, 0, null);
+            break;
+        case ZOOM:
+            g2.drawImage(mFrom, 0, 0, null);
+            int zoomedWidth = Math.round(width * (MINIMUM_ZOOM + (1 - MINIMUM_ZOOM) * progress));
+            int zoomedHeight = Math.round(height * (MINIMUM_ZOOM + (1 - MINIMUM_ZOOM) * progress));
+            g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, progress));
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            g2.drawImage(mTo, (width - zoomedWidth) / 2, (height - zoomedHeight) / 2, zoomedWidth, zoomedHeight, null);
+            break;
+        default:
+            if(isPacked(mFrom) && isPacked(mTo)) {
+                crossfade((BufferedImage)mFrom, (BufferedImage)mTo, progress);
+                break;
+            }
+            g2.drawImage(mFrom, 0, 0, null);
+            g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, progress));
+            g2.drawImage(mTo, 0, 0, null);
+            break;
+        }
+        g2.dispose();
+    }
+
+    /**
+     * Private helper method that crossfades two frames stored with one packed
+     * integer per pixel, in the same layout as the buffer, directly row by 
+     * row. This is equivalent to drawing the next frame over the current one
+     * with an AlphaComposite, but several times faster than Java 2D's 
+     * software loops for it, which keeps full screen crossfades within the
+     * frame budget.
+     *
+     * @param from: the frame of the current slide
+     * @param to: the frame of the next slide
+     * @param progress: the progress of the transition, from 0 to 1
+     */
+    private void crossfade(BufferedImage from, BufferedImage to, float progress) {
+        int width = mBuffer.getWidth();
+        int height = mBuffer.getHeight();
+        int alpha = Math.round(progress * 256);
+        int[] fromRow = new int[width];
+        int[] toRow = new int[width];
+        for(int y = 0; y < height; y++) {
+            from.getRaster().getDataElements(0, y, width, 1, fromRow);
+            to.getRaster().getDataElements(0, y, width, 1, toRow);
+            for(int x = 0; x < width; x++) {
+                int a = fromRow[x];
+                int b = toRow[x];
+                int redBlue = (a & 0x00ff00ff) + ((((b & 0x00ff00ff) - (a & 0x00ff00ff)) * alpha) >> 8);
+                int alphaGreen = ((a >>> 8) & 0x00ff00ff) + (((((b >>> 8) & 0x00ff00ff) - ((a >>> 8) & 0x00ff00ff)) * alpha) >> 8);
+                fromRow[x] = (redBlue & 0x00ff00ff) | ((alphaGreen & 0x00ff00ff) << 8);
+            }
+            mBuffer.getRaster().setDataElements(0, y, width, 1, fromRow);
+        }
+    }
+
+    /**
+     * Private helper method that checks if the frame specified stores its 
+     * pixels with one packed integer each, in the same layout as the buffer.
+     *
+     * @param frame: the frame to check
+     * @return boolean: true if the frame can be crossfaded directly; false
+     *          otherwise
+     */
+    private boolean isPacked(Image frame) {
+        if(!(frame instanceof BufferedImage)) {
+            return false;
+        }
+        BufferedImage image = (BufferedImage)frame;
+        return image.getType() == mBuffer.getType() && image.getWidth() == mBuffer.getWidth() 
+            && image.getHeight() == mBuffer.getHeight() && image.getRaster().getTransferType() == DataBuffer.TYPE_INT 
+            && image.getRaster().getNumDataElements() == 1;
+    }
+
+    /**
+     * Private helper method that eases the progress of the transition in and
+     * out, so that it starts and ends smoothly.
+     *
+     * @param progress: the linear progress of the transition, from 0 to 1
+     * @return float: the eased progress of the transition
+     */
+    private static float ease(float progress) {
+        progress = Math.max(0, Math.min(1, progress));
+        return progress * progress * (3 - 2 * progress);
+    }
+
+    // --------------------------------------------------------- Private Fields
+
+    private static final long FRAME_PERIOD = 1000000000L / FRAME_RATE;
+    private static final float MINIMUM_ZOOM = 0.8f;
+
+    private Image mFrom;
+    private Image mTo;
+    private Style mStyle;
+    private long mStart;
+    private long mDuration;
+    private long mBlended;
+    private int mLateSteps;
+    private boolean mAbandoned;
+    private BufferedImage mBuffer;
+
+}
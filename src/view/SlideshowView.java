@@ -1,20 +1,38 @@
 // SlideshowView.java
 package view;
 
+import io.ImageDecoder;
 import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.DisplayMode;
+import java.awt.EventQueue;
 import java.awt.FlowLayout;
 import java.awt.Frame;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
 import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.Collection;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.ActionMap;
@@ -25,18 +43,24 @@ import javax.swing.JToggleButton;
 import javax.swing.JToolBar;
 import javax.swing.event.PopupMenuEvent;
 import javax.swing.event.PopupMenuListener;
-import model.AlbumModel;
+import model.AlbumPhotoSource;
+import model.ImagingExecutor;
+import model.SlideshowClock;
+import model.SlideshowPacer;
+import model.SlideshowPlaylist;
 import runtime.Application;
 import runtime.Constants.ConfigKeys;
 import common.IAlbumModel;
+import common.ICompletionObserver;
 import common.IPhotoModel;
+import common.IPhotoSource;
 import common.IconSize;
 
 
 /**
  * Class that provides an implementation of a photo slideshow.
  */
-public class SlideshowView extends JFrame implements  Runnable {
+public class SlideshowView extends JFrame {
 
     public static final String START_ACTION = "StartSlideshowAction";
     public static final String STOP_ACTION = "StopSlideshowAction";
@@ -52,15 +76,7 @@ public class SlideshowView extends JFrame implements  Runnable {
      *      this slideshow.
      */
     public SlideshowView(Frame parentFrame, IAlbumModel model) {
-        super(GraphicsDevice.getDefaultConfiguration());
-        mParentFrame = parentFrame;
-        mModel = model;
-
-        // Setup the view...
-        initialize();
-
-        // Display the first image...
-        next();
+        this(parentFrame, new AlbumPhotoSource(model));
     }
 
     /**
@@ -70,11 +86,31 @@ public class SlideshowView extends JFrame implements  Runnable {
      * @param photos: the collection of photos to be displayed by this 
      *      slideshow
      */
-    public SlideshowView(Collection<IPhotoModel> photos) {
+    public SlideshowView(final Collection<IPhotoModel> photos) {
+        this(null, new IPhotoSource() {
+            @Override
+            public Iterator<IPhotoModel> iterator() {
+                return photos.iterator();
+            }
+        });
+    }
+
+    /**
+     * Constructor that instantiates a new slideshow that will display the
+     * photos streamed from the source passed in, such as every photo of the
+     * gallery. The photos are pulled from the source as the slideshow 
+     * advances, so only the photos within its window are held at any time.
+     * 
+     * @param parentFrame: the frame the slideshow is opened from
+     * @param source: the source streaming the photos to be displayed by this
+     *      slideshow
+     */
+    public SlideshowView(Frame parentFrame, IPhotoSource source) {
         super(GraphicsDevice.getDefaultConfiguration());
-        mModel = new AlbumModel("Assorted Collection", photos);
+        mParentFrame = parentFrame;
+        mSource = source;
 
-        // Set up the view...
+        // Setup the view...
         initialize();
 
         // Display the first image...
@@ -85,47 +121,45 @@ public class SlideshowView extends JFrame implements  Runnable {
      * Starts the slideshow or resumes it if it was previous pasued.
      */
     public void start() {
-        if (mIsPaused) {
+        if (mClock.isPaused()) {
             resume();
             return;
         }
-        else if (mHasRanPreviously) {
-            mThread = new Thread(this, "SlideShow");
-        }
-        mIsRunning = true;
-        mHasRanPreviously = true;
-        mThread.start();
+        mClock.start();
     }
 
     /**
      * Moves to the next photo in the slideshow's collection of photos.
      */
     public void next() {
-        mCurrentIndex = (mCurrentIndex + 1) % mImages.size();
-        repaint();
+        mWaiting.set(false);
+        if (mPlaylist.next()) {
+            showCurrent();
+        }
     }
 
     /**
      * Moves to the previous photo in the slideshow's collection of photos.
      */
     public void previous() {
-        mCurrentIndex = (mCurrentIndex - 1) % mImages.size();
-        repaint();
+        mWaiting.set(false);
+        if (mPlaylist.previous()) {
+            showCurrent();
+        }
     }
 
     /**
      * Pauses the slideshow on the current photo being displayed.
      */
     public void pause() {
-        setPaused(true);
+        mClock.pause();
     }
 
     /**
      * Stops the slideshow effectively bringing the slideshow to an end.
      */
     public void stop() {
-        mIsRunning = false;
-        mThread.interrupt();
+        mClock.stop();
     }
 
     /**
@@ -135,7 +169,7 @@ public class SlideshowView extends JFrame implements  Runnable {
      * @return true: if there is another photo to display; false otherwise
      */
     public boolean hasNext() {
-        return true;
+        return mPlaylist.get(1) != null;
     }
 
     /**
@@ -145,7 +179,7 @@ public class SlideshowView extends JFrame implements  Runnable {
      * @return true: if there is a previous photo; false otherwise
      */
     public boolean hasPrevious() {
-        return true;
+        return mPlaylist.hasPrevious();
     };
 
     /**
@@ -154,17 +188,17 @@ public class SlideshowView extends JFrame implements  Runnable {
      * @return true: if the slideshow is running; false otherwise
      */
     public boolean isRunning() {
-        return mIsRunning;
+        return mClock.isRunning();
     }
     
     /**
-     * Checks if the thread this slideshow is executing on is alive or not.
+     * Checks if the clock advancing this slideshow is running or not.
      * 
-     * @return true: if the thread this slideshow is executing on is alive; 
+     * @return true: if the clock advancing this slideshow is running; 
      *      false otherwise
      */
     public boolean isAlive() {
-        return mThread.isAlive();
+        return mClock.isRunning();
     }
 
     /**
@@ -173,14 +207,34 @@ public class SlideshowView extends JFrame implements  Runnable {
      * @return true: if the slideshow is paused; false otherwise
      */
     public boolean isPaused() {
-        return mIsPaused;
+        return mClock.isPaused();
     }
 
     /**
      * Resumes the slideshow if it has previously been paused.
      */
     public void resume() {
-        setPaused(false);
+        mClock.resume();
+    }
+    
+    /**
+     * Gets the clock advancing this slideshow, which records how late each
+     * slide was displayed compared to when it was due.
+     * 
+     * @return SlideshowClock: the clock of this slideshow
+     */
+    public SlideshowClock getClock() {
+        return mClock;
+    }
+    
+    /**
+     * Gets the pacer of this slideshow, which records how long its photos 
+     * take to decode and render, and decides how far ahead they are prepared.
+     * 
+     * @return SlideshowPacer: the pacer of this slideshow
+     */
+    public SlideshowPacer getPacer() {
+        return mPacer;
     }
 
     /**
@@ -214,74 +268,46 @@ public class SlideshowView extends JFrame implements  Runnable {
                 setUndecorated(true);
                 GraphicsDevice.setFullScreenWindow(this);
                 setIgnoreRepaint(true);
+                startActiveRendering();
             }
         }
         else {
+            leaveFullscreenWindow();
             setUndecorated(true);
             setResizable(false);
             setBounds(mParentFrame.getBounds());
         }
+        resizeFrames(getSize());
     }
 
     //--------------------------------------------------------------- Overrides
 
-    /*
-     * @see java.lang.Runnable#run()
-     */
-    public void run() {
-        try {
-            loop();
-        }
-        catch (Exception e) {
-            Application.dump(e);
-        }
-    }
-
     /*
      * @see java.awt.Window#paint(java.awt.Graphics)
      */
     @Override
     public void paint(Graphics g) {
+        // While rendering actively, the renderer owns the screen...
+        if (mRenderer != null) {
+            return;
+        }
         super.paint(g);
-        Image image = mImages.get(mCurrentIndex);
+        resizeFrames(getSize());
+        Image frame = getDisplayedFrame();
 
-        if (image == null) {
-            throw new NullPointerException(
-                    "Image was unexpectedly null! Index in image array: "
-                            + mCurrentIndex);
-        }
-        
-        int newWidth = 0;
-        int newHeight = 0;
-        int imageHeight = image.getHeight(null);
-        int imageWidth = image.getWidth(null);
-        
-        if(image.getWidth(null) > image.getHeight(null)) {
-            newWidth = this.getWidth();
-            newHeight = imageHeight;
-        }
-        else {
-            newWidth = imageWidth;
-            newHeight = this.getHeight();
+        // A frame rendered for another size is only shown until the frame
+        // for the current size is ready, and is never rescaled here...
+        Graphics2D g2 = (Graphics2D)g;
+        if (frame == null || frame.getWidth(null) != getWidth() || frame.getHeight(null) != getHeight()) {
+            g2.setColor(getBackground());
+            g2.fillRect(0, 0, getWidth(), getHeight());
         }
-        double thumbRatio = (double)newWidth/ (double)newHeight;
-        double imageRatio = (double)imageWidth/ 
-            (double)imageHeight;
-        
-        if (thumbRatio < imageRatio) {
-            newHeight = (int)(newWidth/ imageRatio);
-        } else {
-            newWidth = (int)(newHeight * imageRatio);
+        if (frame != null) {
+            int offsetX = (getWidth() - frame.getWidth(null)) / 2;
+            int offsetY = (getHeight() - frame.getHeight(null)) / 2;
+            g2.drawImage(frame, offsetX, offsetY, null);
         }
         
-        int offsetX = (this.getWidth() - newWidth) / 2;
-        int offsetY = (this.getHeight() - newHeight) / 2;
-        
-        Graphics2D g2 = (Graphics2D)g;
-        g2.setBackground(getBackground());
-        g2.fillRect(0, 0, getWidth(), getHeight());
-        g2.drawImage(image, offsetX,offsetY, newWidth, newHeight, null);
-        
         mToolBar.invalidate();
         mToolBar.validate();
         mToolBar.repaint();
@@ -290,51 +316,350 @@ public class SlideshowView extends JFrame implements  Runnable {
     // -------------------------------------------------------- Private Methods
     
     /**
-     * Private helper method that contains the main slideshow loop that is 
-     * executed in the slideshow's thread.
+     * Private helper method that advances the slideshow when its clock ticks.
+     * It is called on the Event Dispatch Thread.
+     * The slideshow only moves to the next photo once its frame is ready; 
+     * until then the current photo stays displayed, and the slideshow moves
+     * on as soon as the frame completes, starting the interval over.
      */
-    private void loop() {
-        while (mIsRunning) {
-            try {
-                waitWhilePaused();
-                Thread.sleep(mInterval); // 10 frames per second
-                next();
+    private void advance() {
+        mWaiting.set(true);
+        if (isReady(mPlaylist.get(1)) && mWaiting.compareAndSet(true, false)) {
+            next();
+        }
+    }
+    
+    /**
+     * Private helper method that moves on to the photo specified if the 
+     * slideshow is waiting for it to be ready and it is the next photo.
+     * 
+     * @param photo: the photo whose frame has just completed
+     */
+    private void advanceIfWaiting(IPhotoModel photo) {
+        if (photo == mPlaylist.get(1) && mWaiting.compareAndSet(true, false)) {
+            Application.log("Slideshow pacing: slide shown late, waited for " + photo.getName() + " (" + mPacer + ")");
+            next();
+            mClock.restart();
+        }
+    }
+    
+    /**
+     * Private helper method that checks if the frame of the photo specified 
+     * has completed, whether it was rendered or could not be.
+     * 
+     * @param photo: the photo from the playlist, or null
+     * @return true: if the frame of the photo has completed; false otherwise
+     */
+    private boolean isReady(IPhotoModel photo) {
+        if (photo == null) {
+            return false;
+        }
+        synchronized (mWindowLock) {
+            Future<Image> image = mWindow.get(photo);
+            return image != null && image.isDone();
+        }
+    }
+    
+    /**
+     * Private helper method that shows the photo the playlist has just moved
+     * to, transitioning to it from the frame displayed until now.
+     */
+    private void showCurrent() {
+        Image from = mDisplayedFrame;
+        updateWindow();
+        startTransition(from, getCurrentFrame());
+        repaint();
+        EventQueue.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                toggleActions();
             }
-            catch (InterruptedException x) {
-                Thread.currentThread().interrupt();
+        });
+    }
+    
+    /**
+     * Private helper method that starts the transition between the two frames
+     * specified, animated from the slideshow's clock. The next photo is shown
+     * as a hard cut instead if either frame is not ready, or if they were 
+     * rendered at different sizes.
+     * 
+     * @param from: the frame displayed until now, or null
+     * @param to: the frame of the photo to show, or null
+     */
+    private void startTransition(Image from, Image to) {
+        mTransition = null;
+        if (mTransitionStyle == SlideTransition.Style.NONE || from == null || to == null || from == to 
+                || from.getWidth(null) != to.getWidth(null) || from.getHeight(null) != to.getHeight(null)) {
+            return;
+        }
+        int width = to.getWidth(null);
+        int height = to.getHeight(null);
+        if (mTransitionBuffer == null || mTransitionBuffer.getWidth() != width || mTransitionBuffer.getHeight() != height) {
+            mTransitionBuffer = getGraphicsConfiguration().createCompatibleImage(width, height);
+        }
+        mTransition = new SlideTransition(from, to, mTransitionStyle, mTransitionDuration, mTransitionBuffer);
+        mClock.animate(new Runnable() {
+            @Override
+            public void run() {
+                repaint();
             }
+        }, mTransitionDuration, SlideTransition.FRAME_RATE);
+    }
+    
+    /**
+     * Private helper method that gets the image to be displayed now: the 
+     * current step of the running transition, if any, or the frame of the
+     * current photo. The first time the current photo is displayed at the
+     * slideshow's size, the slideshow's clock is told it was displayed.
+     * 
+     * @return Image: the image to be displayed; or null if the current photo
+     *      is not rendered yet
+     */
+    private Image getDisplayedFrame() {
+        SlideTransition transition = mTransition;
+        if (transition != null) {
+            Image step = transition.getFrame();
+            if (step != null) {
+                mClock.displayed();
+                return step;
+            }
+            if (mTransition == transition) {
+                mTransition = null;
+            }
+        }
+        Image frame = getCurrentFrame();
+        if (frame != null && frame.getWidth(null) == getWidth() && frame.getHeight(null) == getHeight()) {
+            mClock.displayed();
+            mDisplayedFrame = frame;
         }
+        return frame;
     }
-
+    
     /**
-     * Private helper to set whether or not the slideshow is paused.
+     * Private helper method that gets the frame of the photo currently being
+     * displayed, if it has been rendered.
      * 
-     * @param paused: whether or not the slideshow is to be paused
+     * @return Image: the current frame; or null if it is not rendered yet or
+     *      the photo could not be decoded
+     */
+    private Image getCurrentFrame() {
+        Future<Image> image;
+        synchronized (mWindowLock) {
+            image = mWindow.get(mPlaylist.get(0));
+        }
+        if(image == null || !image.isDone()) {
+            return null;
+        }
+        try {
+            return image.get();
+        }
+        catch(InterruptedException e) {
+            return null;
+        }
+        catch(ExecutionException e) {
+            return null;
+        }
+        catch(CancellationException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Private helper method that slides the window of rendered photos to the
+     * current photo. The current photo, the prefetch depth of photos after it
+     * and the rest of the window's photos before it are decoded and rendered 
+     * into frames on the imaging threads, nearest first. Photos leaving the 
+     * window are released: their rendering is cancelled if it has not 
+     * completed, and the slideshow no longer holds on to their frame.
      */
-    private void setPaused(boolean paused) {
-        synchronized (mPauseLock) {
-            if (mIsPaused != paused) {
-                mIsPaused = paused;
-                mPauseLock.notifyAll();
+    private void updateWindow() {
+        int ahead = mPacer.getPrefetchDepth();
+        int behind = Math.max(0, mWindowSize - 1 - mPrefetchDepth);
+        synchronized (mWindowLock) {
+            if (mFrameSize == null) {
+                return;
+            }
+            mWindowDepth = ahead;
+            Map<IPhotoModel, Future<Image>> window = new HashMap<IPhotoModel, Future<Image>>();
+            for (int distance = 0; distance <= Math.max(ahead, behind); distance++) {
+                if (distance <= ahead) {
+                    retain(window, mPlaylist.get(distance));
+                }
+                if (distance > 0 && distance <= behind) {
+                    retain(window, mPlaylist.get(-distance));
+                }
             }
+            releaseWindow();
+            mWindow = window;
         }
     }
     
     /**
-     * Private helper method that will wait to return until the the slideshow
-     * is unpaused through the setPaused(boolean) method.
+     * Private helper method that moves the photo specified into the new 
+     * window, rendering it if it was not in the previous window. A photo 
+     * streamed more than once within the window is only rendered once. The
+     * time taken to decode and render each photo is reported to the pacer, 
+     * and once it is rendered the window is extended if the pacer decided to
+     * prepare more photos ahead.
      * 
-     * @throws InterruptedException: if the the thread this slideshow is
-     *      executing on is interrupted while waiting for the pause lock to lift.
+     * @param window: the new window
+     * @param photo: the photo from the playlist, or null
      */
-    private void waitWhilePaused() throws InterruptedException {
-        synchronized (mPauseLock) {
-            while (mIsPaused) {
-                mPauseLock.wait();
+    private void retain(Map<IPhotoModel, Future<Image>> window, final IPhotoModel photo) {
+        if (photo == null || window.containsKey(photo)) {
+            return;
+        }
+        Future<Image> image = mWindow.remove(photo);
+        if (image == null) {
+            final Dimension size = mFrameSize;
+            final Dimension decodeSize = getDecodeSize(size);
+            image = Application.Imaging.submit(new Callable<Image>() {
+                @Override
+                public Image call() {
+                    long start = System.nanoTime();
+                    Image decoded = photo.getImage(decodeSize.width, decodeSize.height);
+                    if (decoded == null) {
+                        return null;
+                    }
+                    long decodeTime = System.nanoTime() - start;
+                    Image frame = renderFrame(decoded, size);
+                    mPacer.prepared(decodeTime, System.nanoTime() - start);
+                    return frame;
+                }
+            }, new ICompletionObserver<Image>() {
+                @Override
+                public void completed(Image result) {
+                    mClock.setInterval(mPacer.getInterval());
+                    if (mPacer.getPrefetchDepth() > mWindowDepth) {
+                        updateWindow();
+                    }
+                    advanceIfWaiting(photo);
+                    repaint();
+                }
+            });
+        }
+        window.put(photo, image);
+    }
+    
+    /**
+     * Private helper method that determines the size the photos are decoded
+     * for: the resolution of the screen, or the size of the frames if they 
+     * are larger, since a frame is never displayed larger than either. The 
+     * photos are then decoded subsampled to about that size instead of at 
+     * their full resolution.
+     * 
+     * @param size: the size of the frames
+     * @return Dimension: the size the photos are to be decoded for
+     */
+    private Dimension getDecodeSize(Dimension size) {
+        DisplayMode mode = GraphicsDevice.getDisplayMode();
+        return new Dimension(Math.max(mode.getWidth(), size.width), Math.max(mode.getHeight(), size.height));
+    }
+    
+    /**
+     * Private helper method that renders the image passed in, scaled to fit
+     * the frame size specified and centered on the slideshow's background, 
+     * into an image compatible with the screen the slideshow is displayed on
+     * so that painting it is a plain copy.
+     * 
+     * @param image: the image of the photo
+     * @param size: the size of the frame
+     * @return Image: the rendered frame
+     */
+    private Image renderFrame(Image image, Dimension size) {
+        ImagingExecutor.checkThread("Rendering a slideshow frame");
+        BufferedImage frame = getGraphicsConfiguration().createCompatibleImage(size.width, size.height);
+        Dimension scaled = ImageDecoder.getScaledSize(image.getWidth(null), image.getHeight(null), 
+                size.width, size.height);
+        Graphics2D g2 = frame.createGraphics();
+        g2.setColor(getBackground());
+        g2.fillRect(0, 0, size.width, size.height);
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2.drawImage(image, (size.width - scaled.width) / 2, (size.height - scaled.height) / 2, 
+                scaled.width, scaled.height, null);
+        g2.dispose();
+        return frame;
+    }
+    
+    /**
+     * Private helper method that renders the frames of the window again if
+     * the size specified differs from the size they were rendered at.
+     * 
+     * @param size: the current size of the slideshow
+     */
+    private void resizeFrames(Dimension size) {
+        if (size.width <= 0 || size.height <= 0) {
+            return;
+        }
+        synchronized (mWindowLock) {
+            if (size.equals(mFrameSize)) {
+                return;
             }
+            mFrameSize = size;
+            releaseWindow();
+            updateWindow();
         }
     }
-
+    
+    /**
+     * Private helper method that switches the slideshow to active rendering:
+     * the toolbar is hidden, the slideshow's controls move to its popup menu,
+     * and a renderer thread draws the frames through a buffer strategy at the
+     * refresh rate of the display. If no buffer strategy can be created, the
+     * slideshow keeps painting passively.
+     */
+    private void startActiveRendering() {
+        stopActiveRendering();
+        try {
+            createBufferStrategy(BUFFER_COUNT);
+        }
+        catch (Exception e) {
+            Application.dump(e);
+            return;
+        }
+        mToolBar.getParent().setVisible(false);
+        mRenderer = new ActiveRenderer(getBufferStrategy());
+        mRenderer.start();
+    }
+    
+    /**
+     * Private helper method that stops active rendering, if it is running, 
+     * and returns to painting passively through paint().
+     */
+    private void stopActiveRendering() {
+        if (mRenderer == null) {
+            return;
+        }
+        mRenderer.stop();
+        mRenderer = null;
+        mToolBar.getParent().setVisible(true);
+        repaint();
+    }
+    
+    /**
+     * Private helper method that stops active rendering and gives the screen
+     * back, if the slideshow is currently the fullscreen window.
+     */
+    private void leaveFullscreenWindow() {
+        stopActiveRendering();
+        if (GraphicsDevice.getFullScreenWindow() == this) {
+            GraphicsDevice.setFullScreenWindow(null);
+            setIgnoreRepaint(false);
+        }
+    }
+    
+    /**
+     * Private helper method that releases every photo in the window.
+     */
+    private void releaseWindow() {
+        synchronized (mWindowLock) {
+            for (Future<Image> image : mWindow.values()) {
+                image.cancel(true);
+            }
+            mWindow.clear();
+        }
+    }
+    
     /**
      * Private helper method to toggle the actions enabled state based on the
      * current state of the slideshow and it's index in the collection of photos.
@@ -360,19 +685,41 @@ public class SlideshowView extends JFrame implements  Runnable {
         am.put(NEXT_ACTION, NextAction);
         
         // Initialize members...
-        mHasRanPreviously = false;
-        mCurrentIndex = 0;
-        mIsRunning = false;
-        mIsPaused = false;
-        mThread = new Thread(this, "SlideShow");
-        mInterval = Application.Settings.getLong(ConfigKeys.Slideshow.INTERVAL);
+        // The clock only keeps time: the slideshow is advanced on the Event
+        // Dispatch Thread, like the toolbar's actions, so that the clock's 
+        // thread is never held up by the source or the transitions...
+        mClock = new SlideshowClock(new Runnable() {
+            @Override
+            public void run() {
+                EventQueue.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        advance();
+                    }
+                });
+            }
+        }, Application.Settings.getLong(ConfigKeys.Slideshow.INTERVAL));
+        mTransitionDuration = Application.Settings.getLong(ConfigKeys.Slideshow.TRANSITION_DURATION);
+        try {
+            mTransitionStyle = SlideTransition.Style.valueOf(
+                    Application.Settings.getString(ConfigKeys.Slideshow.TRANSITION_STYLE).toUpperCase());
+        }
+        catch (IllegalArgumentException e) {
+            Application.dump(e);
+            mTransitionStyle = SlideTransition.Style.NONE;
+        }
         mIsFullScreen = Application.Settings.getBoolean(ConfigKeys.Slideshow.IS_FULLSCREEN_DEFAULT);
         
-        // Create list of images from the photo models...
-        mImages = new LinkedList<Image>();
-        for (IPhotoModel photo : mModel) {
-            mImages.add(photo.getImage());
-        }
+        // Stream the photos from the source; only the ones within the window
+        // around the current photo are held and decoded...
+        mWindow = new HashMap<IPhotoModel, Future<Image>>();
+        mWindowSize = Application.Settings.getInt(ConfigKeys.Slideshow.WINDOW_SIZE);
+        mPrefetchDepth = Application.Settings.getInt(ConfigKeys.Slideshow.PREFETCH_DEPTH);
+        mPacer = new SlideshowPacer(Application.Settings.getLong(ConfigKeys.Slideshow.INTERVAL), mPrefetchDepth,
+                Application.Settings.getInt(ConfigKeys.Slideshow.MAXIMUM_PREFETCH_DEPTH),
+                Application.Settings.getBoolean(ConfigKeys.Slideshow.STRETCH_INTERVAL), 
+                Application.Imaging.getThreadCount());
+        mPlaylist = new SlideshowPlaylist(mSource, Math.max(HISTORY_SIZE, mWindowSize));
         
 
         // Set up the toolbar with the actions...
@@ -393,8 +740,15 @@ public class SlideshowView extends JFrame implements  Runnable {
 
         // Create and register the popup menu to escape/toggle fullscreen...
         mPopUpMenu = new JPopupMenu();
+        mPopUpMenu.setLightWeightPopupEnabled(false);
         mPopUpMenu.addPopupMenuListener(new ToggleFullscreenListener());
         addMouseListener(new MousePopupListener());
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                resizeFrames(getSize());
+            }
+        });
         
         // Set up frame's properties
         setFullscreen(mIsFullScreen);
@@ -458,7 +812,9 @@ public class SlideshowView extends JFrame implements  Runnable {
         @Override
         public void actionPerformed(ActionEvent e) {
             stop();
+            leaveFullscreenWindow();
             setVisible(false);
+            releaseWindow();
         }
 
     }
@@ -685,6 +1041,13 @@ public class SlideshowView extends JFrame implements  Runnable {
 
         @Override
         public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+            if (mRenderer != null) {
+                mPopUpMenu.add(StartAction);
+                mPopUpMenu.add(PauseAction);
+                mPopUpMenu.add(PreviousAction);
+                mPopUpMenu.add(NextAction);
+                mPopUpMenu.addSeparator();
+            }
             if (mIsFullScreen) {
                 mPopUpMenu.add(mExitFullscreenAction);
             }
@@ -700,25 +1063,213 @@ public class SlideshowView extends JFrame implements  Runnable {
     }
 
     
+    /**
+     * A class that renders the slideshow actively while it is displayed in 
+     * fullscreen, without going through the Swing repaint manager. Its thread
+     * draws the current frame into the back buffer of the buffer strategy and
+     * shows it once per refresh of the display, against absolute deadlines so
+     * that the frame rate does not drift. The frame is copied into a volatile
+     * image held in video memory, which is validated before each use and 
+     * copied again whenever its contents were lost.
+     */
+    private class ActiveRenderer implements Runnable {
+
+        /**
+         * Constructor that instantiates a new active renderer drawing through
+         * the buffer strategy specified.
+         * 
+         * @param strategy: the buffer strategy of the slideshow
+         */
+        public ActiveRenderer(BufferStrategy strategy) {
+            mStrategy = strategy;
+            int refreshRate = GraphicsDevice.getDisplayMode().getRefreshRate();
+            if (refreshRate == DisplayMode.REFRESH_RATE_UNKNOWN) {
+                refreshRate = DEFAULT_REFRESH_RATE;
+            }
+            mPeriod = 1000000000L / refreshRate;
+            mThread = new Thread(this, "Slideshow Renderer");
+            mThread.setDaemon(true);
+        }
+
+        /**
+         * Starts the renderer's thread.
+         */
+        public void start() {
+            mActive = true;
+            mThread.start();
+        }
+
+        /**
+         * Stops the renderer's thread and waits for it to finish.
+         */
+        public void stop() {
+            mActive = false;
+            mThread.interrupt();
+            try {
+                mThread.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (mVolatileFrame != null) {
+                mVolatileFrame.flush();
+            }
+        }
+
+        /*
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+            long deadline = System.nanoTime();
+            while (mActive) {
+                try {
+                    render();
+                }
+                catch (Exception e) {
+                    Application.dump(e);
+                }
+                deadline += mPeriod;
+                long delay = deadline - System.nanoTime();
+                if (delay < -mPeriod) {
+                    // Too far behind to catch up, so start again from now...
+                    deadline = System.nanoTime();
+                }
+                else if (delay > 0) {
+                    try {
+                        Thread.sleep(delay / 1000000L, (int)(delay % 1000000L));
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Private helper method that renders one frame, drawing it again for
+         * as long as the buffer strategy reports that its buffers were
+         * restored or lost meanwhile.
+         */
+        private void render() {
+            // The frames are resized on the Event Dispatch Thread when the
+            // slideshow is resized, since resizing them pulls photos from 
+            // the source...
+            do {
+                do {
+                    Graphics2D g2 = (Graphics2D)mStrategy.getDrawGraphics();
+                    try {
+                        draw(g2);
+                    }
+                    finally {
+                        g2.dispose();
+                    }
+                } while (mStrategy.contentsRestored());
+                mStrategy.show();
+                Toolkit.getDefaultToolkit().sync();
+            } while (mStrategy.contentsLost());
+        }
+
+        /**
+         * Private helper method that draws the current frame centered on the
+         * slideshow's background.
+         * 
+         * @param g2: the graphics of the back buffer
+         */
+        private void draw(Graphics2D g2) {
+            int width = getWidth();
+            int height = getHeight();
+            Image frame = getDisplayedFrame();
+            if (frame == null || frame.getWidth(null) != width || frame.getHeight(null) != height) {
+                g2.setColor(getBackground());
+                g2.fillRect(0, 0, width, height);
+            }
+            if (frame == null) {
+                return;
+            }
+            // The steps of a transition change on every frame, so they are
+            // not worth copying to video memory...
+            Image image = frame == mTransitionBuffer ? frame : accelerate(frame);
+            g2.drawImage(image, (width - image.getWidth(null)) / 2, (height - image.getHeight(null)) / 2, null);
+        }
+
+        /**
+         * Private helper method that gets a copy of the frame passed in held
+         * in video memory. The copy is created again if it is incompatible 
+         * with the screen, and the frame is copied into it again if its 
+         * contents were lost or it holds another frame.
+         * 
+         * @param frame: the frame to be drawn
+         * @return Image: the copy of the frame; or the frame itself if its
+         *      copy was lost while it was being made
+         */
+        private Image accelerate(Image frame) {
+            GraphicsConfiguration configuration = getGraphicsConfiguration();
+            int width = frame.getWidth(null);
+            int height = frame.getHeight(null);
+            int status = VolatileImage.IMAGE_INCOMPATIBLE;
+            if (mVolatileFrame != null && mVolatileFrame.getWidth() == width && mVolatileFrame.getHeight() == height) {
+                status = mVolatileFrame.validate(configuration);
+            }
+            if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                if (mVolatileFrame != null) {
+                    mVolatileFrame.flush();
+                }
+                mVolatileFrame = configuration.createCompatibleVolatileImage(width, height);
+                status = VolatileImage.IMAGE_RESTORED;
+            }
+            if (status == VolatileImage.IMAGE_RESTORED || mVolatileSource != frame) {
+                Graphics2D g2 = mVolatileFrame.createGraphics();
+                g2.drawImage(frame, 0, 0, null);
+                g2.dispose();
+                mVolatileSource = frame;
+            }
+            if (mVolatileFrame.contentsLost()) {
+                mVolatileSource = null;
+                return frame;
+            }
+            return mVolatileFrame;
+        }
+
+        private BufferStrategy mStrategy;
+        private VolatileImage mVolatileFrame;
+        private Image mVolatileSource;
+        private long mPeriod;
+        private Thread mThread;
+        private volatile boolean mActive;
+    }
+
+    
     // --------------------------------------------------------- Private Fields
 
-    private IAlbumModel mModel;
-    private List<Image> mImages;
-    private Thread mThread;
-    private volatile long mInterval;
-    private volatile boolean mIsRunning;
-    private volatile boolean mIsPaused;
-    private volatile int mCurrentIndex;
-    private volatile boolean mHasRanPreviously;
+    private IPhotoSource mSource;
+    private SlideshowPlaylist mPlaylist;
+    private Map<IPhotoModel, Future<Image>> mWindow;
+    private int mWindowSize;
+    private int mPrefetchDepth;
+    private volatile int mWindowDepth;
+    private SlideshowPacer mPacer;
+    private final AtomicBoolean mWaiting = new AtomicBoolean();
+    private Dimension mFrameSize;
+    private final Object mWindowLock = new Object();
+    private SlideshowClock mClock;
+    private SlideTransition.Style mTransitionStyle;
+    private long mTransitionDuration;
+    private volatile SlideTransition mTransition;
+    private BufferedImage mTransitionBuffer;
+    private volatile Image mDisplayedFrame;
     private volatile boolean mIsFullScreen;
     private JToolBar mToolBar;
     private JPopupMenu mPopUpMenu;
-    private final Object mPauseLock = new Object();
+    private volatile ActiveRenderer mRenderer;
     private Frame mParentFrame;
     private StartSlideshowAction StartAction = new StartSlideshowAction();
     private StopSlideshowAction StopAction = new StopSlideshowAction();
     private PauseSlideshowAction PauseAction = new PauseSlideshowAction();
     private SlideshowNextAction NextAction = new SlideshowNextAction();
     private SlideshowPreviousAction PreviousAction = new SlideshowPreviousAction();
+    private static final int HISTORY_SIZE = 100;
+    private static final int BUFFER_COUNT = 3;
+    private static final int DEFAULT_REFRESH_RATE = 60;
     private static GraphicsDevice GraphicsDevice = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice();
 }